@@ -0,0 +1,51 @@
+package org.roxycode;
+
+import io.micronaut.context.ApplicationContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The full agent loop (session handling, caching decisions, accounting, tool dispatch and
+ * sandbox execution) against {@link StubModelClient}, so only our own overhead is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AgentLoopBenchmark {
+
+    private ApplicationContext context;
+    private AgentService agentService;
+
+    @Setup
+    public void setUp() {
+        context = ApplicationContext.builder()
+                .properties(Map.of("roxycode.model.backend", "stub"))
+                .singletons(new StubModelClient())
+                .start();
+        agentService = context.getBean(AgentService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public ChatResult chat() {
+        return agentService.chat("Sort 3, 1, 2");
+    }
+
+    @Benchmark
+    public ChatResult chatStream() {
+        return agentService.chatStream(null, "Sort 3, 1, 2", AgentListener.NONE);
+    }
+}
@@ -0,0 +1,57 @@
+package org.roxycode;
+
+import io.micronaut.context.ApplicationContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold vs. warm sandbox executions. A pool size of 0 builds a fresh context for every call;
+ * with a pool, executions take pre-initialized contexts while the refill thread keeps up.
+ * {@code unique} sources defeat the source cache, so parsing is measured as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JsExecutionBenchmark {
+    private static final String SCRIPT =
+            "const items = Array.from({ length: 100 }, (_, i) => ({ id: i, value: i * i }));\n"
+            + "console.log(items.filter(x => x.value % 3 === 0).length);\n"
+            + "JSON.stringify(items.slice(0, 5));";
+
+    @Param({"0", "4"})
+    int poolSize;
+
+    @Param({"repeated", "unique"})
+    String source;
+
+    private ApplicationContext context;
+    private JsExecutionService service;
+    private long counter;
+
+    @Setup
+    public void setUp() {
+        context = ApplicationContext.run(Map.of("roxycode.js.pool-size", poolSize));
+        service = context.getBean(JsExecutionService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public JsExecutionResult execute() {
+        String script = "unique".equals(source) ? SCRIPT + "\n// " + counter++ : SCRIPT;
+        return service.execute(script);
+    }
+}
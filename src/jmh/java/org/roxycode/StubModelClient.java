@@ -0,0 +1,46 @@
+package org.roxycode;
+
+import com.google.genai.types.Candidate;
+import com.google.genai.types.Content;
+import com.google.genai.types.FunctionCall;
+import com.google.genai.types.GenerateContentConfig;
+import com.google.genai.types.GenerateContentResponse;
+import com.google.genai.types.GenerateContentResponseUsageMetadata;
+import com.google.genai.types.Part;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Answers every prompt with one {@code execute_javascript} call, then a text answer once the
+ * tool result is in the history, so each chat runs two iterations of the agent loop.
+ */
+class StubModelClient implements ModelClient {
+    private static final String CODE = "const xs = [3, 1, 2].sort(); console.log(xs.join(',')); xs.length";
+
+    @Override
+    public GenerateContentResponse generateContent(String model, List<Content> contents, GenerateContentConfig config) {
+        Content last = contents.get(contents.size() - 1);
+        Part part = "tool".equals(last.role().orElse(""))
+                ? Part.builder().text("The sorted list has 3 elements.").build()
+                : Part.builder().functionCall(FunctionCall.builder()
+                        .name("execute_javascript")
+                        .args(Map.of("code", CODE))
+                        .build()).build();
+        return GenerateContentResponse.builder()
+                .candidates(List.of(Candidate.builder()
+                        .content(Content.builder().role("model").parts(List.of(part)).build())
+                        .build()))
+                .usageMetadata(GenerateContentResponseUsageMetadata.builder()
+                        .promptTokenCount(200 * contents.size())
+                        .candidatesTokenCount(20)
+                        .build())
+                .build();
+    }
+
+    @Override
+    public Stream<GenerateContentResponse> generateContentStream(String model, List<Content> contents, GenerateContentConfig config) {
+        return Stream.of(generateContent(model, contents, config));
+    }
+}
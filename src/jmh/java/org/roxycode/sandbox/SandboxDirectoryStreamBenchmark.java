@@ -0,0 +1,103 @@
+package org.roxycode.sandbox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Listing a large flat directory and walking a whole tree through the sandbox provider,
+ * against a {@link SandboxWalker} walk that hands out attributes with each entry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SandboxDirectoryStreamBenchmark {
+    private static final int FILES_PER_DIR = 100;
+
+    @Param({"1000", "10000"})
+    int files;
+
+    private Path root;
+    private SandboxFileSystem fs;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("sandbox-bench");
+        Path flat = Files.createDirectory(root.resolve("flat"));
+        for (int i = 0; i < files; i++) {
+            Files.createFile(flat.resolve("file-" + i + ".txt"));
+        }
+        for (int i = 0; i < files; i++) {
+            Path dir = root.resolve("tree").resolve("d" + (i / FILES_PER_DIR % 10)).resolve("d" + (i / FILES_PER_DIR));
+            Files.createDirectories(dir);
+            Files.createFile(dir.resolve("file-" + i + ".txt"));
+        }
+        fs = new SandboxFileSystem(new SandboxFileSystemProvider(), root, true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public int listFlatDirectory() throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(fs.getPath("/flat"))) {
+            for (Path ignored : entries) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public long walkTree() throws IOException {
+        try (Stream<Path> paths = Files.walk(fs.getPath("/tree"))) {
+            return paths.count();
+        }
+    }
+
+    @Benchmark
+    public long walkTreeWithAttributes() throws IOException {
+        try (Stream<Path> paths = Files.walk(fs.getPath("/tree"))) {
+            long bytes = 0;
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                bytes += Files.readAttributes(path, BasicFileAttributes.class).size();
+            }
+            return bytes;
+        }
+    }
+
+    @Benchmark
+    public long sandboxWalkerWithAttributes() throws IOException {
+        try (Stream<SandboxEntry> entries = SandboxWalker.walk(fs.getPath("/tree"), Integer.MAX_VALUE, null)) {
+            return entries.mapToLong(entry -> entry.attributes().size()).sum();
+        }
+    }
+
+    @Benchmark
+    public long sandboxWalkerGlob() throws IOException {
+        try (Stream<SandboxEntry> entries = SandboxWalker.walk(fs.getPath("/tree"), Integer.MAX_VALUE, "**/file-1*.txt")) {
+            return entries.count();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.roxycode.sandbox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Path translation cost: every provider operation maps a virtual path to the real one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SandboxPathBenchmark {
+
+    private Path root;
+    private SandboxFileSystem fs;
+    private SandboxPath deepPath;
+    private SandboxPath projectDir;
+
+    @Setup
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("sandbox-bench");
+        fs = new SandboxFileSystem(new SandboxFileSystemProvider(), root, false);
+        deepPath = (SandboxPath) fs.getPath("/src/main/java/org/roxycode/sandbox/SandboxPath.java");
+        projectDir = (SandboxPath) fs.getPath("/src/main/java");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(root);
+    }
+
+    @Benchmark
+    public Path realDelegate() {
+        return deepPath.getRealDelegate();
+    }
+
+    @Benchmark
+    public Path resolveRelative() {
+        return projectDir.resolve("org/roxycode/AgentService.java");
+    }
+
+    @Benchmark
+    public Path resolveAndTranslate() {
+        return ((SandboxPath) projectDir.resolve("org/roxycode/AgentService.java")).getRealDelegate();
+    }
+}
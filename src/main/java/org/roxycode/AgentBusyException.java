@@ -0,0 +1,17 @@
+package org.roxycode;
+
+/**
+ * Thrown when the agent executor has no free slot and its queue is full.
+ */
+public class AgentBusyException extends RuntimeException {
+    private final int retryAfterSeconds;
+
+    public AgentBusyException(String message, int retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
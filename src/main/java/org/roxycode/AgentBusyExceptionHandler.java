@@ -0,0 +1,26 @@
+package org.roxycode;
+
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.http.HttpHeaders;
+import io.micronaut.http.HttpRequest;
+import io.micronaut.http.HttpResponse;
+import io.micronaut.http.HttpStatus;
+import io.micronaut.http.annotation.Produces;
+import io.micronaut.http.server.exceptions.ExceptionHandler;
+import jakarta.inject.Singleton;
+
+/**
+ * Turns a saturated agent executor into {@code 429 Too Many Requests} with a Retry-After hint.
+ */
+@Produces
+@Singleton
+@Requires(classes = {AgentBusyException.class, ExceptionHandler.class})
+public class AgentBusyExceptionHandler implements ExceptionHandler<AgentBusyException, HttpResponse<?>> {
+
+    @Override
+    public HttpResponse<?> handle(HttpRequest request, AgentBusyException exception) {
+        return HttpResponse.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(exception.getRetryAfterSeconds()))
+                .body(exception.getMessage());
+    }
+}
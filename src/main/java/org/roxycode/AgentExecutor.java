@@ -0,0 +1,66 @@
+package org.roxycode;
+
+import io.micronaut.context.annotation.Value;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs agent loops off the Netty event loop on virtual threads.
+ * At most {@code max-concurrent-chats} loops run at once and {@code max-queued-chats} wait;
+ * anything beyond that is rejected with {@link AgentBusyException} so callers can answer 429.
+ */
+@Singleton
+public class AgentExecutor {
+    private static final Logger LOG = LoggerFactory.getLogger(AgentExecutor.class);
+
+    private final ThreadPoolExecutor executor;
+    private final int retryAfterSeconds;
+
+    public AgentExecutor(@Value("${roxycode.agent.max-concurrent-chats:16}") int maxConcurrent,
+                         @Value("${roxycode.agent.max-queued-chats:32}") int maxQueued,
+                         @Value("${roxycode.agent.retry-after-seconds:5}") int retryAfterSeconds) {
+        int concurrency = Math.max(1, maxConcurrent);
+        this.executor = new ThreadPoolExecutor(
+                concurrency, concurrency,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, maxQueued)),
+                Thread.ofVirtual().name("agent-", 0).factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Schedules the task, failing fast when the executor is saturated.
+     * @throws AgentBusyException if both the workers and the queue are full.
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            LOG.warn("Agent executor saturated: {} running, {} queued", executor.getActiveCount(), executor.getQueue().size());
+            throw new AgentBusyException("Too many concurrent chats, please retry shortly", retryAfterSeconds);
+        }
+    }
+
+    public int activeCount() {
+        return executor.getActiveCount();
+    }
+
+    public int queuedCount() {
+        return executor.getQueue().size();
+    }
+
+    @PreDestroy
+    void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,14 @@
+package org.roxycode;
+
+/**
+ * Receives progress from a running agent loop, e.g. to stream it to the browser.
+ */
+public interface AgentListener {
+    AgentListener NONE = new AgentListener() {};
+
+    default void onTextDelta(String text) {}
+
+    default void onToolCallStarted(String code) {}
+
+    default void onToolCallFinished(ToolExecution execution) {}
+}
@@ -0,0 +1,132 @@
+package org.roxycode;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micronaut.core.annotation.Nullable;
+import jakarta.inject.Singleton;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer meters for the agent loop, Gemini calls and the JavaScript sandbox, scraped
+ * from {@code /prometheus}. Timers publish percentile histograms so latency quantiles can
+ * be aggregated on the Prometheus side.
+ */
+@Singleton
+public class AgentMetrics {
+    private final MeterRegistry registry;
+
+    public AgentMetrics(@Nullable MeterRegistry registry) {
+        // Metrics can be switched off with micronaut.metrics.enabled=false; keep recording into a throwaway registry
+        this.registry = registry != null ? registry : new SimpleMeterRegistry();
+    }
+
+    MeterRegistry registry() {
+        return registry;
+    }
+
+    public void recordChat(boolean stream, String outcome, int iterations, long nanos) {
+        Timer.builder("roxycode.agent.chat")
+                .description("Full agent runs, from prompt to final answer")
+                .tag("stream", String.valueOf(stream))
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("roxycode.agent.iterations")
+                .description("Model round-trips per agent run")
+                .tag("outcome", outcome)
+                .register(registry)
+                .record(iterations);
+    }
+
+    public void recordModelCall(String model, boolean stream, String outcome, long nanos) {
+        Timer.builder("roxycode.gemini.request")
+                .description("Gemini generateContent round-trips")
+                .tag("model", String.valueOf(model))
+                .tag("stream", String.valueOf(stream))
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordModelRetry(String model) {
+        Counter.builder("roxycode.gemini.retries")
+                .description("Gemini calls retried after a transient failure")
+                .tag("model", String.valueOf(model))
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * @param outcome primary_won, hedge_won, both_failed, or over_budget when a hedge was due but not affordable
+     */
+    public void recordModelHedge(String model, String outcome) {
+        Counter.builder("roxycode.gemini.hedges")
+                .description("Duplicate Gemini requests sent for slow calls, by outcome")
+                .tag("model", String.valueOf(model))
+                .tag("outcome", outcome)
+                .register(registry)
+                .increment();
+    }
+
+    public void recordTokens(String model, UsageStats usage) {
+        String modelTag = String.valueOf(model);
+        tokenCounter(modelTag, "prompt").increment(usage.promptTokens() - usage.cachedTokens());
+        tokenCounter(modelTag, "cached").increment(usage.cachedTokens());
+        tokenCounter(modelTag, "output").increment(usage.outputTokens());
+        Counter.builder("roxycode.gemini.cost")
+                .description("Estimated Gemini spend from models.toml prices")
+                .baseUnit("usd")
+                .tag("model", modelTag)
+                .register(registry)
+                .increment(usage.costUsd());
+    }
+
+    public void recordResponseCache(String result) {
+        Counter.builder("roxycode.response.cache")
+                .description("Response cache lookups by result: hit, miss or bypass")
+                .tag("result", result)
+                .register(registry)
+                .increment();
+    }
+
+    public void recordToolCall(String tool, ToolCallStatus status) {
+        Counter.builder("roxycode.agent.tool.calls")
+                .description("Tool calls made by the model, by outcome")
+                .tag("tool", tool)
+                .tag("status", status.name())
+                .register(registry)
+                .increment();
+    }
+
+    public void recordJsExecution(JsExecutionStatus status, boolean warm, long nanos) {
+        Timer.builder("roxycode.js.execution")
+                .description("Sandboxed script executions, including timeouts and limit trips")
+                .tag("status", status.name())
+                .tag("context", warm ? "warm" : "cold")
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordContextCreation(boolean warm, long nanos) {
+        Timer.builder("roxycode.js.context.create")
+                .description("Time to build and initialize a sandbox context")
+                .tag("context", warm ? "warm" : "cold")
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Counter tokenCounter(String model, String type) {
+        return Counter.builder("roxycode.gemini.tokens")
+                .description("Tokens billed by Gemini; prompt excludes cached tokens")
+                .tag("model", model)
+                .tag("type", type)
+                .register(registry);
+    }
+}
@@ -1,125 +1,322 @@
 package org.roxycode;
 
-import com.google.genai.Client;
 import com.google.genai.types.*;
+import io.micronaut.context.annotation.Value;
 import jakarta.inject.Singleton;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 @Singleton
 public class AgentService {
     private static final Logger LOG = LoggerFactory.getLogger(AgentService.class);
     private final ConfigService configService;
-    private final JsExecutionService jsExecutionService;
-    private Client client;
+    private final ModelClient modelClient;
+    private final ModelClient backendClient;
+    private final AgentExecutor agentExecutor;
+    private final SessionStore sessionStore;
+    private final ContextCacheManager contextCacheManager;
+    private final ResponseCache responseCache;
+    private final ToolRegistry toolRegistry;
+    private final ToolDispatcher toolDispatcher;
+    private final HistoryCompactor historyCompactor;
+    private final UsageTracker usageTracker;
+    private final AgentMetrics metrics;
+    private final AgentTracer tracer;
+    private final int maxIterations;
 
-    public AgentService(ConfigService configService, JsExecutionService jsExecutionService) {
+    public AgentService(ConfigService configService,
+                        ModelClient modelClient,
+                        AgentExecutor agentExecutor,
+                        SessionStore sessionStore,
+                        ContextCacheManager contextCacheManager,
+                        ResponseCache responseCache,
+                        ToolRegistry toolRegistry,
+                        ToolDispatcher toolDispatcher,
+                        HistoryCompactor historyCompactor,
+                        UsageTracker usageTracker,
+                        AgentMetrics metrics,
+                        AgentTracer tracer,
+                        HedgingPolicy hedgingPolicy,
+                        @Value("${roxycode.agent.max-iterations:5}") int maxIterations) {
         this.configService = configService;
-        this.jsExecutionService = jsExecutionService;
+        this.modelClient = hedgingPolicy.apply(modelClient);
+        this.backendClient = modelClient;
+        this.agentExecutor = agentExecutor;
+        this.sessionStore = sessionStore;
+        this.contextCacheManager = contextCacheManager;
+        this.responseCache = responseCache;
+        this.toolRegistry = toolRegistry;
+        this.toolDispatcher = toolDispatcher;
+        this.historyCompactor = historyCompactor;
+        this.usageTracker = usageTracker;
+        this.metrics = metrics;
+        this.tracer = tracer;
+        this.maxIterations = Math.max(1, maxIterations);
     }
 
-    private synchronized Client getClient() {
-        if (client == null) {
-            client = Client.builder()
-                    .apiKey(configService.getApiKey())
-                    .build();
-        }
-        return client;
+    public ChatResult chat(String prompt) {
+        return chat(null, prompt);
     }
 
-    public ChatResult chat(String prompt) {
+    /**
+     * Continues the conversation of the given session, or starts a new one if the id is unknown.
+     */
+    public ChatResult chat(String sessionId, String prompt) {
+        return chat(sessionId, prompt, ChatOptions.DEFAULT);
+    }
+
+    public ChatResult chat(String sessionId, String prompt, ChatOptions options) {
+        return runAgent(sessionId, prompt, AgentListener.NONE, false, options);
+    }
+
+    /**
+     * Same agent loop as {@link #chat(String, String)}, but model output is streamed and every
+     * text delta and tool call is reported to the listener as it happens.
+     */
+    public ChatResult chatStream(String sessionId, String prompt, AgentListener listener) {
+        return chatStream(sessionId, prompt, listener, ChatOptions.DEFAULT);
+    }
+
+    public ChatResult chatStream(String sessionId, String prompt, AgentListener listener, ChatOptions options) {
+        return runAgent(sessionId, prompt, listener, true, options);
+    }
+
+    /**
+     * Runs {@link #chat(String, String, ChatOptions)} on the agent executor instead of the caller's thread.
+     * @throws AgentBusyException if the executor is saturated.
+     */
+    public CompletableFuture<ChatResult> chatAsync(String sessionId, String prompt, ChatOptions options) {
+        return agentExecutor.submit(() -> chat(sessionId, prompt, options));
+    }
+
+    public CompletableFuture<ChatResult> chatAsync(String sessionId, String prompt) {
+        return chatAsync(sessionId, prompt, ChatOptions.DEFAULT);
+    }
+
+    /**
+     * Runs {@link #chatStream(String, String, AgentListener, ChatOptions)} on the agent executor.
+     * @throws AgentBusyException if the executor is saturated.
+     */
+    public CompletableFuture<ChatResult> chatStreamAsync(String sessionId, String prompt, AgentListener listener,
+                                                         ChatOptions options) {
+        return agentExecutor.submit(() -> chatStream(sessionId, prompt, listener, options));
+    }
+
+    public CompletableFuture<ChatResult> chatStreamAsync(String sessionId, String prompt, AgentListener listener) {
+        return chatStreamAsync(sessionId, prompt, listener, ChatOptions.DEFAULT);
+    }
+
+    private ChatResult runAgent(String sessionId, String prompt, AgentListener listener, boolean stream,
+                                ChatOptions options) {
+        // Pinned so the store can't evict it while this run appends to it
+        ChatSession session = sessionStore.acquire(sessionId);
+        long start = System.nanoTime();
+        String outcome = "error";
+        int iterations = 0;
+        AgentTracer.Span chatSpan = tracer.startTrace("agent.chat")
+                .attribute("session.id", session.getId())
+                .attribute("stream", stream);
+        session.lock().lock();
         try {
-            List<Content> history = new ArrayList<>();
+            List<Content> history = new ArrayList<>(session.history());
+            int firstNewTurn = history.size();
             List<ToolExecution> executions = new ArrayList<>();
-            
+            UsageStats usage = UsageStats.EMPTY;
+
             history.add(Content.builder()
                     .role("user")
                     .parts(List.of(Part.builder().text(prompt).build()))
                     .build());
 
-            Tool tool = Tool.builder()
-                    .functionDeclarations(List.of(FunctionDeclaration.builder()
-                            .name("execute_javascript")
-                            .description("Executes a string of JavaScript in a secure sandbox. Use console.log for output.")
-                            .parameters(Schema.builder()
-                                    .type("OBJECT")
-                                    .properties(Map.of("code", Schema.builder()
-                                            .type("STRING")
-                                            .description("The JavaScript code to execute")
-                                            .build()))
-                                    .required(List.of("code"))
-                                    .build())
-                            .build()))
-                    .build();
-
-            GenerateContentConfig config = GenerateContentConfig.builder()
-                    .tools(List.of(tool))
-                    .build();
-
-            for (int i = 0; i < 5; i++) {
-                GenerateContentResponse response = getClient().models.generateContent(
-                        configService.getModelName(),
-                        history,
-                        config
-                );
-
-                Optional<List<Candidate>> candidates = response.candidates();
-                if (candidates.isEmpty() || candidates.get().isEmpty()) {
-                    return new ChatResult("Error: No candidates returned from model.", executions);
-                }
+            Tool tool = toolRegistry.tool();
+            GenerateContentConfig config = toolRegistry.config();
+            String modelName = configService.getModelName();
+            chatSpan.attribute("model", modelName);
 
-                Content responseContent = candidates.get().get(0).content().orElseThrow();
-                history.add(responseContent);
+            for (int i = 0; i < maxIterations; i++) {
+                iterations = i + 1;
+                try (AgentTracer.Span iterationSpan = chatSpan.child("agent.iteration").attribute("iteration", i)) {
+                    // The session keeps the full history; only what is sent gets compacted
+                    List<Content> contents = historyCompactor.compact(history, session.compactedTurns());
+                    if (contents != history) {
+                        iterationSpan.attribute("history.compacted", true);
+                    }
+                    String cacheKey = responseCache.isEnabled() ? ResponseCache.key(modelName, config, contents) : null;
+                    ModelTurn turn = cacheKey == null ? null : responseCache.get(cacheKey, options)
+                            .map(content -> cachedTurn(content, listener))
+                            .orElse(null);
+                    if (turn != null) {
+                        iterationSpan.attribute("response_cache", "hit");
+                    } else {
+                        // Cache calls go to the backend itself; retries and hedging are for model calls
+                        ContextCacheManager.ModelRequest request = contextCacheManager.prepare(
+                                backendClient, session.getId(), modelName, contents, List.of(tool), config);
+                        turn = callModel(modelName, request, listener, stream, iterationSpan);
+                        if (turn != null && cacheKey != null) {
+                            responseCache.put(cacheKey, turn.content(), options);
+                        }
+                    }
+                    if (turn == null) {
+                        outcome = "no_candidates";
+                        return new ChatResult("Error: No candidates returned from model.", executions, session.getId(), usage);
+                    }
 
-                List<FunctionCall> functionCalls = response.functionCalls();
-                if (functionCalls == null || functionCalls.isEmpty()) {
-                    return new ChatResult(response.text(), executions);
-                }
+                    history.add(turn.content());
+                    contextCacheManager.recordUsage(session.getId(), turn.usage());
+                    UsageStats callUsage = usageTracker.record(session, modelName, turn.usage());
+                    metrics.recordTokens(modelName, callUsage);
+                    usage = usage.plus(callUsage);
 
-                List<Part> toolResponseParts = new ArrayList<>();
-                for (FunctionCall call : functionCalls) {
-                    String functionName = call.name().orElse("");
-                    if ("execute_javascript".equals(functionName)) {
-                        Map<String, Object> args = call.args().orElse(Map.of());
-                        String code = (String) args.get("code");
-                        
-                        LOG.info("Agent requesting JS execution: {}", code);
-                        
-                        JsExecutionResult result = jsExecutionService.execute(code);
-                        
-                        // Track execution for UI
-                        String combinedOutput = (result.logs() + "\n" + (result.result() != null ? result.result() : "")).trim();
-                        if (!result.success() && result.error() != null) {
-                            combinedOutput += "\nError: " + result.error();
-                        }
-                        executions.add(new ToolExecution(code, combinedOutput));
-                        
-                        toolResponseParts.add(Part.builder()
-                                .functionResponse(FunctionResponse.builder()
-                                        .name(functionName)
-                                        .response(Map.of(
-                                                "success", result.success(),
-                                                "result", result.result() != null ? result.result() : "",
-                                                "error", result.error() != null ? result.error() : "",
-                                                "logs", result.logs() != null ? result.logs() : ""
-                                        ))
-                                        .build())
-                                .build());
+                    if (turn.functionCalls().isEmpty()) {
+                        sessionStore.append(session, history.subList(firstNewTurn, history.size()));
+                        logUsage(session, usage);
+                        outcome = "ok";
+                        return new ChatResult(turn.text(), executions, session.getId(), usage);
+                    }
+
+                    List<Part> toolResponseParts = new ArrayList<>();
+                    for (ToolOutcome toolOutcome : toolDispatcher.dispatch(turn.functionCalls(),
+                            new ToolContext(session.getId(), listener, iterationSpan))) {
+                        executions.add(toolOutcome.execution());
+                        toolResponseParts.add(toolOutcome.responsePart());
                     }
+                    history.add(Content.builder().role("tool").parts(toolResponseParts).build());
                 }
-                history.add(Content.builder().role("tool").parts(toolResponseParts).build());
             }
 
-            return new ChatResult("Error: Maximum tool call iterations reached.", executions);
+            sessionStore.append(session, history.subList(firstNewTurn, history.size()));
+            logUsage(session, usage);
+            outcome = "max_iterations";
+            return new ChatResult("Error: Maximum tool call iterations reached.", executions, session.getId(), usage);
 
         } catch (Exception e) {
             LOG.error("Failed to chat with Gemini: {}", e.getMessage(), e);
+            chatSpan.error(e.getMessage());
             throw new RuntimeException("Failed to chat with Gemini: " + e.getMessage(), e);
+        } finally {
+            session.lock().unlock();
+            sessionStore.release(session);
+            metrics.recordChat(stream, outcome, iterations, System.nanoTime() - start);
+            chatSpan.attribute("outcome", outcome).attribute("iterations", iterations).close();
+        }
+    }
+
+    private ModelTurn callModel(String modelName, ContextCacheManager.ModelRequest request, AgentListener listener,
+                                boolean stream, AgentTracer.Span parent) {
+        long start = System.nanoTime();
+        String outcome = "error";
+        try (AgentTracer.Span span = parent.child(stream ? "gemini.generate_stream" : "gemini.generate")
+                .attribute("model", modelName)
+                .attribute("cached_content", request.cacheName() != null)) {
+            try {
+                ModelTurn turn = stream
+                        ? streamTurn(modelName, request, listener)
+                        : generateTurn(modelName, request);
+                outcome = turn == null ? "no_candidates" : "ok";
+                if (turn != null && turn.usage() != null) {
+                    span.attribute("tokens.prompt", turn.usage().promptTokenCount().orElse(0))
+                            .attribute("tokens.cached", turn.usage().cachedContentTokenCount().orElse(0))
+                            .attribute("tokens.output", turn.usage().candidatesTokenCount().orElse(0));
+                }
+                return turn;
+            } catch (RuntimeException e) {
+                span.error(e.getMessage());
+                throw e;
+            } finally {
+                metrics.recordModelCall(modelName, stream, outcome, System.nanoTime() - start);
+            }
+        }
+    }
+
+    private static void logUsage(ChatSession session, UsageStats usage) {
+        LOG.info("Chat used {} prompt ({} cached) and {} output tokens over {} calls, ${}; session {} total ${}",
+                usage.promptTokens(), usage.cachedTokens(), usage.outputTokens(), usage.requests(),
+                String.format("%.4f", usage.costUsd()), session.getId(), String.format("%.4f", session.usage().costUsd()));
+    }
+
+    /**
+     * Rebuilds a turn from a cached model Content. No tokens were spent, so usage is empty.
+     */
+    private static ModelTurn cachedTurn(Content content, AgentListener listener) {
+        StringBuilder text = new StringBuilder();
+        List<FunctionCall> functionCalls = new ArrayList<>();
+        for (Part part : content.parts().orElse(List.of())) {
+            part.functionCall().ifPresent(functionCalls::add);
+            if (part.text().isPresent() && !part.thought().orElse(false)) {
+                text.append(part.text().get());
+            }
+        }
+        if (!text.isEmpty()) {
+            listener.onTextDelta(text.toString());
+        }
+        return new ModelTurn(content, text.toString(), functionCalls, null);
+    }
+
+    private ModelTurn generateTurn(String modelName, ContextCacheManager.ModelRequest request) {
+        GenerateContentResponse response = modelClient.generateContent(
+                modelName,
+                request.contents(),
+                request.config()
+        );
+
+        Optional<List<Candidate>> candidates = response.candidates();
+        if (candidates.isEmpty() || candidates.get().isEmpty()) {
+            return null;
+        }
+
+        Content responseContent = candidates.get().get(0).content().orElseThrow();
+        List<FunctionCall> functionCalls = response.functionCalls();
+        return new ModelTurn(responseContent, response.text(), functionCalls != null ? functionCalls : List.of(),
+                response.usageMetadata().orElse(null));
+    }
+
+    /**
+     * Streams one model response, forwarding text deltas to the listener, and reassembles
+     * the chunks into a single model Content for the history.
+     */
+    private ModelTurn streamTurn(String modelName, ContextCacheManager.ModelRequest request, AgentListener listener) {
+        List<Part> parts = new ArrayList<>();
+        List<FunctionCall> functionCalls = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        GenerateContentResponseUsageMetadata usage = null;
+
+        try (Stream<GenerateContentResponse> responses = modelClient.generateContentStream(
+                modelName,
+                request.contents(),
+                request.config()
+        )) {
+            for (GenerateContentResponse chunk : (Iterable<GenerateContentResponse>) responses::iterator) {
+                // Usage is cumulative; the last chunk that carries it has the totals
+                usage = chunk.usageMetadata().orElse(usage);
+                List<Part> chunkParts = chunk.candidates()
+                        .filter(candidates -> !candidates.isEmpty())
+                        .flatMap(candidates -> candidates.get(0).content())
+                        .flatMap(Content::parts)
+                        .orElse(List.of());
+                for (Part part : chunkParts) {
+                    parts.add(part);
+                    part.functionCall().ifPresent(functionCalls::add);
+                    if (part.text().isPresent() && !part.thought().orElse(false)) {
+                        text.append(part.text().get());
+                        listener.onTextDelta(part.text().get());
+                    }
+                }
+            }
         }
+
+        if (parts.isEmpty()) {
+            return null;
+        }
+        Content content = Content.builder().role("model").parts(parts).build();
+        return new ModelTurn(content, text.toString(), functionCalls, usage);
     }
+
+    private record ModelTurn(Content content, String text, List<FunctionCall> functionCalls,
+                             GenerateContentResponseUsageMetadata usage) {}
 }
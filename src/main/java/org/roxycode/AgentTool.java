@@ -0,0 +1,51 @@
+package org.roxycode;
+
+import com.google.genai.types.FunctionCall;
+import com.google.genai.types.FunctionDeclaration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A function the model may call. Every enabled {@code AgentTool} bean is offered to the model by
+ * the {@link ToolRegistry} and run by the {@link ToolDispatcher}.
+ */
+public interface AgentTool {
+
+    /**
+     * The declaration sent to the model. Called once, when the registry is built.
+     */
+    FunctionDeclaration declaration();
+
+    default String name() {
+        return declaration().name().orElseThrow();
+    }
+
+    /**
+     * Whether the tool is offered at all, e.g. only once its backing service is configured.
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * Whether several calls of one turn may run as a single batch on one thread. Meant for cheap
+     * native tools, where a task per call costs more than the calls themselves.
+     */
+    default boolean isBatchable() {
+        return false;
+    }
+
+    ToolOutcome execute(FunctionCall call, ToolContext context);
+
+    /**
+     * Runs the calls of a batch in order; only used when {@link #isBatchable()}.
+     */
+    default List<ToolOutcome> executeBatch(List<FunctionCall> calls, ToolContext context) {
+        List<ToolOutcome> outcomes = new ArrayList<>(calls.size());
+        for (FunctionCall call : calls) {
+            outcomes.add(execute(call, context));
+        }
+        return outcomes;
+    }
+}
@@ -0,0 +1,139 @@
+package org.roxycode;
+
+import io.micronaut.context.annotation.Value;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Minimal in-process tracer for agent runs: a root span per chat with child spans per
+ * iteration, Gemini call and tool call. Finished spans are kept in a bounded ring buffer
+ * and served by {@link TracesEndpoint}; nothing is exported, so no collector is needed.
+ * <p>
+ * Parents are passed explicitly rather than through a thread local, since tool calls of one
+ * iteration run on the tool executor.
+ */
+@Singleton
+public class AgentTracer {
+    private static final Logger LOG = LoggerFactory.getLogger(AgentTracer.class);
+
+    private final int maxSpans;
+    private final Deque<SpanData> finished = new ArrayDeque<>();
+
+    public AgentTracer(@Value("${roxycode.tracing.max-spans:2000}") int maxSpans) {
+        this.maxSpans = Math.max(1, maxSpans);
+    }
+
+    public Span startTrace(String name) {
+        return new Span(null, null, name);
+    }
+
+    /**
+     * Finished spans grouped by trace, most recent trace first.
+     */
+    public List<List<SpanData>> recentTraces(int limit) {
+        Map<String, List<SpanData>> byTrace = new LinkedHashMap<>();
+        synchronized (finished) {
+            var it = finished.descendingIterator();
+            while (it.hasNext()) {
+                SpanData span = it.next();
+                List<SpanData> trace = byTrace.get(span.traceId());
+                if (trace == null) {
+                    if (byTrace.size() >= limit) {
+                        continue;
+                    }
+                    trace = new ArrayList<>();
+                    byTrace.put(span.traceId(), trace);
+                }
+                trace.add(0, span);
+            }
+        }
+        return new ArrayList<>(byTrace.values());
+    }
+
+    private void finish(SpanData span) {
+        synchronized (finished) {
+            if (finished.size() >= maxSpans) {
+                finished.pollFirst();
+            }
+            finished.addLast(span);
+        }
+        if (span.parentSpanId() == null) {
+            LOG.debug("Trace {} {} took {} ms ({})", span.traceId(), span.name(),
+                    span.durationMicros() / 1000, span.status());
+        }
+    }
+
+    private static String randomHex(int chars) {
+        StringBuilder hex = new StringBuilder(chars);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (hex.length() < chars) {
+            hex.append(String.format("%016x", random.nextLong()));
+        }
+        return hex.substring(0, chars);
+    }
+
+    /**
+     * An open span. Closing it records it; closing twice has no further effect.
+     */
+    public class Span implements AutoCloseable {
+        private final String traceId;
+        private final String spanId = randomHex(16);
+        private final String parentSpanId;
+        private final String name;
+        private final long startEpochMicros = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+        private final long startNanos = System.nanoTime();
+        private final Map<String, String> attributes = new LinkedHashMap<>();
+        private String status = "OK";
+        private boolean closed;
+
+        private Span(String traceId, String parentSpanId, String name) {
+            this.traceId = traceId == null ? randomHex(32) : traceId;
+            this.parentSpanId = parentSpanId;
+            this.name = name;
+        }
+
+        public Span child(String childName) {
+            return new Span(traceId, spanId, childName);
+        }
+
+        public synchronized Span attribute(String key, Object value) {
+            attributes.put(key, String.valueOf(value));
+            return this;
+        }
+
+        public synchronized Span error(String message) {
+            status = "ERROR";
+            attributes.put("error.message", String.valueOf(message));
+            return this;
+        }
+
+        public String traceId() {
+            return traceId;
+        }
+
+        @Override
+        public void close() {
+            SpanData data;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                long duration = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+                data = new SpanData(traceId, spanId, parentSpanId, name, startEpochMicros, duration,
+                        status, Map.copyOf(attributes));
+            }
+            finish(data);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package org.roxycode;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Captures at most {@code limit} bytes of script output and counts the rest,
+ * so a chatty script can't grow the log buffer without bound.
+ */
+class BoundedOutputStream extends ByteArrayOutputStream {
+    private final int limit;
+    private long dropped;
+
+    BoundedOutputStream(int limit) {
+        this.limit = Math.max(0, limit);
+    }
+
+    @Override
+    public synchronized void write(int b) {
+        if (count < limit) {
+            super.write(b);
+        } else {
+            dropped++;
+        }
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+        int accepted = Math.max(0, Math.min(len, limit - count));
+        if (accepted > 0) {
+            super.write(b, off, accepted);
+        }
+        dropped += len - accepted;
+    }
+
+    synchronized boolean isTruncated() {
+        return dropped > 0;
+    }
+
+    /**
+     * @return the captured output, with a marker appended if anything was dropped.
+     */
+    synchronized String toLogString() {
+        String logs = toString(StandardCharsets.UTF_8);
+        if (dropped > 0) {
+            logs += "\n...[output truncated, " + dropped + " bytes dropped]";
+        }
+        return logs;
+    }
+}
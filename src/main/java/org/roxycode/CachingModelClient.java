@@ -0,0 +1,19 @@
+package org.roxycode;
+
+import com.google.genai.types.CachedContent;
+import com.google.genai.types.CreateCachedContentConfig;
+import com.google.genai.types.UpdateCachedContentConfig;
+
+/**
+ * A {@link ModelClient} whose backend supports Gemini context caching. {@link ContextCacheManager}
+ * only moves history into cached content through clients implementing this; requests to any other
+ * client always carry the full history.
+ */
+public interface CachingModelClient extends ModelClient {
+
+    CachedContent createCache(String model, CreateCachedContentConfig config);
+
+    CachedContent updateCache(String name, UpdateCachedContentConfig config);
+
+    void deleteCache(String name);
+}
@@ -1,46 +1,175 @@
 package org.roxycode;
 
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.http.HttpResponse;
+import io.micronaut.http.MutableHttpResponse;
 import io.micronaut.http.annotation.Controller;
+import io.micronaut.http.annotation.CookieValue;
 import io.micronaut.http.annotation.Get;
+import io.micronaut.http.annotation.Header;
 import io.micronaut.http.annotation.Post;
 import io.micronaut.http.annotation.Body;
+import io.micronaut.http.annotation.QueryValue;
 import io.micronaut.http.MediaType;
+import io.micronaut.http.cookie.Cookie;
+import io.micronaut.http.cookie.SameSite;
+import io.micronaut.http.sse.Event;
 import io.micronaut.views.ModelAndView;
+import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Sinks;
 
 @Controller("/chat")
 public class ChatController {
 
     private static final Logger LOG = LoggerFactory.getLogger(ChatController.class);
+    static final String SESSION_COOKIE = "roxycode_session";
+    static final String BYPASS_CACHE_HEADER = "X-Bypass-Response-Cache";
     private final AgentService agentService;
+    private final SessionStore sessionStore;
 
-    public ChatController(AgentService agentService) {
+    public ChatController(AgentService agentService, SessionStore sessionStore) {
         this.agentService = agentService;
+        this.sessionStore = sessionStore;
     }
 
+    /**
+     * Shows the conversation of the current session, or starts a fresh one when {@code new} is set.
+     */
     @Get
-    public ModelAndView<Map<String, Object>> index() {
+    public HttpResponse<ModelAndView<Map<String, Object>>> index(@Nullable @CookieValue(SESSION_COOKIE) String sessionId,
+                                                                 @Nullable @QueryValue("new") Boolean startNew) {
         LOG.info("GET /chat called");
-        return new ModelAndView<>("chat", new HashMap<>());
+        Map<String, Object> model = new HashMap<>();
+        if (Boolean.TRUE.equals(startNew) || !SessionStore.isValidId(sessionId)) {
+            if (sessionId != null) {
+                sessionStore.remove(sessionId);
+            }
+            sessionId = SessionStore.newSessionId();
+        } else {
+            model.put("exchanges", sessionStore.find(sessionId)
+                    .map(session -> ChatExchange.fromHistory(session.history()))
+                    .orElse(List.of()));
+        }
+        return withSessionCookie(HttpResponse.ok(new ModelAndView<>("chat", model)), sessionId);
     }
 
+    /**
+     * The agent loop runs on the {@link AgentExecutor}, so the event loop is released immediately.
+     * A saturated executor surfaces as 429 via {@link AgentBusyExceptionHandler}.
+     */
     @Post(consumes = MediaType.APPLICATION_FORM_URLENCODED)
-    public ModelAndView<Map<String, Object>> postChat(@Body("prompt") String prompt) {
+    public CompletableFuture<HttpResponse<ModelAndView<Map<String, Object>>>> postChat(@Body("prompt") String prompt,
+                                                                                      @Nullable @CookieValue(SESSION_COOKIE) String cookieSessionId,
+                                                                                      @Nullable @Header(BYPASS_CACHE_HEADER) Boolean bypassCache) {
         LOG.info("POST /chat called with prompt: {}", prompt);
+        String sessionId = SessionStore.isValidId(cookieSessionId) ? cookieSessionId : SessionStore.newSessionId();
         Map<String, Object> model = new HashMap<>();
         model.put("prompt", prompt);
-        try {
-            ChatResult result = agentService.chat(prompt);
-            LOG.info("AI response received: {}", result.text());
-            model.put("response", result.text());
-            model.put("toolExecutions", result.toolExecutions());
-        } catch (Exception e) {
-            LOG.error("Chat error: {}", e.getMessage());
-            model.put("error", e.getMessage());
+        return agentService.chatAsync(sessionId, prompt, optionsFor(bypassCache))
+                .handle((result, error) -> {
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                        LOG.error("Chat error: {}", cause.getMessage());
+                        model.put("error", cause.getMessage());
+                    } else {
+                        LOG.info("AI response received: {}", result.text());
+                        model.put("response", result.text());
+                        model.put("toolExecutions", result.toolExecutions());
+                        model.put("usage", result.usage());
+                    }
+                    return withSessionCookie(HttpResponse.ok(new ModelAndView<>("chat", model)), sessionId);
+                });
+    }
+
+    /**
+     * Streams the agent run as Server-Sent Events: {@code text} deltas, {@code tool-start} and
+     * {@code tool-finish} for each sandbox execution, then a final {@code done} or {@code failure}.
+     */
+    @Get(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM)
+    public Publisher<Event<Map<String, Object>>> streamChat(@QueryValue String prompt,
+                                                            @Nullable @CookieValue(SESSION_COOKIE) String cookieSessionId,
+                                                            @Nullable @Header(BYPASS_CACHE_HEADER) Boolean bypassCache) {
+        LOG.info("GET /chat/stream called with prompt: {}", prompt);
+        Sinks.Many<Event<Map<String, Object>>> sink = Sinks.many().unicast().onBackpressureBuffer();
+        long start = System.nanoTime();
+
+        String sessionId = cookieSessionId;
+        if (!SessionStore.isValidId(sessionId)) {
+            // No cookie to continue from; tell the page which session this stream started
+            sessionId = SessionStore.newSessionId();
+            emit(sink, Event.of(Map.<String, Object>of("id", sessionId)).name("session"));
+        }
+
+        AgentListener listener = new AgentListener() {
+            private boolean firstToken = true;
+
+            @Override
+            public void onTextDelta(String text) {
+                if (firstToken) {
+                    firstToken = false;
+                    LOG.info("Time to first token: {} ms", (System.nanoTime() - start) / 1_000_000);
+                }
+                emit(sink, Event.of(Map.<String, Object>of("text", text)).name("text"));
+            }
+
+            @Override
+            public void onToolCallStarted(String code) {
+                emit(sink, Event.of(Map.<String, Object>of("code", code != null ? code : "")).name("tool-start"));
+            }
+
+            @Override
+            public void onToolCallFinished(ToolExecution execution) {
+                emit(sink, Event.of(Map.<String, Object>of(
+                        "code", execution.code() != null ? execution.code() : "",
+                        "output", execution.output())).name("tool-finish"));
+            }
+        };
+
+        // Submitting eagerly lets a saturated executor fail the request with 429 before streaming starts
+        agentService.chatStreamAsync(sessionId, prompt, listener, optionsFor(bypassCache))
+                .whenComplete((result, error) -> {
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                        LOG.error("Chat error: {}", cause.getMessage());
+                        emit(sink, Event.of(Map.<String, Object>of("message", String.valueOf(cause.getMessage()))).name("failure"));
+                    } else {
+                        LOG.info("AI response streamed in {} ms", (System.nanoTime() - start) / 1_000_000);
+                        emit(sink, Event.of(Map.<String, Object>of(
+                                "text", result.text() != null ? result.text() : "",
+                                "usage", result.usage())).name("done"));
+                    }
+                    synchronized (sink) {
+                        sink.tryEmitComplete();
+                    }
+                });
+        return sink.asFlux();
+    }
+
+    /**
+     * Browsers send {@code Cache-Control: no-cache} on every EventSource request, so bypassing the
+     * response cache takes an explicit header instead.
+     */
+    private static ChatOptions optionsFor(Boolean bypassCache) {
+        return new ChatOptions(Boolean.TRUE.equals(bypassCache));
+    }
+
+    private static <T> MutableHttpResponse<T> withSessionCookie(MutableHttpResponse<T> response, String sessionId) {
+        return response.cookie(Cookie.of(SESSION_COOKIE, sessionId).path("/").sameSite(SameSite.Lax));
+    }
+
+    /**
+     * Parallel tool calls report from several threads, while a sink only accepts serialized signals.
+     */
+    private static void emit(Sinks.Many<Event<Map<String, Object>>> sink, Event<Map<String, Object>> event) {
+        synchronized (sink) {
+            sink.tryEmitNext(event);
         }
-        return new ModelAndView<>("chat", model);
     }
 }
@@ -0,0 +1,91 @@
+package org.roxycode;
+
+import com.google.genai.types.Content;
+import com.google.genai.types.FunctionCall;
+import com.google.genai.types.FunctionResponse;
+import com.google.genai.types.Part;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A user prompt and the agent's answer, rebuilt from a session's raw history for display.
+ */
+public record ChatExchange(String prompt, String response, List<ToolExecution> toolExecutions) {
+
+    public static List<ChatExchange> fromHistory(List<Content> history) {
+        List<ChatExchange> exchanges = new ArrayList<>();
+        String prompt = null;
+        String response = null;
+        List<ToolExecution> executions = new ArrayList<>();
+        Deque<String> pendingCode = new ArrayDeque<>();
+
+        for (Content content : history) {
+            String role = content.role().orElse("");
+            List<Part> parts = content.parts().orElse(List.of());
+            boolean hasFunctionResponse = parts.stream().anyMatch(p -> p.functionResponse().isPresent());
+
+            if ("user".equals(role) && !hasFunctionResponse) {
+                if (prompt != null) {
+                    exchanges.add(new ChatExchange(prompt, response, executions));
+                }
+                prompt = textOf(parts);
+                response = null;
+                executions = new ArrayList<>();
+                pendingCode.clear();
+            } else if ("model".equals(role)) {
+                for (Part part : parts) {
+                    part.functionCall()
+                            .flatMap(FunctionCall::args)
+                            .map(args -> args.get("code"))
+                            .ifPresent(code -> pendingCode.add(String.valueOf(code)));
+                }
+                String text = textOf(parts);
+                if (!text.isEmpty()) {
+                    response = text;
+                }
+            } else {
+                for (Part part : parts) {
+                    Map<String, Object> result = part.functionResponse()
+                            .flatMap(FunctionResponse::response)
+                            .orElse(null);
+                    if (result != null) {
+                        String code = pendingCode.isEmpty() ? "" : pendingCode.poll();
+                        executions.add(new ToolExecution(code, outputOf(result)));
+                    }
+                }
+            }
+        }
+        if (prompt != null) {
+            exchanges.add(new ChatExchange(prompt, response, executions));
+        }
+        return exchanges;
+    }
+
+    private static String outputOf(Map<String, Object> result) {
+        StringBuilder output = new StringBuilder();
+        for (String key : List.of("logs", "result", "error")) {
+            Object value = result.get(key);
+            if (value != null && !String.valueOf(value).isBlank()) {
+                if (output.length() > 0) {
+                    output.append('\n');
+                }
+                output.append("error".equals(key) ? "Error: " : "").append(String.valueOf(value).trim());
+            }
+        }
+        return output.toString();
+    }
+
+    private static String textOf(List<Part> parts) {
+        StringBuilder text = new StringBuilder();
+        for (Part part : parts) {
+            if (!part.thought().orElse(false)) {
+                part.text().ifPresent(text::append);
+            }
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,10 @@
+package org.roxycode;
+
+/**
+ * Per-request switches for an agent run.
+ *
+ * @param bypassResponseCache always ask the model, neither reading from nor writing to the {@link ResponseCache}
+ */
+public record ChatOptions(boolean bypassResponseCache) {
+    public static final ChatOptions DEFAULT = new ChatOptions(false);
+}
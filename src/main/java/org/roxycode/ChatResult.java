@@ -2,4 +2,4 @@ package org.roxycode;
 
 import java.util.List;
 
-public record ChatResult(String text, List<ToolExecution> toolExecutions) {}
+public record ChatResult(String text, List<ToolExecution> toolExecutions, String sessionId, UsageStats usage) {}
@@ -0,0 +1,104 @@
+package org.roxycode;
+
+import com.google.genai.types.Content;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One multi-turn conversation. History only ever grows by appending whole turns;
+ * {@link #lock()} serializes agent runs so two requests can't interleave turns.
+ */
+public class ChatSession {
+    private final String id;
+    private final List<Content> history = new ArrayList<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicInteger pins = new AtomicInteger();
+    // Guarded by lock
+    private final Map<Content, Content> compactedTurns = new IdentityHashMap<>();
+    private volatile long lastAccessMillis = System.currentTimeMillis();
+    private volatile boolean removed;
+    private UsageStats usage = UsageStats.EMPTY;
+
+    ChatSession(String id, List<Content> initialHistory) {
+        this.id = id;
+        this.history.addAll(initialHistory);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public synchronized List<Content> history() {
+        return List.copyOf(history);
+    }
+
+    public synchronized int size() {
+        return history.size();
+    }
+
+    synchronized void append(List<Content> turns) {
+        history.addAll(turns);
+    }
+
+    /**
+     * Tokens and cost of this session since it was created or restored.
+     */
+    public synchronized UsageStats usage() {
+        return usage;
+    }
+
+    synchronized void addUsage(UsageStats call) {
+        usage = usage.plus(call);
+    }
+
+    /**
+     * The compacted form of older turns, by source turn, for {@link HistoryCompactor}.
+     * Only used while holding {@link #lock()}.
+     */
+    Map<Content, Content> compactedTurns() {
+        return compactedTurns;
+    }
+
+    public ReentrantLock lock() {
+        return lock;
+    }
+
+    /**
+     * Pinned sessions are in use by a run and stay in the {@link SessionStore}.
+     */
+    boolean isPinned() {
+        return pins.get() > 0;
+    }
+
+    void pin() {
+        pins.incrementAndGet();
+    }
+
+    void unpin() {
+        pins.decrementAndGet();
+    }
+
+    /**
+     * Removed while pinned: the {@link SessionStore} drops it once the last run releases it.
+     */
+    boolean isRemoved() {
+        return removed;
+    }
+
+    void markRemoved() {
+        removed = true;
+    }
+
+    long getLastAccessMillis() {
+        return lastAccessMillis;
+    }
+
+    void touch() {
+        lastAccessMillis = System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,661 @@
+package org.roxycode;
+
+import io.micronaut.context.annotation.Value;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.roxycode.sandbox.SandboxEntry;
+import org.roxycode.sandbox.SandboxWalker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedFileSystemException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * A trigram index over the workspace files, so the model can search code without a script
+ * reading every file.
+ * <p>
+ * Each text file up to {@code roxycode.index.max-file-bytes} is broken into its lower-cased
+ * three-character sequences, and every trigram keeps the ids of the files containing it. A search
+ * intersects the lists of the trigrams its text can't match without and reads only the files that
+ * survive. For a regular expression those are the literal runs outside groups and alternations.
+ * <p>
+ * The index is built in the background on startup and kept current by watching the workspace
+ * directories. A changed file gets a fresh id and its old one simply stops being live, so posting
+ * lists only grow at the end and stay sorted. Once dead ids outnumber live ones the index is
+ * rebuilt. It covers the shared workspace; session overlays are not indexed.
+ */
+@Singleton
+public class CodeIndex {
+    private static final Logger LOG = LoggerFactory.getLogger(CodeIndex.class);
+    private static final int BINARY_PROBE_BYTES = 8000;
+    private static final int MAX_LINE_CHARS = 300;
+    private static final int MIN_DEAD_BEFORE_REBUILD = 1024;
+    private static final long CLOSE_WAIT_MS = TimeUnit.SECONDS.toMillis(5);
+    private static final long BUILD_WAIT_MS = TimeUnit.SECONDS.toMillis(10);
+    // An inline flag group turning on (or off) comments mode, e.g. (?x), (?ix) or (?x:...)
+    private static final Pattern COMMENTS_FLAG = Pattern.compile("\\(\\?[a-zA-Z-]*x");
+
+    private final FileSystem fileSystem;
+    private final int maxFileBytes;
+    private final int maxResults;
+    private final Set<String> excludedDirs;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final CountDownLatch built = new CountDownLatch(1);
+    // Only touched by the index thread
+    private final Map<WatchKey, String> watchedDirs = new HashMap<>();
+    private final Map<String, WatchKey> dirKeys = new HashMap<>();
+    private final WatchService watcher;
+    private final Thread indexer;
+    private volatile Index index = new Index();
+    private volatile boolean closed;
+
+    @Inject
+    public CodeIndex(WorkspaceService workspace,
+                     @Value("${roxycode.index.enabled:true}") boolean enabled,
+                     @Value("${roxycode.index.max-file-bytes:1048576}") int maxFileBytes,
+                     @Value("${roxycode.index.max-results:100}") int maxResults,
+                     @Value("${roxycode.index.exclude-dirs:.git,node_modules,target,build}") String excludeDirs) {
+        this(enabled ? workspace.fileSystem() : null, maxFileBytes, maxResults, excludeDirs);
+    }
+
+    CodeIndex(FileSystem fileSystem, int maxFileBytes, int maxResults, String excludeDirs) {
+        this.fileSystem = fileSystem;
+        this.maxFileBytes = Math.max(1, maxFileBytes);
+        this.maxResults = Math.max(1, maxResults);
+        this.excludedDirs = excludeDirs == null || excludeDirs.isBlank() ? Set.of()
+                : Set.of(Arrays.stream(excludeDirs.split(",")).map(String::trim).filter(s -> !s.isEmpty()).distinct().toArray(String[]::new));
+        this.watcher = fileSystem == null ? null : newWatcher(fileSystem);
+        if (fileSystem == null) {
+            this.indexer = null;
+            built.countDown();
+            return;
+        }
+        this.indexer = new Thread(this::run, "code-index");
+        indexer.setDaemon(true);
+        indexer.start();
+    }
+
+    private static WatchService newWatcher(FileSystem fileSystem) {
+        try {
+            return fileSystem.newWatchService();
+        } catch (IOException | UnsupportedOperationException e) {
+            LOG.warn("Workspace cannot be watched, the code index will not follow changes: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return fileSystem != null;
+    }
+
+    public int maxResults() {
+        return maxResults;
+    }
+
+    /**
+     * How many files are currently searchable, once the initial build has finished.
+     *
+     * @throws IllegalStateException if the initial build is still running after a short wait
+     */
+    public int indexedFiles() throws InterruptedException {
+        awaitBuilt();
+        lock.readLock().lock();
+        try {
+            return index.ids.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the lines matching {@code query}, in path order. Waits a short while for the initial
+     * build and gives up with an {@link IllegalStateException} if it is still running.
+     *
+     * @param regex whether {@code query} is a {@link Pattern} rather than a plain substring
+     * @param glob  limits the search to paths matching this glob, relative to the workspace
+     *              root like {@code src/**}{@code /*.java}; null or empty searches everything
+     * @param limit the most matches to return, capped at {@code roxycode.index.max-results}
+     * @throws java.util.regex.PatternSyntaxException if {@code query} is not a valid expression
+     */
+    public CodeSearchResult search(String query, boolean regex, String glob, int limit) throws InterruptedException {
+        if (fileSystem == null) {
+            throw new IllegalStateException("No workspace to search");
+        }
+        if (query == null || query.isEmpty()) {
+            throw new IllegalArgumentException("Query must not be empty");
+        }
+        Predicate<String> matcher;
+        List<String> literals;
+        if (regex) {
+            Pattern pattern = Pattern.compile(query);
+            matcher = line -> pattern.matcher(line).find();
+            literals = requiredLiterals(query);
+        } else {
+            matcher = line -> line.contains(query);
+            literals = List.of(query);
+        }
+        PathMatcher pathMatcher = glob == null || glob.isEmpty() ? null : FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        int max = limit <= 0 ? maxResults : Math.min(limit, maxResults);
+
+        awaitBuilt();
+        List<String> candidates;
+        lock.readLock().lock();
+        try {
+            candidates = index.candidates(literals);
+        } finally {
+            lock.readLock().unlock();
+        }
+        candidates.sort(Comparator.naturalOrder());
+
+        List<CodeMatch> matches = new ArrayList<>();
+        int scanned = 0;
+        for (String relative : candidates) {
+            if (pathMatcher != null && !pathMatcher.matches(FileSystems.getDefault().getPath(relative))) {
+                continue;
+            }
+            String text = readText(fileSystem.getPath("/" + relative));
+            if (text == null) {
+                continue;
+            }
+            scanned++;
+            int lineNumber = 0;
+            for (int start = 0; start < text.length(); ) {
+                int end = text.indexOf('\n', start);
+                if (end < 0) {
+                    end = text.length();
+                }
+                lineNumber++;
+                String line = text.substring(start, end > start && text.charAt(end - 1) == '\r' ? end - 1 : end);
+                if (matcher.test(line)) {
+                    if (matches.size() == max) {
+                        return new CodeSearchResult(matches, scanned, true);
+                    }
+                    matches.add(new CodeMatch("/" + relative, lineNumber,
+                            line.length() > MAX_LINE_CHARS ? line.substring(0, MAX_LINE_CHARS) + "..." : line));
+                }
+                start = end + 1;
+            }
+        }
+        return new CodeSearchResult(matches, scanned, false);
+    }
+
+    private void awaitBuilt() throws InterruptedException {
+        if (!built.await(BUILD_WAIT_MS, TimeUnit.MILLISECONDS)) {
+            throw new IllegalStateException("The code index is still being built, try again shortly");
+        }
+    }
+
+    /**
+     * The literal runs any match of {@code regex} must contain. Conservative: alternations give
+     * up entirely, and anything inside a group, class or quantified by {@code ?}, {@code *} or
+     * {@code {}} is left out.
+     */
+    static List<String> requiredLiterals(String regex) {
+        if (regex.indexOf('|') >= 0 || COMMENTS_FLAG.matcher(regex).find() || regex.contains("\\Q")) {
+            return List.of();
+        }
+        List<String> literals = new ArrayList<>();
+        StringBuilder run = new StringBuilder();
+        int depth = 0;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\' && i + 1 < regex.length()) {
+                char next = regex.charAt(++i);
+                if (depth == 0 && !Character.isLetterOrDigit(next)) {
+                    run.append(next);
+                } else {
+                    // A class, back reference or code point escape; skip its arguments too
+                    flush(run, literals);
+                    i = skipEscape(regex, i);
+                }
+                continue;
+            }
+            switch (c) {
+                case '[' -> {
+                    flush(run, literals);
+                    i = skipClass(regex, i);
+                }
+                case '(' -> {
+                    flush(run, literals);
+                    depth++;
+                }
+                case ')' -> {
+                    flush(run, literals);
+                    depth = Math.max(0, depth - 1);
+                }
+                case '?', '*' -> {
+                    dropLast(run);
+                    flush(run, literals);
+                }
+                case '{' -> {
+                    dropLast(run);
+                    flush(run, literals);
+                    int close = regex.indexOf('}', i);
+                    i = close < 0 ? regex.length() : close;
+                }
+                case '+', '.', '^', '$' -> flush(run, literals);
+                default -> {
+                    if (depth == 0) {
+                        run.append(c);
+                    }
+                }
+            }
+        }
+        flush(run, literals);
+        return literals;
+    }
+
+    private static void flush(StringBuilder run, List<String> literals) {
+        if (run.length() >= 3) {
+            literals.add(run.toString());
+        }
+        run.setLength(0);
+    }
+
+    private static void dropLast(StringBuilder run) {
+        if (!run.isEmpty()) {
+            run.setLength(run.length() - 1);
+        }
+    }
+
+    private static int skipEscape(String regex, int i) {
+        char kind = regex.charAt(i);
+        int end = switch (kind) {
+            case 'x' -> i + 1 < regex.length() && regex.charAt(i + 1) == '{' ? regex.indexOf('}', i) : i + 2;
+            case 'u' -> i + 4;
+            case 'c' -> i + 1;
+            case 'p', 'P' -> i + 1 < regex.length() && regex.charAt(i + 1) == '{' ? regex.indexOf('}', i) : i + 1;
+            case 'k' -> regex.indexOf('>', i);
+            case '0' -> {
+                int j = i;
+                while (j + 1 < regex.length() && j - i < 3 && regex.charAt(j + 1) >= '0' && regex.charAt(j + 1) <= '7') {
+                    j++;
+                }
+                yield j;
+            }
+            default -> i;
+        };
+        return end < 0 ? regex.length() : Math.min(end, regex.length() - 1);
+    }
+
+    private static int skipClass(String regex, int open) {
+        int i = open + 1;
+        if (i < regex.length() && regex.charAt(i) == '^') {
+            i++;
+        }
+        if (i < regex.length() && regex.charAt(i) == ']') {
+            i++;
+        }
+        int nested = 0;
+        for (; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                nested++;
+            } else if (c == ']') {
+                if (nested == 0) {
+                    return i;
+                }
+                nested--;
+            }
+        }
+        return regex.length();
+    }
+
+    /**
+     * The sorted, distinct trigrams of {@code text}, each packed as three lower-cased chars.
+     */
+    static long[] trigrams(CharSequence text) {
+        int n = text.length();
+        if (n < 3) {
+            return new long[0];
+        }
+        long[] result = new long[n - 2];
+        char a = Character.toLowerCase(text.charAt(0));
+        char b = Character.toLowerCase(text.charAt(1));
+        for (int i = 2; i < n; i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            result[i - 2] = ((long) a << 32) | ((long) b << 16) | c;
+            a = b;
+            b = c;
+        }
+        Arrays.sort(result);
+        int distinct = 1;
+        for (int i = 1; i < result.length; i++) {
+            if (result[i] != result[distinct - 1]) {
+                result[distinct++] = result[i];
+            }
+        }
+        return Arrays.copyOf(result, distinct);
+    }
+
+    /**
+     * Reads a file as text, or returns null if it's gone, too large or looks binary.
+     */
+    private String readText(Path path) {
+        try {
+            if (Files.size(path) > maxFileBytes) {
+                return null;
+            }
+            byte[] bytes = Files.readAllBytes(path);
+            for (int i = 0, probe = Math.min(bytes.length, BINARY_PROBE_BYTES); i < probe; i++) {
+                if (bytes[i] == 0) {
+                    return null;
+                }
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        } catch (IOException | UncheckedIOException e) {
+            return null;
+        }
+    }
+
+    private void run() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            if (!stopped(e)) {
+                LOG.error("Failed to index the workspace: {}", e.getMessage(), e);
+            }
+        } finally {
+            built.countDown();
+        }
+        if (watcher == null) {
+            return;
+        }
+        while (!closed) {
+            WatchKey key;
+            try {
+                key = watcher.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            try {
+                String dir = watchedDirs.get(key);
+                boolean overflow = false;
+                Set<String> changed = new LinkedHashSet<>();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        overflow = true;
+                    } else if (dir != null) {
+                        String name = event.context().toString();
+                        changed.add(dir.isEmpty() ? name : dir + "/" + name);
+                    }
+                }
+                if (!key.reset()) {
+                    String gone = watchedDirs.remove(key);
+                    if (gone != null) {
+                        dirKeys.remove(gone, key);
+                    }
+                }
+                if (overflow) {
+                    rebuild();
+                    continue;
+                }
+                changed.forEach(this::refresh);
+                Index current = index;
+                if (current.dead > Math.max(MIN_DEAD_BEFORE_REBUILD, current.ids.size())) {
+                    rebuild();
+                }
+            } catch (RuntimeException e) {
+                if (stopped(e)) {
+                    return;
+                }
+                LOG.warn("Failed to update the code index: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Whether {@code e} only means the index or the workspace was closed in the middle of a scan.
+     */
+    private boolean stopped(RuntimeException e) {
+        return closed || e instanceof ClosedFileSystemException;
+    }
+
+    private void rebuild() {
+        long start = System.nanoTime();
+        Index fresh = new Index();
+        scan(fresh, fileSystem.getPath("/"), "");
+        if (closed) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            index = fresh;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        LOG.info("Indexed {} workspace files ({} trigrams) in {} ms", fresh.ids.size(), fresh.postings.size(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Brings one changed entry up to date: re-reads a file, indexes a new directory, or drops
+     * whatever was indexed under a path that is gone.
+     */
+    private void refresh(String relative) {
+        Path path = fileSystem.getPath("/" + relative);
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            attrs = null;
+        }
+        if (attrs != null && attrs.isDirectory()) {
+            if (!dirKeys.containsKey(relative) && !excludedDirs.contains(path.getFileName().toString())) {
+                scan(index, path, relative);
+            }
+            return;
+        }
+        if (attrs != null && attrs.isRegularFile()) {
+            indexFile(index, path, relative);
+            return;
+        }
+        dirKeys.keySet().removeIf(dir -> dir.equals(relative) || dir.startsWith(relative + "/"));
+        lock.writeLock().lock();
+        try {
+            index.removeTree(relative);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void scan(Index target, Path dir, String relative) {
+        if (closed) {
+            return;
+        }
+        watch(dir, relative);
+        try (Stream<SandboxEntry> entries = SandboxWalker.walk(dir, 1, null)) {
+            for (SandboxEntry entry : (Iterable<SandboxEntry>) entries::iterator) {
+                if (closed) {
+                    return;
+                }
+                String name = entry.path().getFileName().toString();
+                String child = relative.isEmpty() ? name : relative + "/" + name;
+                if (entry.attributes().isDirectory()) {
+                    if (!excludedDirs.contains(name)) {
+                        scan(target, entry.path(), child);
+                    }
+                } else if (entry.attributes().isRegularFile()) {
+                    indexFile(target, entry.path(), child);
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            LOG.debug("Skipping unreadable directory {}: {}", dir, e.getMessage());
+        }
+    }
+
+    private void watch(Path dir, String relative) {
+        if (watcher == null) {
+            return;
+        }
+        try {
+            WatchKey key = dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            watchedDirs.put(key, relative);
+            dirKeys.put(relative, key);
+        } catch (IOException | ClosedWatchServiceException e) {
+            LOG.debug("Cannot watch {}: {}", dir, e.getMessage());
+        }
+    }
+
+    private void indexFile(Index target, Path path, String relative) {
+        String text = readText(path);
+        long[] fileTrigrams = text == null ? null : trigrams(text);
+        lock.writeLock().lock();
+        try {
+            if (fileTrigrams == null) {
+                target.remove(relative);
+            } else {
+                target.add(relative, fileTrigrams);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Stops indexing and waits for a scan in progress to notice, so the workspace can be closed
+     * after this returns.
+     */
+    @PreDestroy
+    void close() throws IOException {
+        closed = true;
+        if (watcher != null) {
+            watcher.close();
+        }
+        if (indexer != null) {
+            try {
+                indexer.join(CLOSE_WAIT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * The posting lists and the live files they refer to. Guarded by {@link #lock}.
+     */
+    private static final class Index {
+        final Map<Long, Postings> postings = new HashMap<>();
+        final List<String> paths = new ArrayList<>();
+        final Map<String, Integer> ids = new HashMap<>();
+        int dead;
+
+        void add(String path, long[] trigrams) {
+            remove(path);
+            int id = paths.size();
+            paths.add(path);
+            ids.put(path, id);
+            for (long trigram : trigrams) {
+                postings.computeIfAbsent(trigram, t -> new Postings()).add(id);
+            }
+        }
+
+        void remove(String path) {
+            Integer id = ids.remove(path);
+            if (id != null) {
+                paths.set(id, null);
+                dead++;
+            }
+        }
+
+        void removeTree(String path) {
+            remove(path);
+            String prefix = path + "/";
+            for (String each : List.copyOf(ids.keySet())) {
+                if (each.startsWith(prefix)) {
+                    remove(each);
+                }
+            }
+        }
+
+        /**
+         * The live files containing every trigram of every literal; all live files when no
+         * literal is long enough to narrow the search.
+         */
+        List<String> candidates(List<String> literals) {
+            List<Postings> lists = new ArrayList<>();
+            for (String literal : literals) {
+                for (long trigram : trigrams(literal)) {
+                    Postings list = postings.get(trigram);
+                    if (list == null) {
+                        return new ArrayList<>();
+                    }
+                    lists.add(list);
+                }
+            }
+            if (lists.isEmpty()) {
+                return new ArrayList<>(ids.keySet());
+            }
+            lists.sort(Comparator.comparingInt(list -> list.size));
+            Postings smallest = lists.get(0);
+            List<String> result = new ArrayList<>();
+            next:
+            for (int i = 0; i < smallest.size; i++) {
+                int id = smallest.ids[i];
+                String path = paths.get(id);
+                if (path == null) {
+                    continue;
+                }
+                for (int j = 1; j < lists.size(); j++) {
+                    if (!lists.get(j).contains(id)) {
+                        continue next;
+                    }
+                }
+                result.add(path);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * File ids in ascending order; ids are handed out increasingly, so adding appends.
+     */
+    private static final class Postings {
+        int[] ids = new int[2];
+        int size;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        boolean contains(int id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+    }
+}
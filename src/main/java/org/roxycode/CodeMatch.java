@@ -0,0 +1,9 @@
+package org.roxycode;
+
+import io.micronaut.serde.annotation.Serdeable;
+
+/**
+ * One line that matched a code search; {@code line} is 1-based.
+ */
+@Serdeable
+public record CodeMatch(String path, int line, String text) {}
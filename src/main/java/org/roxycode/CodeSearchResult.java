@@ -0,0 +1,12 @@
+package org.roxycode;
+
+import io.micronaut.serde.annotation.Serdeable;
+
+import java.util.List;
+
+/**
+ * @param filesScanned how many files the index could not rule out and had to be read
+ * @param truncated    whether matches were dropped because the result limit was reached
+ */
+@Serdeable
+public record CodeSearchResult(List<CodeMatch> matches, int filesScanned, boolean truncated) {}
@@ -7,6 +7,7 @@ import io.micronaut.http.annotation.Post;
 import io.micronaut.http.annotation.Consumes;
 import io.micronaut.http.MediaType;
 import io.micronaut.views.View;
+import java.util.Comparator;
 import java.util.Map;
 import java.util.List;
 import io.micronaut.http.annotation.Body;
@@ -16,9 +17,20 @@ import io.micronaut.serde.annotation.Serdeable;
 public class ConfigController {
 
     private final ConfigService configService;
+    private static final int TOP_SESSIONS = 10;
 
-    public ConfigController(ConfigService configService) {
+    private final JsExecutionService jsExecutionService;
+    private final UsageTracker usageTracker;
+    private final SessionStore sessionStore;
+    private final ResponseCache responseCache;
+
+    public ConfigController(ConfigService configService, JsExecutionService jsExecutionService,
+                            UsageTracker usageTracker, SessionStore sessionStore, ResponseCache responseCache) {
         this.configService = configService;
+        this.jsExecutionService = jsExecutionService;
+        this.usageTracker = usageTracker;
+        this.sessionStore = sessionStore;
+        this.responseCache = responseCache;
     }
 
     @Get
@@ -26,10 +38,32 @@ public class ConfigController {
     public Map<String, Object> index() {
         return Map.of(
             "currentModel", configService.getModelName(),
-            "supportedModels", List.of("gemini-3-pro-preview", "gemini-3-flash-preview")
+            "supportedModels", List.of("gemini-3-pro-preview", "gemini-3-flash-preview"),
+            "jsPool", jsExecutionService.poolStats(),
+            "sourceCache", jsExecutionService.sourceCacheStats(),
+            "usage", usageReport(),
+            "responseCache", responseCache.stats()
         );
     }
 
+    /**
+     * Token and cost totals as JSON, for budgeting scripts that don't want to scrape the page.
+     */
+    @Get("/usage")
+    public UsageReport usage() {
+        return usageReport();
+    }
+
+    private UsageReport usageReport() {
+        List<SessionUsage> topSessions = sessionStore.sessions().stream()
+                .map(session -> new SessionUsage(session.getId(), session.usage()))
+                .filter(session -> session.usage().requests() > 0)
+                .sorted(Comparator.comparingDouble((SessionUsage session) -> session.usage().costUsd()).reversed())
+                .limit(TOP_SESSIONS)
+                .toList();
+        return new UsageReport(usageTracker.total(), usageTracker.byModel(), topSessions);
+    }
+
     @Post("/model")
     @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
     public HttpResponse<?> updateModel(@Body ModelUpdateRequest request) {
@@ -39,4 +73,10 @@ public class ConfigController {
 
     @Serdeable
     public record ModelUpdateRequest(String modelName) {}
+
+    @Serdeable
+    public record SessionUsage(String sessionId, UsageStats usage) {}
+
+    @Serdeable
+    public record UsageReport(UsageStats total, Map<String, UsageStats> byModel, List<SessionUsage> topSessions) {}
 }
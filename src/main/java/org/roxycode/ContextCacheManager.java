@@ -0,0 +1,241 @@
+package org.roxycode;
+
+import com.google.genai.types.CachedContent;
+import com.google.genai.types.Content;
+import com.google.genai.types.CreateCachedContentConfig;
+import com.google.genai.types.GenerateContentConfig;
+import com.google.genai.types.GenerateContentResponseUsageMetadata;
+import com.google.genai.types.Tool;
+import com.google.genai.types.UpdateCachedContentConfig;
+import io.micronaut.context.annotation.Value;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Moves the stable prefix of long sessions (tool declarations plus older history) into
+ * Gemini cached content, so later requests only send and pay full price for the new turns.
+ * <p>
+ * A cache is created once the uncached part of the prompt crosses {@code min-tokens} and the
+ * models.toml prices say the expected reuse within the TTL outweighs the storage cost.
+ * Caches are refreshed while the session stays active and replaced when the prefix changes.
+ */
+@Singleton
+public class ContextCacheManager {
+    private static final Logger LOG = LoggerFactory.getLogger(ContextCacheManager.class);
+    private static final int MAX_TRACKED_SESSIONS = 1000;
+
+    private final ModelPricingRegistry pricingRegistry;
+    private final boolean enabled;
+    private final int minTokens;
+    private final Duration ttl;
+    private final ConcurrentHashMap<String, SessionCache> sessions = new ConcurrentHashMap<>();
+
+    public ContextCacheManager(ModelPricingRegistry pricingRegistry,
+                               @Value("${roxycode.cache.enabled:true}") boolean enabled,
+                               @Value("${roxycode.cache.min-tokens:4096}") int minTokens,
+                               @Value("${roxycode.cache.ttl-minutes:10}") long ttlMinutes) {
+        this.pricingRegistry = pricingRegistry;
+        this.enabled = enabled;
+        this.minTokens = minTokens;
+        this.ttl = Duration.ofMinutes(Math.max(1, ttlMinutes));
+    }
+
+    /**
+     * The contents and config to actually send: either the full history with the given tools,
+     * or only the uncached tail pointing at the session's cached content.
+     */
+    public record ModelRequest(List<Content> contents, GenerateContentConfig config, String cacheName) {}
+
+    public ModelRequest prepare(ModelClient client, String sessionId, String model, List<Content> history,
+                                List<Tool> tools, GenerateContentConfig config) {
+        ModelRequest uncached = new ModelRequest(history, config, null);
+        if (!enabled || sessionId == null || !(client instanceof CachingModelClient caching)) {
+            return uncached;
+        }
+        cleanUp();
+        SessionCache state = sessions.computeIfAbsent(sessionId, id -> new SessionCache());
+        synchronized (state) {
+            Instant now = Instant.now();
+            state.recordCall(now, ttl);
+
+            if (state.name != null && !state.matches(model, history, now)) {
+                drop(caching, state);
+            }
+            if (shouldCreate(state, model, history, now)) {
+                create(caching, sessionId, state, model, history, tools, now);
+            }
+            if (state.name == null) {
+                return uncached;
+            }
+            if (state.expireTime != null && Duration.between(now, state.expireTime).compareTo(ttl.dividedBy(3)) < 0) {
+                refresh(caching, state, now);
+            }
+            List<Content> tail = history.subList(state.prefix.size(), history.size());
+            return new ModelRequest(tail, GenerateContentConfig.builder().cachedContent(state.name).build(), state.name);
+        }
+    }
+
+    /**
+     * Feeds back token usage from a response so the next call can judge whether caching pays off.
+     */
+    public void recordUsage(String sessionId, GenerateContentResponseUsageMetadata usage) {
+        if (sessionId == null || usage == null) {
+            return;
+        }
+        SessionCache state = sessions.get(sessionId);
+        if (state == null) {
+            return;
+        }
+        synchronized (state) {
+            state.lastPromptTokens = usage.promptTokenCount().orElse(0);
+            state.lastCachedTokens = usage.cachedContentTokenCount().orElse(0);
+        }
+    }
+
+    /**
+     * Caching pays off when the per-request saving of cached over regular input pricing,
+     * times the requests expected within the TTL, exceeds the storage cost for the TTL.
+     */
+    static boolean worthCaching(ModelPricing pricing, long tokens, double expectedReuses, Duration ttl) {
+        double millions = tokens / 1_000_000.0;
+        double savedPerReuse = (pricing.inputPricePer1m() - pricing.cachedPricePer1m()) * millions;
+        double storageCost = pricing.cacheStoragePricePer1mPerHour() * millions * (ttl.toSeconds() / 3600.0);
+        return savedPerReuse * expectedReuses > storageCost;
+    }
+
+    private boolean shouldCreate(SessionCache state, String model, List<Content> history, Instant now) {
+        if (history.size() < 2 || now.isBefore(state.backoffUntil)) {
+            return false;
+        }
+        int uncachedTokens = state.lastPromptTokens - (state.name != null ? state.lastCachedTokens : 0);
+        if (uncachedTokens < minTokens) {
+            return false;
+        }
+        ModelPricing pricing = pricingRegistry.find(model).orElse(null);
+        if (pricing == null) {
+            return false;
+        }
+        // Assume the session keeps up its recent request rate; the next agent iteration is a given
+        double expectedReuses = Math.max(1, state.recentCalls.size() - 1);
+        return worthCaching(pricing, state.lastPromptTokens, expectedReuses, ttl);
+    }
+
+    private void create(CachingModelClient client, String sessionId, SessionCache state, String model,
+                        List<Content> history, List<Tool> tools, Instant now) {
+        // Everything but the newest turn becomes the prefix, so each request still carries new content
+        List<Content> prefix = List.copyOf(history.subList(0, history.size() - 1));
+        try {
+            CachedContent cached = client.createCache(model, CreateCachedContentConfig.builder()
+                    .contents(prefix)
+                    .tools(tools)
+                    .ttl(ttl)
+                    .displayName("roxycode-" + sessionId)
+                    .build());
+            String previous = state.name;
+            state.name = cached.name().orElseThrow();
+            state.model = model;
+            state.prefix = prefix;
+            state.expireTime = cached.expireTime().orElse(now.plus(ttl));
+            LOG.info("Created context cache {} for session {} covering {} turns (~{} tokens)",
+                    state.name, sessionId, prefix.size(), state.lastPromptTokens);
+            if (previous != null) {
+                delete(client, previous);
+            }
+        } catch (Exception e) {
+            LOG.warn("Context cache creation failed for session {}: {}", sessionId, e.getMessage());
+            state.backoffUntil = now.plus(ttl);
+        }
+    }
+
+    private void refresh(CachingModelClient client, SessionCache state, Instant now) {
+        try {
+            CachedContent updated = client.updateCache(state.name, UpdateCachedContentConfig.builder().ttl(ttl).build());
+            state.expireTime = updated.expireTime().orElse(now.plus(ttl));
+            LOG.debug("Extended context cache {} until {}", state.name, state.expireTime);
+        } catch (Exception e) {
+            LOG.warn("Failed to extend context cache {}: {}", state.name, e.getMessage());
+            state.clear();
+        }
+    }
+
+    private void drop(CachingModelClient client, SessionCache state) {
+        boolean expired = state.expireTime != null && !Instant.now().isBefore(state.expireTime);
+        if (!expired) {
+            delete(client, state.name);
+        }
+        state.clear();
+    }
+
+    private void delete(CachingModelClient client, String name) {
+        try {
+            client.deleteCache(name);
+        } catch (Exception e) {
+            LOG.debug("Failed to delete context cache {}: {}", name, e.getMessage());
+        }
+    }
+
+    private void cleanUp() {
+        if (sessions.size() <= MAX_TRACKED_SESSIONS) {
+            return;
+        }
+        Instant cutoff = Instant.now().minus(ttl);
+        sessions.values().removeIf(state -> state.lastCall().isBefore(cutoff));
+    }
+
+    private static class SessionCache {
+        private String name;
+        private String model;
+        private List<Content> prefix = List.of();
+        private Instant expireTime;
+        private Instant backoffUntil = Instant.EPOCH;
+        private int lastPromptTokens;
+        private int lastCachedTokens;
+        private final Deque<Instant> recentCalls = new ArrayDeque<>();
+
+        void recordCall(Instant now, Duration window) {
+            recentCalls.addLast(now);
+            while (!recentCalls.isEmpty() && recentCalls.peekFirst().isBefore(now.minus(window))) {
+                recentCalls.pollFirst();
+            }
+        }
+
+        synchronized Instant lastCall() {
+            return recentCalls.isEmpty() ? Instant.EPOCH : recentCalls.peekLast();
+        }
+
+        /**
+         * The cache is still usable if it is unexpired, for the same model, and its prefix is
+         * still the start of the history (same Content instances, since history only appends).
+         */
+        boolean matches(String model, List<Content> history, Instant now) {
+            if (!model.equals(this.model) || (expireTime != null && !now.isBefore(expireTime))) {
+                return false;
+            }
+            if (prefix.size() >= history.size()) {
+                return false;
+            }
+            for (int i = 0; i < prefix.size(); i++) {
+                if (prefix.get(i) != history.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void clear() {
+            name = null;
+            model = null;
+            prefix = List.of();
+            expireTime = null;
+            lastCachedTokens = 0;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.roxycode;
+
+import com.google.genai.Client;
+import com.google.genai.ResponseStream;
+import com.google.genai.types.CachedContent;
+import com.google.genai.types.Content;
+import com.google.genai.types.CreateCachedContentConfig;
+import com.google.genai.types.DeleteCachedContentConfig;
+import com.google.genai.types.GenerateContentConfig;
+import com.google.genai.types.GenerateContentResponse;
+import com.google.genai.types.HttpOptions;
+import com.google.genai.types.UpdateCachedContentConfig;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.annotation.Value;
+import jakarta.inject.Singleton;
+
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * {@link CachingModelClient} backed by the Gemini API. The client is built on first use, so the
+ * application starts without an API key. {@code roxycode.model.base-url} points it at another
+ * endpoint, such as a local stub server speaking the Gemini REST protocol.
+ */
+@Singleton
+@Requires(property = "roxycode.model.backend", value = "gemini", defaultValue = "gemini")
+public class GeminiModelClient implements CachingModelClient {
+    private final ConfigService configService;
+    private final String baseUrl;
+    private Client client;
+
+    public GeminiModelClient(ConfigService configService,
+                             @Value("${roxycode.model.base-url:}") String baseUrl) {
+        this.configService = configService;
+        this.baseUrl = baseUrl;
+    }
+
+    private synchronized Client getClient() {
+        if (client == null) {
+            Client.Builder builder = Client.builder()
+                    .apiKey(configService.getApiKey());
+            if (baseUrl != null && !baseUrl.isBlank()) {
+                builder.httpOptions(HttpOptions.builder().baseUrl(baseUrl).build());
+            }
+            client = builder.build();
+        }
+        return client;
+    }
+
+    @Override
+    public GenerateContentResponse generateContent(String model, List<Content> contents, GenerateContentConfig config) {
+        return getClient().models.generateContent(model, contents, config);
+    }
+
+    @Override
+    public Stream<GenerateContentResponse> generateContentStream(String model, List<Content> contents, GenerateContentConfig config) {
+        ResponseStream<GenerateContentResponse> responses = getClient().models.generateContentStream(model, contents, config);
+        return StreamSupport.stream(responses.spliterator(), false).onClose(responses::close);
+    }
+
+    @Override
+    public CachedContent createCache(String model, CreateCachedContentConfig config) {
+        return getClient().caches.create(model, config);
+    }
+
+    @Override
+    public CachedContent updateCache(String name, UpdateCachedContentConfig config) {
+        return getClient().caches.update(name, config);
+    }
+
+    @Override
+    public void deleteCache(String name) {
+        getClient().caches.delete(name, DeleteCachedContentConfig.builder().build());
+    }
+}
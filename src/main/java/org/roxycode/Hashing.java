@@ -0,0 +1,27 @@
+package org.roxycode;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Content hashes used as cache keys.
+ */
+final class Hashing {
+
+    private Hashing() {
+    }
+
+    /**
+     * The lower-case hex SHA-256 of the UTF-8 bytes of {@code text}.
+     */
+    static String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package org.roxycode;
+
+import com.google.genai.errors.ApiException;
+import com.google.genai.errors.GenAiIOException;
+import com.google.genai.types.Content;
+import com.google.genai.types.GenerateContentConfig;
+import com.google.genai.types.GenerateContentResponse;
+
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Wraps a {@link ModelClient} with retries and, optionally, hedged requests; see {@link HedgingPolicy}.
+ */
+final class HedgingModelClient implements ModelClient {
+    private static final double MAX_HEDGE_CREDITS = 10.0;
+
+    private final ModelClient delegate;
+    private final HedgingPolicy policy;
+    private final AgentMetrics metrics;
+    private final ExecutorService executor;
+    private final ModelLatencyTracker latencies;
+    private double hedgeCredits;
+
+    HedgingModelClient(ModelClient delegate, HedgingPolicy policy, AgentMetrics metrics, ExecutorService executor) {
+        this.delegate = delegate;
+        this.policy = policy;
+        this.metrics = metrics;
+        this.executor = executor;
+        this.latencies = new ModelLatencyTracker(policy.latencyWindow());
+    }
+
+    ModelClient delegate() {
+        return delegate;
+    }
+
+    @Override
+    public GenerateContentResponse generateContent(String model, List<Content> contents, GenerateContentConfig config) {
+        return withRetries(model, () -> policy.isHedging()
+                ? hedged(model, contents, config)
+                : timed(model, contents, config));
+    }
+
+    /**
+     * Streams are retried while opening fails, but never hedged: a duplicate would have to be
+     * raced on its first chunk and could not be cancelled once the caller started reading.
+     */
+    @Override
+    public Stream<GenerateContentResponse> generateContentStream(String model, List<Content> contents, GenerateContentConfig config) {
+        return withRetries(model, () -> delegate.generateContentStream(model, contents, config));
+    }
+
+    private <T> T withRetries(String model, Supplier<T> call) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return call.get();
+            } catch (RuntimeException e) {
+                if (attempt >= policy.maxAttempts() || !isTransient(e)) {
+                    throw e;
+                }
+                metrics.recordModelRetry(model);
+                sleep(backoffMillis(attempt));
+            }
+        }
+    }
+
+    /**
+     * Rate limits, server errors and I/O failures; everything else would fail again the same way.
+     */
+    static boolean isTransient(Throwable e) {
+        if (e instanceof ApiException api) {
+            return api.code() == 429 || api.code() >= 500;
+        }
+        return e instanceof GenAiIOException || e instanceof UncheckedIOException;
+    }
+
+    /**
+     * Full jitter: a uniform delay up to the exponential backoff for this attempt.
+     */
+    private long backoffMillis(int attempt) {
+        long ceiling = Math.min(policy.maxBackoffMillis(), policy.baseBackoffMillis() << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while backing off from a model call", e);
+        }
+    }
+
+    private GenerateContentResponse timed(String model, List<Content> contents, GenerateContentConfig config) {
+        long start = System.nanoTime();
+        try {
+            return delegate.generateContent(model, contents, config);
+        } finally {
+            latencies.record(model, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Sends the request and, if it is still running after the model's recent p95 latency, a
+     * duplicate. The first success wins and the other request is cancelled.
+     * <p>
+     * The latency recorded is the time since the primary was sent, however the race ends: timing
+     * only the legs that complete would leave out the slow primaries that hedging cancels and let
+     * the p95 drift down with every hedge.
+     */
+    private GenerateContentResponse hedged(String model, List<Content> contents, GenerateContentConfig config) {
+        earnHedgeCredit();
+        long p95 = latencies.percentile(model, policy.percentile(), policy.minSamples());
+        if (p95 < 0) {
+            return timed(model, contents, config);
+        }
+        long delay = Math.max(p95, TimeUnit.MILLISECONDS.toNanos(policy.minDelayMillis()));
+        ExecutorCompletionService<GenerateContentResponse> race = new ExecutorCompletionService<>(executor);
+        long start = System.nanoTime();
+        Future<GenerateContentResponse> primary = race.submit(() -> delegate.generateContent(model, contents, config));
+        Future<GenerateContentResponse> hedge = null;
+        try {
+            Future<GenerateContentResponse> done = race.poll(delay, TimeUnit.NANOSECONDS);
+            if (done != null) {
+                return result(done);
+            }
+            if (!takeHedgeCredit()) {
+                metrics.recordModelHedge(model, "over_budget");
+                return result(primary);
+            }
+            hedge = race.submit(() -> delegate.generateContent(model, contents, config));
+            RuntimeException failure = null;
+            for (int i = 0; i < 2; i++) {
+                Future<GenerateContentResponse> finished = race.take();
+                try {
+                    GenerateContentResponse response = result(finished);
+                    metrics.recordModelHedge(model, finished == hedge ? "hedge_won" : "primary_won");
+                    return response;
+                } catch (RuntimeException e) {
+                    failure = e;
+                }
+            }
+            metrics.recordModelHedge(model, "both_failed");
+            throw failure;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the model", e);
+        } finally {
+            latencies.record(model, System.nanoTime() - start);
+            primary.cancel(true);
+            if (hedge != null) {
+                hedge.cancel(true);
+            }
+        }
+    }
+
+    private static GenerateContentResponse result(Future<GenerateContentResponse> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Every request earns {@code budget-ratio} (at most 1) of a hedge and a hedge spends a whole
+     * one, so hedges never outnumber the requests they duplicate.
+     */
+    private synchronized void earnHedgeCredit() {
+        hedgeCredits = Math.min(MAX_HEDGE_CREDITS, hedgeCredits + policy.budgetRatio());
+    }
+
+    private synchronized boolean takeHedgeCredit() {
+        if (hedgeCredits < 1.0) {
+            return false;
+        }
+        hedgeCredits -= 1.0;
+        return true;
+    }
+}
@@ -0,0 +1,117 @@
+package org.roxycode;
+
+import io.micronaut.context.annotation.Value;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Singleton;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * How model calls ride out slow and failed requests.
+ * <p>
+ * Rate limits, server errors and I/O failures are retried up to {@code roxycode.model.retry.max-attempts}
+ * times in total, after a random delay of up to {@code base-backoff-ms} doubled per attempt and capped at
+ * {@code max-backoff-ms}.
+ * <p>
+ * With {@code roxycode.model.hedging.enabled}, a non-streaming call that runs past the model's
+ * recent {@code percentile} latency (p95 by default, once {@code min-samples} calls are known) gets
+ * a duplicate request, and the first to succeed wins. Each call earns {@code budget-ratio} of a
+ * hedge, capped at 1, so at most that share of calls is duplicated and spend never more than doubles.
+ */
+@Singleton
+public class HedgingPolicy {
+    private static final int LATENCY_WINDOW = 256;
+
+    private final AgentMetrics metrics;
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+    private final boolean hedging;
+    private final double percentile;
+    private final long minDelayMillis;
+    private final int minSamples;
+    private final double budgetRatio;
+    private final ExecutorService executor;
+
+    public HedgingPolicy(AgentMetrics metrics,
+                         @Value("${roxycode.model.retry.max-attempts:3}") int maxAttempts,
+                         @Value("${roxycode.model.retry.base-backoff-ms:250}") long baseBackoffMillis,
+                         @Value("${roxycode.model.retry.max-backoff-ms:4000}") long maxBackoffMillis,
+                         @Value("${roxycode.model.hedging.enabled:false}") boolean hedging,
+                         @Value("${roxycode.model.hedging.percentile:0.95}") double percentile,
+                         @Value("${roxycode.model.hedging.min-delay-ms:250}") long minDelayMillis,
+                         @Value("${roxycode.model.hedging.min-samples:20}") int minSamples,
+                         @Value("${roxycode.model.hedging.budget-ratio:0.1}") double budgetRatio) {
+        this.metrics = metrics;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseBackoffMillis = Math.max(1, baseBackoffMillis);
+        this.maxBackoffMillis = Math.max(this.baseBackoffMillis, maxBackoffMillis);
+        this.hedging = hedging;
+        this.percentile = Math.min(1.0, Math.max(0.5, percentile));
+        this.minDelayMillis = Math.max(0, minDelayMillis);
+        this.minSamples = Math.max(1, minSamples);
+        this.budgetRatio = Math.min(1.0, Math.max(0.0, budgetRatio));
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = hedging ? Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "model-hedge-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }) : null;
+    }
+
+    /**
+     * The client to make model calls through: {@code client} with retries and hedging, or
+     * {@code client} itself when both are off.
+     */
+    public ModelClient apply(ModelClient client) {
+        if (maxAttempts == 1 && !hedging) {
+            return client;
+        }
+        return new HedgingModelClient(client, this, metrics, executor);
+    }
+
+    int maxAttempts() {
+        return maxAttempts;
+    }
+
+    long baseBackoffMillis() {
+        return baseBackoffMillis;
+    }
+
+    long maxBackoffMillis() {
+        return maxBackoffMillis;
+    }
+
+    boolean isHedging() {
+        return hedging;
+    }
+
+    double percentile() {
+        return percentile;
+    }
+
+    long minDelayMillis() {
+        return minDelayMillis;
+    }
+
+    int minSamples() {
+        return minSamples;
+    }
+
+    double budgetRatio() {
+        return budgetRatio;
+    }
+
+    int latencyWindow() {
+        return LATENCY_WINDOW;
+    }
+
+    @PreDestroy
+    void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
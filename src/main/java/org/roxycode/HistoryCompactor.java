@@ -0,0 +1,165 @@
+package org.roxycode;
+
+import com.google.genai.types.Content;
+import com.google.genai.types.FunctionCall;
+import com.google.genai.types.FunctionResponse;
+import com.google.genai.types.Part;
+import io.micronaut.context.annotation.Value;
+import jakarta.inject.Singleton;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shrinks what a long agent run resends each iteration. Once the history is estimated above
+ * {@code roxycode.agent.compaction.threshold-tokens}, the older tool calls and responses are cut
+ * to short summaries: long strings in call arguments and responses keep only their start, and
+ * thoughts are dropped. User prompts, model text and the last {@code keep-recent-turns} contents
+ * stay verbatim, and every call keeps its response, so the conversation stays well formed.
+ * <p>
+ * Only the request is compacted; the session keeps the full history. The boundary moves in steps
+ * of {@code keep-recent-turns}, and each compacted turn is remembered per source turn, so the
+ * compacted prefix is the same {@link Content} instances from one iteration to the next and context
+ * caches built on it remain usable.
+ */
+@Singleton
+public class HistoryCompactor {
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private final int thresholdTokens;
+    private final int keepRecentTurns;
+    private final int summaryChars;
+
+    public HistoryCompactor(@Value("${roxycode.agent.compaction.threshold-tokens:32000}") int thresholdTokens,
+                            @Value("${roxycode.agent.compaction.keep-recent-turns:6}") int keepRecentTurns,
+                            @Value("${roxycode.agent.compaction.summary-chars:200}") int summaryChars) {
+        this.thresholdTokens = thresholdTokens;
+        this.keepRecentTurns = Math.max(1, keepRecentTurns);
+        this.summaryChars = Math.max(16, summaryChars);
+    }
+
+    public boolean isEnabled() {
+        return thresholdTokens > 0;
+    }
+
+    /**
+     * The contents to send for {@code history}: the history itself while it is under the
+     * threshold, otherwise a copy with the older tool traffic compacted.
+     */
+    public List<Content> compact(List<Content> history) {
+        return compact(history, new IdentityHashMap<>());
+    }
+
+    /**
+     * Like {@link #compact(List)}, reusing the compacted turns in {@code compacted}, keyed by the
+     * identity of their source turn, and adding the ones compacted now. Passing the same map for
+     * a session keeps its compacted prefix stable for {@link ContextCacheManager}.
+     */
+    public List<Content> compact(List<Content> history, Map<Content, Content> compacted) {
+        if (!isEnabled() || history.size() <= keepRecentTurns || estimateTokens(history) <= thresholdTokens) {
+            return history;
+        }
+        int boundary = (history.size() - keepRecentTurns) / keepRecentTurns * keepRecentTurns;
+        if (boundary == 0) {
+            return history;
+        }
+        List<Content> contents = new ArrayList<>(history.size());
+        for (int i = 0; i < boundary; i++) {
+            contents.add(compacted.computeIfAbsent(history.get(i), this::compact));
+        }
+        contents.addAll(history.subList(boundary, history.size()));
+        return contents;
+    }
+
+    /**
+     * A rough token count, about four characters per token, of everything the contents send.
+     */
+    static long estimateTokens(List<Content> contents) {
+        long chars = 0;
+        for (Content content : contents) {
+            for (Part part : content.parts().orElse(List.of())) {
+                chars += part.text().map(String::length).orElse(0);
+                chars += part.functionCall().flatMap(FunctionCall::args).map(args -> charsOf(args)).orElse(0L);
+                chars += part.functionResponse().flatMap(FunctionResponse::response).map(response -> charsOf(response)).orElse(0L);
+            }
+        }
+        return chars / CHARS_PER_TOKEN;
+    }
+
+    private static long charsOf(Object value) {
+        if (value instanceof CharSequence text) {
+            return text.length();
+        }
+        if (value instanceof Map<?, ?> map) {
+            long chars = 0;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                chars += String.valueOf(entry.getKey()).length() + charsOf(entry.getValue());
+            }
+            return chars;
+        }
+        if (value instanceof Collection<?> items) {
+            long chars = 0;
+            for (Object item : items) {
+                chars += charsOf(item);
+            }
+            return chars;
+        }
+        return String.valueOf(value).length();
+    }
+
+    private Content compact(Content content) {
+        List<Part> parts = content.parts().orElse(List.of());
+        if (parts.stream().noneMatch(part -> part.functionCall().isPresent() || part.functionResponse().isPresent())) {
+            return content;
+        }
+        List<Part> compacted = new ArrayList<>(parts.size());
+        for (Part part : parts) {
+            if (part.functionCall().isPresent()) {
+                FunctionCall call = part.functionCall().get();
+                FunctionCall.Builder builder = FunctionCall.builder()
+                        .args(summarize(call.args().orElse(Map.of())));
+                call.name().ifPresent(builder::name);
+                call.id().ifPresent(builder::id);
+                compacted.add(Part.builder().functionCall(builder.build()).build());
+            } else if (part.functionResponse().isPresent()) {
+                FunctionResponse response = part.functionResponse().get();
+                Map<String, Object> summary = summarize(response.response().orElse(Map.of()));
+                summary.put("compacted", true);
+                FunctionResponse.Builder builder = FunctionResponse.builder().response(summary);
+                response.name().ifPresent(builder::name);
+                response.id().ifPresent(builder::id);
+                compacted.add(Part.builder().functionResponse(builder.build()).build());
+            } else if (!part.thought().orElse(false)) {
+                compacted.add(part);
+            }
+        }
+        Content.Builder builder = Content.builder().parts(compacted);
+        content.role().ifPresent(builder::role);
+        return builder.build();
+    }
+
+    private Map<String, Object> summarize(Map<String, Object> values) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        values.forEach((key, value) -> summary.put(key, summarize(value)));
+        return summary;
+    }
+
+    private Object summarize(Object value) {
+        if (value == null || value instanceof Boolean || value instanceof Number) {
+            return value;
+        }
+        if (value instanceof Collection<?> items) {
+            return items.size() + " items";
+        }
+        String text = String.valueOf(value);
+        if (text.length() <= summaryChars) {
+            return text;
+        }
+        int end = Character.isHighSurrogate(text.charAt(summaryChars - 1)) ? summaryChars - 1 : summaryChars;
+        return text.substring(0, end) + "... [" + (text.length() - end) + " more chars]";
+    }
+}
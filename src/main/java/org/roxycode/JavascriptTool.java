@@ -0,0 +1,120 @@
+package org.roxycode;
+
+import com.google.genai.types.FunctionCall;
+import com.google.genai.types.FunctionDeclaration;
+import com.google.genai.types.FunctionResponse;
+import com.google.genai.types.Part;
+import com.google.genai.types.Schema;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@code execute_javascript}: runs a script in the sandbox, on the session's workspace.
+ */
+@Singleton
+public class JavascriptTool implements AgentTool {
+    private static final Logger LOG = LoggerFactory.getLogger(JavascriptTool.class);
+    static final String NAME = "execute_javascript";
+
+    private final JsExecutionService jsExecutionService;
+    private final WorkspaceService workspace;
+    private final ToolOutputBudget budget;
+    private final AgentMetrics metrics;
+
+    public JavascriptTool(JsExecutionService jsExecutionService, WorkspaceService workspace, ToolOutputBudget budget,
+                          AgentMetrics metrics) {
+        this.jsExecutionService = jsExecutionService;
+        this.workspace = workspace;
+        this.budget = budget;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public FunctionDeclaration declaration() {
+        return FunctionDeclaration.builder()
+                .name(NAME)
+                .description(description())
+                .parameters(Schema.builder()
+                        .type("OBJECT")
+                        .properties(Map.of("code", Schema.builder()
+                                .type("STRING")
+                                .description("The JavaScript code to execute")
+                                .build()))
+                        .required(List.of("code"))
+                        .build())
+                .build();
+    }
+
+    private String description() {
+        String description = "Executes a string of JavaScript in a secure sandbox. Use console.log for output.";
+        if (workspace.isEnabled()) {
+            boolean writable = workspace.isOverlay() || !workspace.isReadOnly();
+            description += " A " + (writable ? "" : "read-only ") + "`workspace` global exposes the project files:"
+                    + " workspace.exists(path), workspace.size(path), workspace.read(path, offset, length) for a byte range,"
+                    + " workspace.readLines(path, startLine, maxLines), workspace.list(dir), and workspace.walk(dir, glob)"
+                    + " for a whole subtree (glob like '**/*.java', relative to dir), both returning a cursor with"
+                    + " hasNext(), next() -> {name, path, directory, size} and close()."
+                    + " Reads are capped at " + workspace.maxReadBytes() + " bytes; page through large files.";
+            if (writable) {
+                description += " workspace.write(path, text) creates or replaces a file and workspace.delete(path) removes one"
+                        + (workspace.isOverlay() ? "; changes are private to this conversation." : ".");
+            }
+        }
+        return description;
+    }
+
+    @Override
+    public ToolOutcome execute(FunctionCall call, ToolContext context) {
+        Map<String, Object> args = call.args().orElse(Map.of());
+        String code = args.get("code") instanceof String c ? c : "";
+
+        LOG.info("Agent requesting JS execution: {}", code);
+        context.listener().onToolCallStarted(code);
+
+        JsExecutionResult result;
+        try (AgentTracer.Span span = context.span().child("tool.execute_javascript")) {
+            result = jsExecutionService.execute(code, context.sessionId());
+            span.attribute("status", result.status());
+            if (!result.success()) {
+                span.error(result.error());
+            }
+        }
+        metrics.recordToolCall(NAME, ToolCallStatus.of(result.status()));
+
+        // Track execution for UI
+        String combinedOutput = (result.logs() + "\n" + (result.result() != null ? result.result() : "")).trim();
+        if (!result.success() && result.error() != null) {
+            combinedOutput += "\nError: " + result.error();
+        }
+        if (result.status() != JsExecutionStatus.OK && result.status() != JsExecutionStatus.ERROR) {
+            combinedOutput += "\nStatus: " + result.status();
+        }
+
+        // The model only gets as much as the budget allows; the UI keeps the full output
+        String sessionId = context.sessionId();
+        Part responsePart = Part.builder()
+                .functionResponse(FunctionResponse.builder()
+                        .name(NAME)
+                        .response(Map.of(
+                                "success", result.success(),
+                                "status", result.status().name(),
+                                "result", result.result() != null ? budget.fit(sessionId, result.result()) : "",
+                                "error", result.error() != null ? budget.fit(sessionId, result.error()) : "",
+                                "logs", result.logs() != null ? budget.fit(sessionId, result.logs()) : ""
+                        ))
+                        .build())
+                .build();
+        ToolExecution execution = new ToolExecution(code, combinedOutput);
+        context.listener().onToolCallFinished(execution);
+        return new ToolOutcome(execution, responsePart);
+    }
+}
@@ -0,0 +1,186 @@
+package org.roxycode;
+
+import io.micronaut.context.annotation.Value;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Singleton;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.graalvm.polyglot.HostAccess;
+import org.graalvm.polyglot.ResourceLimits;
+import org.graalvm.polyglot.io.FileSystem;
+import org.graalvm.polyglot.io.IOAccess;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps a shared polyglot {@link Engine} and a bounded set of pre-initialized sandbox contexts.
+ * All contexts share the engine, so parsed and compiled code survives between tool calls.
+ */
+@Singleton
+public class JsContextPool {
+    private static final Logger LOG = LoggerFactory.getLogger(JsContextPool.class);
+    private static final String WARM_UP_SCRIPT =
+            "const items = [1, 2, 3].map(x => ({ value: x * 2 })); console.log(JSON.stringify(items)); items.length";
+
+    private final int poolSize;
+    private final int warmUpCount;
+    private final Engine engine;
+    private final ResourceLimits limits;
+    private final BlockingQueue<PooledJsContext> idle;
+    private final ExecutorService refiller;
+    private final AgentMetrics metrics;
+    private final IOAccess ioAccess;
+
+    private final LongAdder warmExecutions = new LongAdder();
+    private final LongAdder warmNanos = new LongAdder();
+    private final LongAdder coldExecutions = new LongAdder();
+    private final LongAdder coldNanos = new LongAdder();
+
+    public JsContextPool(@Value("${roxycode.js.pool-size:4}") int poolSize,
+                         @Value("${roxycode.js.warm-up:3}") int warmUpCount,
+                         @Value("${roxycode.js.statement-limit:50000000}") long statementLimit,
+                         AgentMetrics metrics,
+                         WorkspaceService workspace) {
+        this.metrics = metrics;
+        this.ioAccess = ioAccessFor(workspace);
+        this.poolSize = Math.max(0, poolSize);
+        this.warmUpCount = Math.max(0, warmUpCount);
+        this.idle = new ArrayBlockingQueue<>(Math.max(1, this.poolSize));
+        this.engine = Engine.newBuilder("js")
+                .option("engine.WarnInterpreterOnly", "false")
+                .build();
+        // Contexts are single use, so the statement count never needs resetting
+        this.limits = statementLimit > 0
+                ? ResourceLimits.newBuilder().statementLimit(statementLimit, null).build()
+                : null;
+        this.refiller = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "js-context-pool");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Scripts only ever see the workspace; {@code load()} and module imports resolve inside it.
+     */
+    private static IOAccess ioAccessFor(WorkspaceService workspace) {
+        if (!workspace.isEnabled()) {
+            return IOAccess.NONE;
+        }
+        FileSystem fs = FileSystem.newFileSystem(workspace.fileSystem());
+        if (workspace.isReadOnly()) {
+            fs = FileSystem.newReadOnlyFileSystem(fs);
+        }
+        return IOAccess.newBuilder().fileSystem(fs).build();
+    }
+
+    @PostConstruct
+    void warmUp() {
+        long start = System.nanoTime();
+        for (int i = 0; i < warmUpCount; i++) {
+            try (PooledJsContext pooled = create(false)) {
+                pooled.context().eval("js", WARM_UP_SCRIPT);
+            } catch (Exception e) {
+                LOG.warn("JS warm-up iteration failed: {}", e.getMessage());
+            }
+        }
+        for (int i = 0; i < poolSize; i++) {
+            idle.offer(create(true));
+        }
+        LOG.info("JS context pool ready: {} idle contexts, {} warm-up runs in {} ms",
+                idle.size(), warmUpCount, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Hands out a sandboxed context whose console output goes to the given stream.
+     * Falls back to building a context on the spot when the pool is drained.
+     */
+    public PooledJsContext acquire(OutputStream output) {
+        PooledJsContext pooled = idle.poll();
+        if (pooled == null) {
+            LOG.debug("JS context pool empty, creating context on demand");
+            pooled = create(false);
+        }
+        scheduleRefill();
+        return pooled.redirect(output);
+    }
+
+    public void recordLatency(boolean warm, long nanos) {
+        if (warm) {
+            warmExecutions.increment();
+            warmNanos.add(nanos);
+        } else {
+            coldExecutions.increment();
+            coldNanos.add(nanos);
+        }
+    }
+
+    public JsPoolStats stats() {
+        return new JsPoolStats(
+                poolSize,
+                idle.size(),
+                warmExecutions.sum(),
+                averageMillis(warmNanos.sum(), warmExecutions.sum()),
+                coldExecutions.sum(),
+                averageMillis(coldNanos.sum(), coldExecutions.sum())
+        );
+    }
+
+    private static double averageMillis(long nanos, long count) {
+        return count == 0 ? 0.0 : nanos / (double) count / 1_000_000.0;
+    }
+
+    private void scheduleRefill() {
+        if (poolSize == 0 || refiller.isShutdown()) {
+            return;
+        }
+        refiller.execute(() -> {
+            while (idle.remainingCapacity() > 0 && !refiller.isShutdown()) {
+                PooledJsContext fresh = create(true);
+                if (!idle.offer(fresh)) {
+                    fresh.close();
+                }
+            }
+        });
+    }
+
+    private PooledJsContext create(boolean warm) {
+        long start = System.nanoTime();
+        SwitchableOutputStream output = new SwitchableOutputStream();
+        Context.Builder builder = Context.newBuilder("js")
+                .engine(engine)
+                .allowIO(ioAccess)
+                .allowNativeAccess(false)
+                .allowCreateThread(false)
+                .allowHostClassLookup(s -> false)
+                .allowHostAccess(HostAccess.EXPLICIT)
+                .out(output)
+                .err(output);
+        if (limits != null) {
+            builder.resourceLimits(limits);
+        }
+        Context context = builder.build();
+        // Force language initialization so the first eval on a pooled context doesn't pay for it
+        context.initialize("js");
+        metrics.recordContextCreation(warm, System.nanoTime() - start);
+        return new PooledJsContext(context, output, warm);
+    }
+
+    @PreDestroy
+    void close() {
+        refiller.shutdownNow();
+        PooledJsContext pooled;
+        while ((pooled = idle.poll()) != null) {
+            pooled.close();
+        }
+        engine.close();
+    }
+}
@@ -7,5 +7,6 @@ public record JsExecutionResult(
     boolean success,
     String result,
     String error,
-    String logs
+    String logs,
+    JsExecutionStatus status
 ) {}
@@ -1,48 +1,115 @@
 package org.roxycode;
 
+import io.micronaut.context.annotation.Value;
 import jakarta.inject.Singleton;
-import org.graalvm.polyglot.Context;
-import org.graalvm.polyglot.HostAccess;
-import org.graalvm.polyglot.Value;
+import org.graalvm.polyglot.PolyglotException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayOutputStream;
-import java.nio.charset.StandardCharsets;
-
 @Singleton
 public class JsExecutionService {
     private static final Logger LOG = LoggerFactory.getLogger(JsExecutionService.class);
+    private final JsContextPool contextPool;
+    private final JsSourceCache sourceCache;
+    private final JsWatchdog watchdog;
+    private final AgentMetrics metrics;
+    private final WorkspaceService workspace;
+    private final int maxLogBytes;
+
+    public JsExecutionService(JsContextPool contextPool,
+                              JsSourceCache sourceCache,
+                              JsWatchdog watchdog,
+                              AgentMetrics metrics,
+                              WorkspaceService workspace,
+                              @Value("${roxycode.js.max-log-bytes:65536}") int maxLogBytes) {
+        this.contextPool = contextPool;
+        this.sourceCache = sourceCache;
+        this.watchdog = watchdog;
+        this.metrics = metrics;
+        this.workspace = workspace;
+        this.maxLogBytes = maxLogBytes;
+    }
 
     /**
      * Executes JavaScript code in a secure sandbox and captures output.
+     * Runs are bounded by a statement limit, a wall-clock/CPU watchdog and a log size cap.
      * @param script The JS code to run.
      * @return A JsExecutionResult containing result, logs, and status.
      */
     public JsExecutionResult execute(String script) {
+        return execute(script, null);
+    }
+
+    /**
+     * Like {@link #execute(String)}, with the {@code workspace} global bound to the session's view of the workspace.
+     */
+    public JsExecutionResult execute(String script, String sessionId) {
         LOG.info("Executing script in sandbox...");
-        
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        
-        try (Context context = Context.newBuilder("js")
-                .allowIO(false)
-                .allowNativeAccess(false)
-                .allowCreateThread(false)
-                .allowHostClassLookup(s -> false)
-                .allowHostAccess(HostAccess.EXPLICIT)
-                .option("engine.WarnInterpreterOnly", "false")
-                .out(outputStream)
-                .err(outputStream)
-                .build()) {
-            
-            Value result = context.eval("js", script);
-            String logs = outputStream.toString(StandardCharsets.UTF_8);
-            return new JsExecutionResult(true, String.valueOf(result), null, logs);
-            
+
+        BoundedOutputStream outputStream = new BoundedOutputStream(maxLogBytes);
+        long start = System.nanoTime();
+        boolean warm = false;
+        JsExecutionStatus status = JsExecutionStatus.ERROR;
+        JsWatchdog.Watch watch = null;
+
+        try (PooledJsContext pooled = contextPool.acquire(outputStream);
+             JsWorkspace files = workspace.isEnabled() ? workspace.newJsWorkspace(sessionId) : null) {
+            warm = pooled.isWarm();
+            if (files != null) {
+                pooled.context().getBindings("js").putMember("workspace", files);
+            }
+            watch = watchdog.watch(pooled.context());
+            String result;
+            try {
+                result = String.valueOf(pooled.context().eval(sourceCache.get(script)));
+            } finally {
+                watch.close();
+            }
+            status = JsExecutionStatus.OK;
+            return new JsExecutionResult(true, result, null, outputStream.toLogString(), status);
+
+        } catch (PolyglotException e) {
+            status = statusOf(e, watch);
+            String error = status == JsExecutionStatus.ERROR ? e.getMessage() : describe(status);
+            LOG.error("JS Execution failed ({}): {}", status, error);
+            return new JsExecutionResult(false, null, error, outputStream.toLogString(), status);
         } catch (Exception e) {
             LOG.error("JS Execution failed: {}", e.getMessage());
-            String logs = outputStream.toString(StandardCharsets.UTF_8);
-            return new JsExecutionResult(false, null, e.getMessage(), logs);
+            return new JsExecutionResult(false, null, e.getMessage(), outputStream.toLogString(), JsExecutionStatus.ERROR);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            contextPool.recordLatency(warm, elapsed);
+            metrics.recordJsExecution(status, warm, elapsed);
+            LOG.debug("Script finished in {} ms on {} context", elapsed / 1_000_000, warm ? "warm" : "cold");
         }
     }
+
+    private static JsExecutionStatus statusOf(PolyglotException e, JsWatchdog.Watch watch) {
+        if (watch != null && watch.tripped() != null) {
+            return watch.tripped();
+        }
+        if (e.isResourceExhausted()) {
+            return JsExecutionStatus.LIMIT_EXCEEDED;
+        }
+        if (e.isCancelled() || e.isInterrupted()) {
+            return JsExecutionStatus.TIMEOUT;
+        }
+        return JsExecutionStatus.ERROR;
+    }
+
+    private static String describe(JsExecutionStatus status) {
+        return switch (status) {
+            case TIMEOUT -> "Script exceeded the execution time limit and was cancelled";
+            case LIMIT_EXCEEDED -> "Script exceeded its resource limits (statements or CPU time) and was cancelled";
+            default -> status.name();
+        };
+    }
+
+    public JsPoolStats poolStats() {
+        return contextPool.stats();
+    }
+
+    public JsSourceCacheStats sourceCacheStats() {
+        return sourceCache.stats();
+    }
 }
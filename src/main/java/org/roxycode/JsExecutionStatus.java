@@ -0,0 +1,8 @@
+package org.roxycode;
+
+public enum JsExecutionStatus {
+    OK,
+    ERROR,
+    TIMEOUT,
+    LIMIT_EXCEEDED
+}
@@ -0,0 +1,13 @@
+package org.roxycode;
+
+import io.micronaut.serde.annotation.Serdeable;
+
+@Serdeable
+public record JsPoolStats(
+    int poolSize,
+    int idleContexts,
+    long warmExecutions,
+    double avgWarmMillis,
+    long coldExecutions,
+    double avgColdMillis
+) {}
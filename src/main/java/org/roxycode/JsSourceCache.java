@@ -0,0 +1,86 @@
+package org.roxycode;
+
+import io.micronaut.context.annotation.Value;
+import jakarta.inject.Singleton;
+import org.graalvm.polyglot.Source;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Content-hashed LRU cache of polyglot {@link Source} objects.
+ * The shared engine keys its parsed/compiled code on the Source, so handing back the same
+ * instance for a repeated snippet lets it skip parsing and reuse compiled code.
+ */
+@Singleton
+public class JsSourceCache {
+    private final int maxEntries;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Source> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytesRetained;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public JsSourceCache(@Value("${roxycode.js.source-cache.max-entries:256}") int maxEntries,
+                         @Value("${roxycode.js.source-cache.max-bytes:4194304}") long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns a cached Source for the script, creating it on first sight.
+     * Trailing whitespace is ignored so re-sent snippets that differ only there still hit.
+     */
+    public Source get(String script) {
+        String normalized = script.stripTrailing();
+        String key = Hashing.sha256(normalized);
+        synchronized (entries) {
+            Source cached = entries.get(key);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+        }
+        misses.increment();
+        Source source = Source.newBuilder("js", normalized, "agent-" + key.substring(0, 12) + ".js")
+                .cached(true)
+                .buildLiteral();
+        long size = sizeOf(normalized);
+        if (maxEntries <= 0 || size > maxBytes) {
+            return source;
+        }
+        synchronized (entries) {
+            Source existing = entries.putIfAbsent(key, source);
+            if (existing != null) {
+                return existing;
+            }
+            bytesRetained += size;
+            evict();
+        }
+        return source;
+    }
+
+    public JsSourceCacheStats stats() {
+        long h = hits.sum();
+        long m = misses.sum();
+        synchronized (entries) {
+            return new JsSourceCacheStats(h, m, h + m == 0 ? 0.0 : h / (double) (h + m), entries.size(), bytesRetained);
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Source>> it = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || bytesRetained > maxBytes) && it.hasNext()) {
+            Map.Entry<String, Source> eldest = it.next();
+            bytesRetained -= sizeOf(eldest.getValue().getCharacters());
+            it.remove();
+        }
+    }
+
+    private static long sizeOf(CharSequence code) {
+        return 2L * code.length();
+    }
+}
@@ -0,0 +1,12 @@
+package org.roxycode;
+
+import io.micronaut.serde.annotation.Serdeable;
+
+@Serdeable
+public record JsSourceCacheStats(
+    long hits,
+    long misses,
+    double hitRate,
+    int entries,
+    long bytesRetained
+) {}
@@ -0,0 +1,118 @@
+package org.roxycode;
+
+import io.micronaut.context.annotation.Value;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Singleton;
+import org.graalvm.polyglot.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enforces wall-clock and CPU-time budgets on running scripts by cancelling their context.
+ */
+@Singleton
+public class JsWatchdog {
+    private static final Logger LOG = LoggerFactory.getLogger(JsWatchdog.class);
+    private static final long CHECK_INTERVAL_MS = 25;
+
+    private final long timeoutNanos;
+    private final long cpuTimeNanos;
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "js-watchdog");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public JsWatchdog(@Value("${roxycode.js.timeout-ms:10000}") long timeoutMs,
+                      @Value("${roxycode.js.cpu-time-ms:5000}") long cpuTimeMs) {
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        this.cpuTimeNanos = TimeUnit.MILLISECONDS.toNanos(cpuTimeMs);
+    }
+
+    /**
+     * Starts watching a context that is about to run on the current thread.
+     * Close the returned handle once the execution finishes.
+     */
+    public Watch watch(Context context) {
+        Watch watch = new Watch(context, Thread.currentThread());
+        watch.future = scheduler.scheduleAtFixedRate(watch::check, CHECK_INTERVAL_MS, CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        return watch;
+    }
+
+    @PreDestroy
+    void close() {
+        scheduler.shutdownNow();
+    }
+
+    public class Watch implements AutoCloseable {
+        private final Context context;
+        private final long threadId;
+        private final long startNanos = System.nanoTime();
+        private final long startCpuNanos;
+        private volatile ScheduledFuture<?> future;
+        private volatile JsExecutionStatus tripped;
+
+        private Watch(Context context, Thread thread) {
+            this.context = context;
+            this.threadId = thread.threadId();
+            this.startCpuNanos = cpuTime();
+        }
+
+        /**
+         * @return the status that caused cancellation, or null if the script stayed within budget.
+         */
+        public JsExecutionStatus tripped() {
+            return tripped;
+        }
+
+        private void check() {
+            if (tripped != null) {
+                return;
+            }
+            if (timeoutNanos > 0 && System.nanoTime() - startNanos > timeoutNanos) {
+                cancel(JsExecutionStatus.TIMEOUT, "wall-clock timeout");
+                return;
+            }
+            // CPU time is unavailable (-1) for virtual threads; the wall-clock budget still applies there
+            long cpu = cpuTime();
+            if (cpuTimeNanos > 0 && startCpuNanos >= 0 && cpu >= 0 && cpu - startCpuNanos > cpuTimeNanos) {
+                cancel(JsExecutionStatus.LIMIT_EXCEEDED, "CPU time budget");
+            }
+        }
+
+        private void cancel(JsExecutionStatus status, String reason) {
+            tripped = status;
+            LOG.warn("Cancelling script: exceeded {}", reason);
+            try {
+                context.close(true);
+            } catch (Exception e) {
+                LOG.debug("Error while cancelling context: {}", e.getMessage());
+            }
+            close();
+        }
+
+        private long cpuTime() {
+            try {
+                return threadMXBean.getThreadCpuTime(threadId);
+            } catch (UnsupportedOperationException e) {
+                return -1;
+            }
+        }
+
+        @Override
+        public void close() {
+            ScheduledFuture<?> f = future;
+            if (f != null) {
+                f.cancel(false);
+            }
+        }
+    }
+}
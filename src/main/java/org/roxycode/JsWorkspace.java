@@ -0,0 +1,261 @@
+package org.roxycode;
+
+import org.graalvm.polyglot.HostAccess;
+import org.graalvm.polyglot.proxy.ProxyObject;
+import org.roxycode.sandbox.SandboxEntry;
+import org.roxycode.sandbox.SandboxWalker;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * The {@code workspace} global scripts use to inspect the sandbox file system.
+ * <p>
+ * Reads map only the requested region of a file, so inspecting a large file never copies more
+ * than {@code maxReadBytes} into a JS string. Listings and walks are cursors that read one
+ * entry, with its attributes, at a time. A range that starts or ends inside a multi-byte character
+ * decodes that character as U+FFFD.
+ */
+public class JsWorkspace implements AutoCloseable {
+    private static final int LINE_SCAN_WINDOW = 16 * 1024 * 1024;
+
+    private final FileSystem fs;
+    private final int maxReadBytes;
+    private final List<Listing> openListings = new ArrayList<>();
+
+    JsWorkspace(FileSystem fs, int maxReadBytes) {
+        this.fs = fs;
+        this.maxReadBytes = maxReadBytes;
+    }
+
+    @HostAccess.Export
+    public boolean exists(String path) {
+        return Files.exists(resolve(path));
+    }
+
+    @HostAccess.Export
+    public long size(String path) {
+        try {
+            return Files.size(resolve(path));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Decodes {@code length} bytes starting at {@code offset} as UTF-8. Reads past the end are cut short.
+     */
+    @HostAccess.Export
+    public String read(String path, long offset, int length) {
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("offset and length must not be negative");
+        }
+        if (length > maxReadBytes) {
+            throw new IllegalArgumentException("Cannot read more than " + maxReadBytes + " bytes at once");
+        }
+        try (FileChannel channel = FileChannel.open(resolve(path), StandardOpenOption.READ)) {
+            long available = Math.max(0, channel.size() - offset);
+            int count = (int) Math.min(length, available);
+            if (count == 0) {
+                return "";
+            }
+            return StandardCharsets.UTF_8.decode(region(channel, offset, count)).toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns up to {@code maxLines} lines starting at the zero-based line {@code startLine}.
+     * Only the mapped windows up to the end of the range are touched.
+     */
+    @HostAccess.Export
+    public String readLines(String path, long startLine, int maxLines) {
+        if (startLine < 0 || maxLines <= 0) {
+            return "";
+        }
+        try (FileChannel channel = FileChannel.open(resolve(path), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long line = 0;
+            long start = startLine == 0 ? 0 : -1;
+            long end = size;
+            long windowStart = 0;
+            scan:
+            while (windowStart < size) {
+                int windowSize = (int) Math.min(LINE_SCAN_WINDOW, size - windowStart);
+                ByteBuffer window = region(channel, windowStart, windowSize);
+                for (int i = 0; i < windowSize; i++) {
+                    if (window.get(i) != '\n') {
+                        continue;
+                    }
+                    line++;
+                    if (line == startLine) {
+                        start = windowStart + i + 1;
+                    } else if (line == startLine + maxLines) {
+                        end = windowStart + i + 1;
+                        break scan;
+                    }
+                }
+                windowStart += windowSize;
+            }
+            if (start < 0 || start >= size) {
+                return "";
+            }
+            if (end - start > maxReadBytes) {
+                throw new IllegalArgumentException("Requested lines exceed " + maxReadBytes + " bytes, read fewer lines");
+            }
+            return StandardCharsets.UTF_8.decode(region(channel, start, (int) (end - start))).toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Creates or replaces a file with {@code text} as UTF-8, creating missing parent directories.
+     * Fails when the workspace is read-only.
+     */
+    @HostAccess.Export
+    public void write(String path, String text) {
+        Path file = resolve(path);
+        try {
+            Path parent = file.getParent();
+            if (parent != null && !Files.isDirectory(parent)) {
+                Files.createDirectories(parent);
+            }
+            Files.writeString(file, text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Removes a file or empty directory; returns false if there was nothing to remove.
+     */
+    @HostAccess.Export
+    public boolean delete(String path) {
+        try {
+            return Files.deleteIfExists(resolve(path));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Opens a cursor over a directory. Entries are {@code {name, path, directory, size}} objects.
+     */
+    @HostAccess.Export
+    public Listing list(String path) {
+        return open(path, 1, null);
+    }
+
+    /**
+     * Opens a cursor over the whole tree below a directory, depth-first, with the same entries as
+     * {@link #list}. Only entries whose path relative to {@code path} matches {@code glob} are
+     * returned, e.g. {@code **}{@code /*.java}; all subdirectories are still searched.
+     */
+    @HostAccess.Export
+    public Listing walk(String path, String glob) {
+        return open(path, Integer.MAX_VALUE, glob);
+    }
+
+    private Listing open(String path, int maxDepth, String glob) {
+        try {
+            Listing listing = new Listing(SandboxWalker.walk(resolve(path), maxDepth, glob));
+            synchronized (openListings) {
+                openListings.add(listing);
+            }
+            return listing;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Maps the region when the file lives on disk. Files on a memory file system can't be mapped,
+     * and are already in memory, so the region is copied out instead.
+     */
+    private static ByteBuffer region(FileChannel channel, long offset, int length) throws IOException {
+        try {
+            return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        } catch (UnsupportedOperationException e) {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            int read;
+            do {
+                read = channel.read(buffer, offset + buffer.position());
+            } while (read > 0 && buffer.hasRemaining());
+            return buffer.flip();
+        }
+    }
+
+    private Path resolve(String path) {
+        if (fs == null) {
+            throw new IllegalStateException("No workspace is configured");
+        }
+        return fs.getPath(path.startsWith("/") ? path : "/" + path);
+    }
+
+    @Override
+    public void close() {
+        synchronized (openListings) {
+            for (Listing listing : openListings) {
+                listing.close();
+            }
+            openListings.clear();
+        }
+    }
+
+    public static class Listing implements AutoCloseable {
+        private final Stream<SandboxEntry> stream;
+        private final Iterator<SandboxEntry> entries;
+        private boolean closed;
+
+        Listing(Stream<SandboxEntry> stream) {
+            this.stream = stream;
+            this.entries = stream.iterator();
+        }
+
+        @HostAccess.Export
+        public boolean hasNext() {
+            return !closed && entries.hasNext();
+        }
+
+        /**
+         * The next entry, or null once the directory is exhausted.
+         */
+        @HostAccess.Export
+        public ProxyObject next() {
+            if (!hasNext()) {
+                return null;
+            }
+            SandboxEntry entry = entries.next();
+            Path name = entry.path().getFileName();
+            return ProxyObject.fromMap(Map.of(
+                    "name", name != null ? name.toString() : "",
+                    "path", entry.path().toString(),
+                    "directory", entry.attributes().isDirectory(),
+                    "size", entry.attributes().size()));
+        }
+
+        @HostAccess.Export
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            stream.close();
+        }
+    }
+}
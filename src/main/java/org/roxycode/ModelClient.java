@@ -0,0 +1,23 @@
+package org.roxycode;
+
+import com.google.genai.types.Content;
+import com.google.genai.types.GenerateContentConfig;
+import com.google.genai.types.GenerateContentResponse;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * The model calls the agent loop makes. {@link GeminiModelClient} talks to the Gemini API;
+ * other implementations let the loop run without network access or spend, e.g. in benchmarks.
+ * Backends with context caching implement {@link CachingModelClient} as well.
+ */
+public interface ModelClient {
+
+    GenerateContentResponse generateContent(String model, List<Content> contents, GenerateContentConfig config);
+
+    /**
+     * Streams response chunks as they arrive. The stream must be closed to release the connection.
+     */
+    Stream<GenerateContentResponse> generateContentStream(String model, List<Content> contents, GenerateContentConfig config);
+}
@@ -0,0 +1,55 @@
+package org.roxycode;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The most recent call latencies per model, kept in a fixed-size ring for percentile estimates.
+ */
+final class ModelLatencyTracker {
+    private final int window;
+    private final ConcurrentHashMap<String, Ring> rings = new ConcurrentHashMap<>();
+
+    ModelLatencyTracker(int window) {
+        this.window = Math.max(1, window);
+    }
+
+    void record(String model, long nanos) {
+        rings.computeIfAbsent(String.valueOf(model), m -> new Ring(window)).add(nanos);
+    }
+
+    /**
+     * The given percentile of the recent latencies of {@code model} in nanoseconds, or -1 while
+     * fewer than {@code minSamples} calls have been seen.
+     */
+    long percentile(String model, double percentile, int minSamples) {
+        Ring ring = rings.get(String.valueOf(model));
+        return ring == null ? -1 : ring.percentile(percentile, minSamples);
+    }
+
+    private static final class Ring {
+        private final long[] values;
+        private int next;
+        private int count;
+
+        Ring(int size) {
+            this.values = new long[size];
+        }
+
+        synchronized void add(long value) {
+            values[next] = value;
+            next = (next + 1) % values.length;
+            count = Math.min(count + 1, values.length);
+        }
+
+        synchronized long percentile(double percentile, int minSamples) {
+            if (count == 0 || count < minSamples) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(values, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile * count) - 1;
+            return sorted[Math.max(0, Math.min(count - 1, index))];
+        }
+    }
+}
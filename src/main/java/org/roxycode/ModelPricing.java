@@ -0,0 +1,16 @@
+package org.roxycode;
+
+import io.micronaut.serde.annotation.Serdeable;
+
+/**
+ * Per-model prices from {@code models.toml}, all in USD per million tokens.
+ */
+@Serdeable
+public record ModelPricing(
+    String apiName,
+    double inputPricePer1m,
+    double cachedPricePer1m,
+    double cacheStoragePricePer1mPerHour,
+    double outputPricePer1m,
+    String description
+) {}
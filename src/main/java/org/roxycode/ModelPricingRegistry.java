@@ -0,0 +1,125 @@
+package org.roxycode;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Loads model pricing from {@code models.toml} on the classpath, keyed by API model name.
+ */
+@Singleton
+public class ModelPricingRegistry {
+    private static final Logger LOG = LoggerFactory.getLogger(ModelPricingRegistry.class);
+    private static final String RESOURCE = "models.toml";
+
+    private final Map<String, ModelPricing> pricing;
+
+    @Inject
+    public ModelPricingRegistry() {
+        this(loadResource());
+    }
+
+    ModelPricingRegistry(String toml) {
+        Map<String, ModelPricing> byName = new LinkedHashMap<>();
+        for (Map<String, String> table : parse(toml).values()) {
+            String apiName = table.get("api_name");
+            if (apiName == null) {
+                continue;
+            }
+            byName.put(apiName, new ModelPricing(
+                    apiName,
+                    number(table, "input_price_per_1m"),
+                    number(table, "cached_price_per_1m"),
+                    number(table, "cache_storage_price_per_1m_per_hour"),
+                    number(table, "output_price_per_1m"),
+                    table.getOrDefault("description", "")
+            ));
+        }
+        this.pricing = byName;
+        LOG.info("Loaded pricing for {} models", pricing.size());
+    }
+
+    public Optional<ModelPricing> find(String modelName) {
+        return Optional.ofNullable(modelName).map(pricing::get);
+    }
+
+    public Collection<ModelPricing> all() {
+        return List.copyOf(pricing.values());
+    }
+
+    private static String loadResource() {
+        try (InputStream in = ModelPricingRegistry.class.getClassLoader().getResourceAsStream(RESOURCE)) {
+            if (in == null) {
+                LOG.warn("{} not found on classpath, no model pricing available", RESOURCE);
+                return "";
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            LOG.error("Failed to read {}: {}", RESOURCE, e.getMessage());
+            return "";
+        }
+    }
+
+    /**
+     * Parses the flat subset of TOML used by models.toml: {@code [table]} headers and
+     * {@code key = value} lines with string or numeric values and trailing comments.
+     */
+    static Map<String, Map<String, String>> parse(String toml) {
+        Map<String, Map<String, String>> tables = new LinkedHashMap<>();
+        Map<String, String> current = null;
+        for (String rawLine : toml.split("\\R")) {
+            String line = stripComment(rawLine).trim();
+            if (line.isEmpty()) continue;
+
+            if (line.startsWith("[") && line.endsWith("]")) {
+                current = tables.computeIfAbsent(line.substring(1, line.length() - 1).trim(), k -> new HashMap<>());
+                continue;
+            }
+            int sep = line.indexOf('=');
+            if (sep <= 0 || current == null) continue;
+
+            String key = line.substring(0, sep).trim();
+            String value = line.substring(sep + 1).trim();
+            if (value.length() >= 2 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"') {
+                value = value.substring(1, value.length() - 1);
+            }
+            current.put(key, value);
+        }
+        return tables;
+    }
+
+    private static String stripComment(String line) {
+        boolean inString = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                inString = !inString;
+            } else if (c == '#' && !inString) {
+                return line.substring(0, i);
+            }
+        }
+        return line;
+    }
+
+    private static double number(Map<String, String> table, String key) {
+        String value = table.get(key);
+        if (value == null) return 0.0;
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            LOG.warn("Invalid number for {}: {}", key, value);
+            return 0.0;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.roxycode;
+
+import com.google.genai.types.Candidate;
+import com.google.genai.types.Content;
+import com.google.genai.types.GenerateContentResponse;
+import com.google.genai.types.GenerateContentResponseUsageMetadata;
+import com.google.genai.types.Part;
+import io.micronaut.json.JsonMapper;
+import io.micronaut.serde.annotation.Serdeable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A JSON-lines file of recorded model exchanges. Each line holds the request fingerprint and
+ * the response chunks with their offsets from the start of the call, so replays can
+ * reproduce time to first token as well as total latency.
+ */
+public class ModelTranscript {
+
+    @Serdeable
+    public record Exchange(String key, String model, List<Chunk> chunks) {
+
+        public long latencyMillis() {
+            return chunks.isEmpty() ? 0 : chunks.get(chunks.size() - 1).offsetMillis();
+        }
+
+        public List<GenerateContentResponse> responses() {
+            return chunks.stream().map(chunk -> GenerateContentResponse.fromJson(chunk.response())).toList();
+        }
+    }
+
+    /**
+     * One response (or stream chunk) as the JSON google-genai produces for it.
+     */
+    @Serdeable
+    public record Chunk(long offsetMillis, String response) {}
+
+    private final Path file;
+    private final JsonMapper jsonMapper;
+
+    public ModelTranscript(Path file, JsonMapper jsonMapper) {
+        this.file = file;
+        this.jsonMapper = jsonMapper;
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    public List<Exchange> load() throws IOException {
+        List<Exchange> exchanges = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (!line.isBlank()) {
+                exchanges.add(jsonMapper.readValue(line, Exchange.class));
+            }
+        }
+        return exchanges;
+    }
+
+    public synchronized void append(Exchange exchange) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        String line = new String(jsonMapper.writeValueAsBytes(exchange), StandardCharsets.UTF_8) + "\n";
+        Files.writeString(file, line, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Folds streamed chunks into the single response a non-streaming call would have returned.
+     */
+    static GenerateContentResponse merge(List<GenerateContentResponse> chunks) {
+        if (chunks.size() == 1) {
+            return chunks.get(0);
+        }
+        List<Part> parts = new ArrayList<>();
+        GenerateContentResponseUsageMetadata usage = null;
+        for (GenerateContentResponse chunk : chunks) {
+            usage = chunk.usageMetadata().orElse(usage);
+            chunk.candidates()
+                    .filter(candidates -> !candidates.isEmpty())
+                    .flatMap(candidates -> candidates.get(0).content())
+                    .flatMap(Content::parts)
+                    .ifPresent(parts::addAll);
+        }
+        GenerateContentResponse.Builder merged = GenerateContentResponse.builder()
+                .candidates(List.of(Candidate.builder()
+                        .content(Content.builder().role("model").parts(parts).build())
+                        .build()));
+        if (usage != null) {
+            merged.usageMetadata(usage);
+        }
+        return merged.build();
+    }
+}
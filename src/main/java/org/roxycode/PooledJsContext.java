@@ -0,0 +1,49 @@
+package org.roxycode;
+
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.PolyglotException;
+
+import java.io.OutputStream;
+
+/**
+ * A sandboxed context handed out by {@link JsContextPool}.
+ * Contexts are single use: closing this releases the context and the pool
+ * replaces it with a fresh one, so no globals leak between executions.
+ */
+public class PooledJsContext implements AutoCloseable {
+    private final Context context;
+    private final SwitchableOutputStream output;
+    private final boolean warm;
+
+    PooledJsContext(Context context, SwitchableOutputStream output, boolean warm) {
+        this.context = context;
+        this.output = output;
+        this.warm = warm;
+    }
+
+    public Context context() {
+        return context;
+    }
+
+    /**
+     * @return true if this context was pre-initialized in the pool, false if it was built on demand.
+     */
+    public boolean isWarm() {
+        return warm;
+    }
+
+    PooledJsContext redirect(OutputStream target) {
+        output.setTarget(target);
+        return this;
+    }
+
+    @Override
+    public void close() {
+        output.setTarget(null);
+        try {
+            context.close();
+        } catch (PolyglotException | IllegalStateException e) {
+            // Already cancelled by the watchdog or a resource limit
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.roxycode;
+
+import com.google.genai.types.Content;
+import com.google.genai.types.FunctionCall;
+import com.google.genai.types.FunctionResponse;
+import com.google.genai.types.Part;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Stable hash of a model request. Content JSON can't be hashed directly: maps such as tool
+ * call arguments serialize in an order that changes between JVM runs. Here maps are sorted
+ * by key, and only the parts that affect generation are included; thought signatures are
+ * left out.
+ */
+public final class PromptFingerprint {
+
+    private PromptFingerprint() {
+    }
+
+    public static String of(String model, List<Content> contents) {
+        StringBuilder canonical = new StringBuilder();
+        canonical.append("model=").append(model).append('\n');
+        for (Content content : contents) {
+            appendContent(canonical, content);
+        }
+        return Hashing.sha256(canonical.toString());
+    }
+
+    static void appendContent(StringBuilder out, Content content) {
+        out.append("role=").append(content.role().orElse("")).append('\n');
+        for (Part part : content.parts().orElse(List.of())) {
+            if (part.text().isPresent()) {
+                out.append(part.thought().orElse(false) ? "thought=" : "text=");
+                appendValue(out, part.text().get());
+            }
+            if (part.functionCall().isPresent()) {
+                FunctionCall call = part.functionCall().get();
+                out.append("call=").append(call.name().orElse("")).append(' ');
+                appendValue(out, call.args().orElse(Map.of()));
+            }
+            if (part.functionResponse().isPresent()) {
+                FunctionResponse response = part.functionResponse().get();
+                out.append("response=").append(response.name().orElse("")).append(' ');
+                appendValue(out, response.response().orElse(Map.of()));
+            }
+            out.append('\n');
+        }
+    }
+
+    static void appendValue(StringBuilder out, Object value) {
+        if (value instanceof Map<?, ?> map) {
+            out.append('{');
+            for (Map.Entry<String, ?> entry : sorted(map).entrySet()) {
+                appendValue(out, entry.getKey());
+                out.append(':');
+                appendValue(out, entry.getValue());
+                out.append(',');
+            }
+            out.append('}');
+        } else if (value instanceof List<?> list) {
+            out.append('[');
+            for (Object item : list) {
+                appendValue(out, item);
+                out.append(',');
+            }
+            out.append(']');
+        } else if (value instanceof String s) {
+            // Length prefix keeps "a,b" and the two strings "a" and "b" apart
+            out.append(s.length()).append('"').append(s);
+        } else {
+            out.append(value);
+        }
+    }
+
+    private static Map<String, ?> sorted(Map<?, ?> map) {
+        Map<String, Object> sorted = new TreeMap<>();
+        map.forEach((k, v) -> sorted.put(String.valueOf(k), v));
+        return sorted;
+    }
+}
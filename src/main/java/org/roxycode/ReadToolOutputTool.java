@@ -0,0 +1,147 @@
+package org.roxycode;
+
+import com.google.genai.types.FunctionCall;
+import com.google.genai.types.FunctionDeclaration;
+import com.google.genai.types.FunctionResponse;
+import com.google.genai.types.Part;
+import com.google.genai.types.Schema;
+import jakarta.inject.Singleton;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@code read_tool_output}: pages through tool output that {@link ToolOutputBudget} cut short, by
+ * line, or by character offset for lines longer than a page.
+ */
+@Singleton
+public class ReadToolOutputTool implements AgentTool {
+    static final String NAME = "read_tool_output";
+    private static final int DEFAULT_MAX_LINES = 200;
+
+    private final ToolOutputBudget budget;
+    private final AgentMetrics metrics;
+
+    public ReadToolOutputTool(ToolOutputBudget budget, AgentMetrics metrics) {
+        this.budget = budget;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isBatchable() {
+        return true;
+    }
+
+    @Override
+    public FunctionDeclaration declaration() {
+        return FunctionDeclaration.builder()
+                .name(NAME)
+                .description("Reads lines of a tool output that was too long and got truncated; the truncation"
+                        + " marker gives its id. Returns {text, totalLines, nextLine, nextChar}, with both 0 at the end."
+                        + " Pages are capped at " + budget.maxBytes() + " bytes; a longer line is cut there, so"
+                        + " continue it with start_char set to nextChar.")
+                .parameters(Schema.builder()
+                        .type("OBJECT")
+                        .properties(Map.of(
+                                "id", Schema.builder()
+                                        .type("STRING")
+                                        .description("The id from the truncation marker")
+                                        .build(),
+                                "start_line", Schema.builder()
+                                        .type("INTEGER")
+                                        .description("First line to return, 1-based; defaults to 1")
+                                        .build(),
+                                "max_lines", Schema.builder()
+                                        .type("INTEGER")
+                                        .description("How many lines to return; defaults to " + DEFAULT_MAX_LINES)
+                                        .build(),
+                                "start_char", Schema.builder()
+                                        .type("INTEGER")
+                                        .description("Character offset to start at instead of start_line, as given by nextChar")
+                                        .build()))
+                        .required(List.of("id"))
+                        .build())
+                .build();
+    }
+
+    @Override
+    public ToolOutcome execute(FunctionCall call, ToolContext context) {
+        Map<String, Object> args = call.args().orElse(Map.of());
+        String id = args.get("id") instanceof String i ? i : "";
+        int startLine = Math.max(1, intArg(args.get("start_line"), 1));
+        int maxLines = Math.max(1, intArg(args.get("max_lines"), DEFAULT_MAX_LINES));
+        int startChar = intArg(args.get("start_char"), -1);
+        String summary = NAME + "(" + id + ", " + (startChar >= 0 ? "char " + startChar : startLine) + ", " + maxLines + ")";
+        context.listener().onToolCallStarted(summary);
+
+        Map<String, Object> response;
+        String output;
+        String text = budget.spilled(context.sessionId(), id);
+        if (text == null) {
+            metrics.recordToolCall(NAME, ToolCallStatus.ERROR);
+            output = "Error: No tool output with id " + id;
+            response = Map.of("success", false, "error", "No tool output with id " + id + "; it may have expired");
+        } else {
+            metrics.recordToolCall(NAME, ToolCallStatus.OK);
+            int start = 0;
+            int line = 1;
+            if (startChar >= 0) {
+                start = Math.min(startChar, text.length());
+                if (start > 0 && start < text.length() && Character.isLowSurrogate(text.charAt(start))) {
+                    start--;
+                }
+                for (int i = 0; i < start; i++) {
+                    if (text.charAt(i) == '\n') {
+                        line++;
+                    }
+                }
+            } else {
+                while (line < startLine && start < text.length()) {
+                    int newline = text.indexOf('\n', start);
+                    start = newline < 0 ? text.length() : newline + 1;
+                    line++;
+                }
+            }
+            // Whole lines up to the byte cap; a single overlong line is cut there and continues at nextChar
+            int limit = budget.pageEnd(text, start);
+            int end = start;
+            int lines = 0;
+            while (lines < maxLines && end < text.length()) {
+                int newline = text.indexOf('\n', end);
+                int next = newline < 0 ? text.length() : newline + 1;
+                if (next > limit) {
+                    if (lines == 0) {
+                        end = limit;
+                    }
+                    break;
+                }
+                end = next;
+                lines++;
+            }
+            int totalLines = (int) text.chars().filter(c -> c == '\n').count() + (text.endsWith("\n") ? 0 : 1);
+            boolean more = end < text.length();
+            output = text.substring(start, end);
+            response = Map.of("success", true, "text", output, "totalLines", totalLines,
+                    "nextLine", more ? line + lines : 0, "nextChar", more ? end : 0);
+        }
+
+        Part responsePart = Part.builder()
+                .functionResponse(FunctionResponse.builder()
+                        .name(NAME)
+                        .response(response)
+                        .build())
+                .build();
+        ToolExecution execution = new ToolExecution(summary, output);
+        context.listener().onToolCallFinished(execution);
+        return new ToolOutcome(execution, responsePart);
+    }
+
+    private static int intArg(Object value, int fallback) {
+        return value instanceof Number number ? number.intValue() : fallback;
+    }
+}
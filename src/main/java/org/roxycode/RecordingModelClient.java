@@ -0,0 +1,82 @@
+package org.roxycode;
+
+import com.google.genai.types.Content;
+import com.google.genai.types.GenerateContentConfig;
+import com.google.genai.types.GenerateContentResponse;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.json.JsonMapper;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Passes calls through to Gemini and appends every exchange to a {@link ModelTranscript}
+ * for {@link ReplayModelClient}. Context caching is off while recording so each request
+ * carries, and is keyed by, the full history.
+ */
+@Singleton
+@Requires(property = "roxycode.model.backend", value = "record")
+public class RecordingModelClient implements ModelClient {
+    private static final Logger LOG = LoggerFactory.getLogger(RecordingModelClient.class);
+
+    private final ModelClient delegate;
+    private final ModelTranscript transcript;
+
+    @Inject
+    public RecordingModelClient(ConfigService configService,
+                                JsonMapper jsonMapper,
+                                @Value("${roxycode.model.base-url:}") String baseUrl,
+                                @Value("${roxycode.model.transcript:transcripts/model.jsonl}") String transcriptFile) {
+        this(new GeminiModelClient(configService, baseUrl), new ModelTranscript(Paths.get(transcriptFile), jsonMapper));
+    }
+
+    RecordingModelClient(ModelClient delegate, ModelTranscript transcript) {
+        this.delegate = delegate;
+        this.transcript = transcript;
+        LOG.info("Recording model exchanges to {}", transcript.file().toAbsolutePath());
+    }
+
+    @Override
+    public GenerateContentResponse generateContent(String model, List<Content> contents, GenerateContentConfig config) {
+        long start = System.nanoTime();
+        GenerateContentResponse response = delegate.generateContent(model, contents, config);
+        record(new ModelTranscript.Exchange(PromptFingerprint.of(model, contents), model,
+                List.of(new ModelTranscript.Chunk(elapsedMillis(start), response.toJson()))));
+        return response;
+    }
+
+    @Override
+    public Stream<GenerateContentResponse> generateContentStream(String model, List<Content> contents, GenerateContentConfig config) {
+        long start = System.nanoTime();
+        String key = PromptFingerprint.of(model, contents);
+        List<ModelTranscript.Chunk> chunks = Collections.synchronizedList(new ArrayList<>());
+        return delegate.generateContentStream(model, contents, config)
+                .peek(chunk -> chunks.add(new ModelTranscript.Chunk(elapsedMillis(start), chunk.toJson())))
+                .onClose(() -> {
+                    if (!chunks.isEmpty()) {
+                        record(new ModelTranscript.Exchange(key, model, List.copyOf(chunks)));
+                    }
+                });
+    }
+
+    private void record(ModelTranscript.Exchange exchange) {
+        try {
+            transcript.append(exchange);
+        } catch (IOException e) {
+            LOG.warn("Failed to record model exchange to {}: {}", transcript.file(), e.getMessage());
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
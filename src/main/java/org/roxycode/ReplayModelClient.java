@@ -0,0 +1,117 @@
+package org.roxycode;
+
+import com.google.genai.types.Content;
+import com.google.genai.types.GenerateContentConfig;
+import com.google.genai.types.GenerateContentResponse;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.json.JsonMapper;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Serves recorded responses from a {@link ModelTranscript} instead of calling Gemini, so the
+ * whole agent pipeline (tool calls included) can be load-tested offline.
+ * <p>
+ * Requests are matched by {@link PromptFingerprint}; several recordings of the same request are
+ * served in rotation. Unmatched requests fail in strict mode and otherwise get the next
+ * recording in file order. Recorded latencies are replayed, multiplied by {@code latency-scale}.
+ */
+@Singleton
+@Requires(property = "roxycode.model.backend", value = "replay")
+public class ReplayModelClient implements ModelClient {
+    private static final Logger LOG = LoggerFactory.getLogger(ReplayModelClient.class);
+
+    private final Map<String, List<ModelTranscript.Exchange>> byKey = new HashMap<>();
+    private final List<ModelTranscript.Exchange> all;
+    private final Map<String, AtomicLong> rotation = new HashMap<>();
+    private final AtomicLong fallback = new AtomicLong();
+    private final double latencyScale;
+    private final boolean strict;
+
+    @Inject
+    public ReplayModelClient(JsonMapper jsonMapper,
+                             @Value("${roxycode.model.transcript:transcripts/model.jsonl}") String transcriptFile,
+                             @Value("${roxycode.model.replay.latency-scale:1.0}") double latencyScale,
+                             @Value("${roxycode.model.replay.strict:false}") boolean strict) {
+        this(load(new ModelTranscript(Paths.get(transcriptFile), jsonMapper)), latencyScale, strict);
+    }
+
+    ReplayModelClient(List<ModelTranscript.Exchange> exchanges, double latencyScale, boolean strict) {
+        if (exchanges.isEmpty()) {
+            throw new IllegalStateException("Model transcript is empty, nothing to replay");
+        }
+        this.all = List.copyOf(exchanges);
+        this.latencyScale = Math.max(0.0, latencyScale);
+        this.strict = strict;
+        for (ModelTranscript.Exchange exchange : all) {
+            byKey.computeIfAbsent(exchange.key(), k -> new ArrayList<>()).add(exchange);
+            rotation.computeIfAbsent(exchange.key(), k -> new AtomicLong());
+        }
+        LOG.info("Replaying {} recorded model exchanges ({} distinct requests)", all.size(), byKey.size());
+    }
+
+    private static List<ModelTranscript.Exchange> load(ModelTranscript transcript) {
+        try {
+            return transcript.load();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read model transcript " + transcript.file(), e);
+        }
+    }
+
+    @Override
+    public GenerateContentResponse generateContent(String model, List<Content> contents, GenerateContentConfig config) {
+        long start = System.nanoTime();
+        ModelTranscript.Exchange exchange = find(model, contents);
+        sleepUntil(start, exchange.latencyMillis());
+        return ModelTranscript.merge(exchange.responses());
+    }
+
+    @Override
+    public Stream<GenerateContentResponse> generateContentStream(String model, List<Content> contents, GenerateContentConfig config) {
+        long start = System.nanoTime();
+        ModelTranscript.Exchange exchange = find(model, contents);
+        return exchange.chunks().stream().map(chunk -> {
+            sleepUntil(start, chunk.offsetMillis());
+            return GenerateContentResponse.fromJson(chunk.response());
+        });
+    }
+
+    private ModelTranscript.Exchange find(String model, List<Content> contents) {
+        String key = PromptFingerprint.of(model, contents);
+        List<ModelTranscript.Exchange> matches = byKey.get(key);
+        if (matches != null) {
+            return matches.get((int) (rotation.get(key).getAndIncrement() % matches.size()));
+        }
+        if (strict) {
+            throw new IllegalStateException("No recorded response for request " + key.substring(0, 12));
+        }
+        LOG.debug("No recording matches request {}, falling back to file order", key.substring(0, 12));
+        return all.get((int) (fallback.getAndIncrement() % all.size()));
+    }
+
+    private void sleepUntil(long startNanos, long offsetMillis) {
+        long remainingNanos = startNanos + (long) (offsetMillis * latencyScale * 1_000_000) - System.nanoTime();
+        if (remainingNanos <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(remainingNanos / 1_000_000, (int) (remainingNanos % 1_000_000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while replaying model latency", e);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.roxycode;
+
+import com.google.genai.types.Content;
+import com.google.genai.types.GenerateContentConfig;
+import io.micronaut.context.annotation.Value;
+import jakarta.inject.Singleton;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opt-in cache of model turns for callers that repeat identical prompts. Keyed by model name,
+ * the request config (tool schema included) and the normalized history, so a hit is exactly
+ * the request the model already answered. Entries expire after the TTL; past
+ * {@code max-entries} the least recently used go first.
+ */
+@Singleton
+public class ResponseCache {
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final AgentMetrics metrics;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bypassed = new LongAdder();
+
+    public ResponseCache(@Value("${roxycode.response-cache.enabled:false}") boolean enabled,
+                         @Value("${roxycode.response-cache.max-entries:500}") int maxEntries,
+                         @Value("${roxycode.response-cache.ttl-minutes:60}") long ttlMinutes,
+                         AgentMetrics metrics) {
+        this.enabled = enabled && maxEntries > 0;
+        this.maxEntries = maxEntries;
+        this.ttlMillis = Duration.ofMinutes(Math.max(1, ttlMinutes)).toMillis();
+        this.metrics = metrics;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public static String key(String model, GenerateContentConfig config, List<Content> history) {
+        return Hashing.sha256(PromptFingerprint.of(model, history) + (config != null ? config.toJson() : ""));
+    }
+
+    /**
+     * Looks up the model turn for this request. Empty on a miss, when the cache is off,
+     * or when the caller asked to bypass it.
+     */
+    public Optional<Content> get(String key, ChatOptions options) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        if (options.bypassResponseCache()) {
+            bypassed.increment();
+            metrics.recordResponseCache("bypass");
+            return Optional.empty();
+        }
+        Content cached = null;
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt() > System.currentTimeMillis()) {
+                cached = entry.content();
+            } else if (entry != null) {
+                entries.remove(key);
+            }
+        }
+        (cached != null ? hits : misses).increment();
+        metrics.recordResponseCache(cached != null ? "hit" : "miss");
+        return Optional.ofNullable(cached);
+    }
+
+    public void put(String key, Content content, ChatOptions options) {
+        if (!enabled || options.bypassResponseCache()) {
+            return;
+        }
+        synchronized (entries) {
+            entries.put(key, new Entry(content, System.currentTimeMillis() + ttlMillis));
+            evict();
+        }
+    }
+
+    public ResponseCacheStats stats() {
+        long h = hits.sum();
+        long m = misses.sum();
+        synchronized (entries) {
+            return new ResponseCacheStats(enabled, h, m, bypassed.sum(), h + m == 0 ? 0.0 : h / (double) (h + m), entries.size());
+        }
+    }
+
+    private void evict() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            if (entries.size() > maxEntries || eldest.getValue().expiresAt() <= now) {
+                it.remove();
+            } else {
+                break;
+            }
+        }
+    }
+
+    private record Entry(Content content, long expiresAt) {}
+}
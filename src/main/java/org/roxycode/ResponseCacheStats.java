@@ -0,0 +1,13 @@
+package org.roxycode;
+
+import io.micronaut.serde.annotation.Serdeable;
+
+@Serdeable
+public record ResponseCacheStats(
+    boolean enabled,
+    long hits,
+    long misses,
+    long bypassed,
+    double hitRate,
+    int entries
+) {}
@@ -0,0 +1,32 @@
+package org.roxycode;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micronaut.context.annotation.Context;
+
+/**
+ * Gauges over state other beans already track: executor load, sandbox pool and source cache,
+ * and open sessions. Eagerly created so the gauges exist before the first scrape.
+ */
+@Context
+public class RuntimeGauges {
+
+    public RuntimeGauges(AgentMetrics metrics, AgentExecutor agentExecutor, JsExecutionService jsExecutionService,
+                         SessionStore sessionStore) {
+        MeterRegistry registry = metrics.registry();
+        Gauge.builder("roxycode.agent.chats.active", agentExecutor, AgentExecutor::activeCount)
+                .description("Agent runs currently executing")
+                .register(registry);
+        Gauge.builder("roxycode.agent.chats.queued", agentExecutor, AgentExecutor::queuedCount)
+                .description("Agent runs waiting for a worker")
+                .register(registry);
+        Gauge.builder("roxycode.js.pool.idle", jsExecutionService, s -> s.poolStats().idleContexts())
+                .description("Pre-initialized sandbox contexts ready for use")
+                .register(registry);
+        Gauge.builder("roxycode.js.source.cache.hit.ratio", jsExecutionService, s -> s.sourceCacheStats().hitRate())
+                .register(registry);
+        Gauge.builder("roxycode.sessions.open", sessionStore, SessionStore::size)
+                .description("Chat sessions held in memory")
+                .register(registry);
+    }
+}
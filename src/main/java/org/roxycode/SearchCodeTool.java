@@ -0,0 +1,130 @@
+package org.roxycode;
+
+import com.google.genai.types.FunctionCall;
+import com.google.genai.types.FunctionDeclaration;
+import com.google.genai.types.FunctionResponse;
+import com.google.genai.types.Part;
+import com.google.genai.types.Schema;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@code search_code}: looks lines up in the {@link CodeIndex}. Offered only when a workspace is
+ * mounted. Searches are cheap, so the searches of one turn run as a batch.
+ */
+@Singleton
+public class SearchCodeTool implements AgentTool {
+    private static final Logger LOG = LoggerFactory.getLogger(SearchCodeTool.class);
+    static final String NAME = "search_code";
+
+    private final CodeIndex codeIndex;
+    private final WorkspaceService workspace;
+    private final AgentMetrics metrics;
+
+    public SearchCodeTool(CodeIndex codeIndex, WorkspaceService workspace, AgentMetrics metrics) {
+        this.codeIndex = codeIndex;
+        this.workspace = workspace;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return codeIndex.isEnabled();
+    }
+
+    @Override
+    public boolean isBatchable() {
+        return true;
+    }
+
+    @Override
+    public FunctionDeclaration declaration() {
+        return FunctionDeclaration.builder()
+                .name(NAME)
+                .description("Searches the project files through an index and returns matching lines as"
+                        + " {path, line, text}, in path order. Much faster than scanning files from JavaScript;"
+                        + " use it to find definitions and usages, then read around the hits with the workspace."
+                        + " Returns at most " + codeIndex.maxResults() + " matches"
+                        + (workspace.isOverlay() ? " and sees the project as it is, not your own edits." : "."))
+                .parameters(Schema.builder()
+                        .type("OBJECT")
+                        .properties(Map.of(
+                                "query", Schema.builder()
+                                        .type("STRING")
+                                        .description("Text to find on a single line, case-sensitive")
+                                        .build(),
+                                "regex", Schema.builder()
+                                        .type("BOOLEAN")
+                                        .description("Treat the query as a Java regular expression; prefix (?i) to ignore case")
+                                        .build(),
+                                "glob", Schema.builder()
+                                        .type("STRING")
+                                        .description("Only search paths matching this glob, e.g. 'src/**/*.java'")
+                                        .build()))
+                        .required(List.of("query"))
+                        .build())
+                .build();
+    }
+
+    @Override
+    public ToolOutcome execute(FunctionCall call, ToolContext context) {
+        Map<String, Object> args = call.args().orElse(Map.of());
+        String query = args.get("query") instanceof String q ? q : "";
+        boolean regex = Boolean.TRUE.equals(args.get("regex"));
+        String glob = args.get("glob") instanceof String g ? g : null;
+        String summary = NAME + "(" + query + (regex ? ", regex" : "") + (glob != null ? ", " + glob : "") + ")";
+
+        LOG.info("Agent searching code: {}", summary);
+        context.listener().onToolCallStarted(summary);
+
+        Map<String, Object> response;
+        String output;
+        ToolCallStatus status = ToolCallStatus.OK;
+        try (AgentTracer.Span span = context.span().child("tool.search_code").attribute("regex", regex)) {
+            try {
+                CodeSearchResult result = codeIndex.search(query, regex, glob, 0);
+                span.attribute("matches", result.matches().size()).attribute("files_scanned", result.filesScanned());
+                List<Map<String, Object>> matches = result.matches().stream()
+                        .map(match -> Map.<String, Object>of("path", match.path(), "line", match.line(), "text", match.text()))
+                        .toList();
+                response = Map.of("success", true, "matches", matches, "truncated", result.truncated());
+                StringBuilder lines = new StringBuilder();
+                result.matches().forEach(match -> lines.append(match.path()).append(':').append(match.line())
+                        .append(": ").append(match.text()).append('\n'));
+                output = lines.isEmpty() ? "No matches" : lines.toString().trim();
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                // Includes PatternSyntaxException, and the index still being built
+                status = ToolCallStatus.ERROR;
+                span.error(e.getMessage());
+                response = Map.of("success", false, "error", e.getMessage());
+                output = "Error: " + e.getMessage();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                status = ToolCallStatus.ERROR;
+                response = Map.of("success", false, "error", "Interrupted");
+                output = "Error: Interrupted";
+            }
+            span.attribute("status", status);
+        }
+        metrics.recordToolCall(NAME, status);
+
+        Part responsePart = Part.builder()
+                .functionResponse(FunctionResponse.builder()
+                        .name(NAME)
+                        .response(response)
+                        .build())
+                .build();
+        ToolExecution execution = new ToolExecution(summary, output);
+        context.listener().onToolCallFinished(execution);
+        return new ToolOutcome(execution, responsePart);
+    }
+}
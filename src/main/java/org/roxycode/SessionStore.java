@@ -0,0 +1,228 @@
+package org.roxycode;
+
+import com.google.genai.types.Content;
+import io.micronaut.context.annotation.Value;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps conversation history per session id.
+ * Sessions live in memory, are evicted after an idle timeout or when over capacity, and
+ * can optionally be persisted as one JSON line per {@link Content} so that only new turns are written.
+ */
+@Singleton
+public class SessionStore {
+    private static final Logger LOG = LoggerFactory.getLogger(SessionStore.class);
+    private static final Pattern VALID_ID = Pattern.compile("[A-Za-z0-9-]{1,64}");
+
+    private final ConcurrentHashMap<String, ChatSession> sessions = new ConcurrentHashMap<>();
+    private final int maxSessions;
+    private final long idleTimeoutMillis;
+    private final Path directory;
+
+    public SessionStore(@Value("${roxycode.sessions.max-sessions:1000}") int maxSessions,
+                        @Value("${roxycode.sessions.idle-timeout-minutes:60}") long idleTimeoutMinutes,
+                        @Value("${roxycode.sessions.directory:}") String directory) {
+        this.maxSessions = Math.max(1, maxSessions);
+        this.idleTimeoutMillis = TimeUnit.MINUTES.toMillis(idleTimeoutMinutes);
+        this.directory = directory == null || directory.isBlank() ? null : Paths.get(directory);
+    }
+
+    public static String newSessionId() {
+        return UUID.randomUUID().toString();
+    }
+
+    public static boolean isValidId(String id) {
+        return id != null && VALID_ID.matcher(id).matches();
+    }
+
+    /**
+     * Returns the session for the id, reloading it from disk if it was evicted,
+     * or starts a new one (under a fresh id if the given one is missing or malformed).
+     */
+    public ChatSession getOrCreate(String id) {
+        return lookup(id, false);
+    }
+
+    /**
+     * Like {@link #getOrCreate(String)}, but the session is pinned: it is not evicted until
+     * {@link #release(ChatSession)}, so a run never appends to a session the store has dropped
+     * while a second request for the same id starts over.
+     */
+    public ChatSession acquire(String id) {
+        return lookup(id, true);
+    }
+
+    public void release(ChatSession session) {
+        session.unpin();
+        session.touch();
+        if (session.isRemoved() && sessions.computeIfPresent(session.getId(),
+                (key, current) -> current == session && !current.isPinned() ? null : current) == null) {
+            deleteFile(session.getId());
+        }
+    }
+
+    private ChatSession lookup(String id, boolean pin) {
+        String sessionId = isValidId(id) ? id : newSessionId();
+        evictExpired();
+        // Pinning happens inside the map's per-key lock, which eviction takes as well
+        ChatSession session = sessions.compute(sessionId, (key, existing) -> {
+            ChatSession current = existing != null ? existing : new ChatSession(key, load(key));
+            if (pin) {
+                current.pin();
+            }
+            return current;
+        });
+        session.touch();
+        evictOverCapacity();
+        return session;
+    }
+
+    public Optional<ChatSession> find(String id) {
+        if (!isValidId(id)) {
+            return Optional.empty();
+        }
+        ChatSession session = sessions.get(id);
+        if (session == null && directory != null && Files.exists(fileFor(id))) {
+            session = getOrCreate(id);
+        }
+        return Optional.ofNullable(session);
+    }
+
+    /**
+     * Appends new turns to the session and, if persistence is enabled, to its file.
+     */
+    public void append(ChatSession session, List<Content> turns) {
+        if (turns.isEmpty()) {
+            return;
+        }
+        session.append(turns);
+        session.touch();
+        if (directory != null) {
+            StringBuilder lines = new StringBuilder();
+            for (Content turn : turns) {
+                lines.append(turn.toJson().replace("\n", "")).append('\n');
+            }
+            try {
+                Files.createDirectories(directory);
+                Files.writeString(fileFor(session.getId()), lines, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                LOG.error("Failed to persist session {}: {}", session.getId(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Drops the session and its file. A pinned session is only marked, and dropped when the
+     * last run releases it; deleting it now would let the run's final append recreate the
+     * file with just that run's turns.
+     */
+    public void remove(String id) {
+        if (!isValidId(id)) {
+            return;
+        }
+        ChatSession kept = sessions.computeIfPresent(id, (key, current) -> {
+            if (current.isPinned()) {
+                current.markRemoved();
+                return current;
+            }
+            return null;
+        });
+        if (kept == null) {
+            deleteFile(id);
+        }
+    }
+
+    private void deleteFile(String id) {
+        if (directory == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(fileFor(id));
+        } catch (IOException e) {
+            LOG.warn("Failed to delete session file for {}: {}", id, e.getMessage());
+        }
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * The sessions currently held in memory, in no particular order.
+     */
+    public List<ChatSession> sessions() {
+        return List.copyOf(sessions.values());
+    }
+
+    private List<Content> load(String id) {
+        if (directory == null) {
+            return List.of();
+        }
+        Path file = fileFor(id);
+        if (!Files.exists(file)) {
+            return List.of();
+        }
+        List<Content> history = new ArrayList<>();
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                if (!line.isBlank()) {
+                    history.add(Content.fromJson(line));
+                }
+            }
+            LOG.info("Restored session {} with {} turns", id, history.size());
+        } catch (Exception e) {
+            LOG.error("Failed to load session {}: {}", id, e.getMessage());
+        }
+        return history;
+    }
+
+    private Path fileFor(String id) {
+        return directory.resolve(id + ".jsonl");
+    }
+
+    private void evictExpired() {
+        if (idleTimeoutMillis <= 0) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        for (ChatSession session : sessions.values()) {
+            if (session.getLastAccessMillis() < cutoff) {
+                evict(session);
+            }
+        }
+    }
+
+    private void evictOverCapacity() {
+        int excess = sessions.size() - maxSessions;
+        if (excess <= 0) {
+            return;
+        }
+        sessions.values().stream()
+                .filter(s -> !s.isPinned())
+                .sorted(Comparator.comparingLong(ChatSession::getLastAccessMillis))
+                .limit(excess)
+                .forEach(this::evict);
+    }
+
+    private void evict(ChatSession session) {
+        sessions.computeIfPresent(session.getId(), (key, current) -> current == session && !current.isPinned() ? null : current);
+    }
+}
@@ -0,0 +1,21 @@
+package org.roxycode;
+
+import io.micronaut.serde.annotation.Serdeable;
+
+import java.util.Map;
+
+/**
+ * A finished span, shaped after the OpenTelemetry span model. Ids are hex strings;
+ * {@code parentSpanId} is null for the root span of a trace.
+ */
+@Serdeable
+public record SpanData(
+    String traceId,
+    String spanId,
+    String parentSpanId,
+    String name,
+    long startEpochMicros,
+    long durationMicros,
+    String status,
+    Map<String, String> attributes
+) {}
@@ -0,0 +1,33 @@
+package org.roxycode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream whose target can be swapped between executions.
+ * Pooled contexts are built before we know where their console output should go,
+ * so they write here and the target is set when the context is handed out.
+ */
+class SwitchableOutputStream extends OutputStream {
+    private static final OutputStream DISCARD = OutputStream.nullOutputStream();
+    private volatile OutputStream target = DISCARD;
+
+    void setTarget(OutputStream target) {
+        this.target = target != null ? target : DISCARD;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        target.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        target.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        target.flush();
+    }
+}
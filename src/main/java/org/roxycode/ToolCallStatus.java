@@ -0,0 +1,21 @@
+package org.roxycode;
+
+/**
+ * How a tool call ended, for metrics and traces, whatever the tool. Script executions map their
+ * {@link JsExecutionStatus} onto it; the other tools either succeed or fail.
+ */
+public enum ToolCallStatus {
+    OK,
+    ERROR,
+    TIMEOUT,
+    LIMIT_EXCEEDED;
+
+    static ToolCallStatus of(JsExecutionStatus status) {
+        return switch (status) {
+            case OK -> OK;
+            case ERROR -> ERROR;
+            case TIMEOUT -> TIMEOUT;
+            case LIMIT_EXCEEDED -> LIMIT_EXCEEDED;
+        };
+    }
+}
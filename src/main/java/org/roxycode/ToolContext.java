@@ -0,0 +1,7 @@
+package org.roxycode;
+
+/**
+ * What a tool call runs on behalf of: the session, the listener reporting progress, and the span
+ * its own span hangs off.
+ */
+public record ToolContext(String sessionId, AgentListener listener, AgentTracer.Span span) {}
@@ -0,0 +1,139 @@
+package org.roxycode;
+
+import com.google.genai.types.FunctionCall;
+import com.google.genai.types.FunctionResponse;
+import com.google.genai.types.Part;
+import io.micronaut.context.annotation.Value;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the tool calls of a model turn on the shared tool threads.
+ * <p>
+ * All calls of one batchable tool become a single task; every other call is a task of its own.
+ * Tasks of a turn run concurrently, at most {@code roxycode.agent.max-parallel-tools} at once,
+ * and a turn with a single task runs on the caller's thread unless that is a virtual thread, such
+ * as an {@link AgentExecutor} worker. Calls to tools that don't exist get an error response,
+ * since the model expects an answer to each call.
+ */
+@Singleton
+public class ToolDispatcher {
+    private static final Logger LOG = LoggerFactory.getLogger(ToolDispatcher.class);
+
+    private final ToolRegistry registry;
+    private final int maxParallelTools;
+    private final ExecutorService toolExecutor;
+
+    public ToolDispatcher(ToolRegistry registry,
+                          @Value("${roxycode.agent.max-parallel-tools:4}") int maxParallelTools,
+                          @Value("${roxycode.agent.tool-threads:8}") int toolThreads) {
+        this.registry = registry;
+        this.maxParallelTools = Math.max(1, maxParallelTools);
+        // Platform threads rather than virtual ones so the sandbox watchdog can still read per-thread CPU time
+        AtomicInteger threadCount = new AtomicInteger();
+        this.toolExecutor = Executors.newFixedThreadPool(Math.max(1, toolThreads), r -> {
+            Thread t = new Thread(r, "agent-tool-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * A tool and the positions of the calls it runs in this turn.
+     */
+    private record Task(AgentTool tool, List<Integer> calls) {}
+
+    /**
+     * Runs the calls and returns their outcomes in the order the model issued them.
+     */
+    public List<ToolOutcome> dispatch(List<FunctionCall> calls, ToolContext context) throws InterruptedException {
+        ToolOutcome[] outcomes = new ToolOutcome[calls.size()];
+        List<Task> tasks = new ArrayList<>();
+        Map<AgentTool, Task> batches = new IdentityHashMap<>();
+        for (int i = 0; i < calls.size(); i++) {
+            String name = calls.get(i).name().orElse("");
+            AgentTool tool = registry.get(name);
+            if (tool == null) {
+                outcomes[i] = unknownTool(name);
+            } else if (tool.isBatchable()) {
+                batches.computeIfAbsent(tool, t -> {
+                    Task task = new Task(t, new ArrayList<>());
+                    tasks.add(task);
+                    return task;
+                }).calls().add(i);
+            } else {
+                tasks.add(new Task(tool, List.of(i)));
+            }
+        }
+        // The watchdog can't read CPU time on virtual threads, so scripts never run on them
+        if (tasks.size() == 1 && !Thread.currentThread().isVirtual()) {
+            run(tasks.get(0), calls, context, outcomes);
+            return Arrays.asList(outcomes);
+        }
+
+        Semaphore permits = new Semaphore(maxParallelTools);
+        List<CompletableFuture<Void>> futures = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            permits.acquire();
+            try {
+                futures.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        run(task, calls, context, outcomes);
+                    } finally {
+                        permits.release();
+                    }
+                }, toolExecutor));
+            } catch (RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+        for (CompletableFuture<Void> future : futures) {
+            future.join();
+        }
+        return Arrays.asList(outcomes);
+    }
+
+    private static void run(Task task, List<FunctionCall> calls, ToolContext context, ToolOutcome[] outcomes) {
+        if (task.calls().size() == 1) {
+            int index = task.calls().get(0);
+            outcomes[index] = task.tool().execute(calls.get(index), context);
+            return;
+        }
+        List<FunctionCall> batch = task.calls().stream().map(calls::get).toList();
+        List<ToolOutcome> results = task.tool().executeBatch(batch, context);
+        for (int i = 0; i < results.size(); i++) {
+            outcomes[task.calls().get(i)] = results.get(i);
+        }
+    }
+
+    private static ToolOutcome unknownTool(String name) {
+        LOG.warn("Model called unknown tool '{}'", name);
+        String error = "Unknown tool: " + name;
+        Part responsePart = Part.builder()
+                .functionResponse(FunctionResponse.builder()
+                        .name(name)
+                        .response(Map.of("success", false, "error", error))
+                        .build())
+                .build();
+        return new ToolOutcome(new ToolExecution(name, "Error: " + error), responsePart);
+    }
+
+    @PreDestroy
+    void close() {
+        toolExecutor.shutdownNow();
+    }
+}
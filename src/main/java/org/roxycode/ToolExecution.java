@@ -1,3 +1,6 @@
 package org.roxycode;
 
+import io.micronaut.serde.annotation.Serdeable;
+
+@Serdeable
 public record ToolExecution(String code, String output) {}
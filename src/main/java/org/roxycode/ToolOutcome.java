@@ -0,0 +1,8 @@
+package org.roxycode;
+
+import com.google.genai.types.Part;
+
+/**
+ * The result of one tool call: what the UI shows, and the function response sent back to the model.
+ */
+public record ToolOutcome(ToolExecution execution, Part responsePart) {}
@@ -0,0 +1,171 @@
+package org.roxycode;
+
+import io.micronaut.context.annotation.Value;
+import jakarta.inject.Singleton;
+
+import java.security.SecureRandom;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caps the tool output that goes back to the model, since every byte of it is resent with the
+ * history on each later iteration.
+ * <p>
+ * Text over {@code roxycode.agent.tool-output.max-bytes} (UTF-8) keeps its head and tail, and a
+ * marker in between says how much was left out. The full text is spilled to an in-memory LRU
+ * store, bounded by {@code spill-max-entries} and {@code spill-max-bytes}. The marker carries the
+ * id that {@code read_tool_output} pages through it with. Spilled output is only readable from the
+ * session that produced it.
+ */
+@Singleton
+public class ToolOutputBudget {
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final int maxBytes;
+    private final int maxEntries;
+    private final long maxSpillBytes;
+    private final LinkedHashMap<String, Spill> spills = new LinkedHashMap<>(16, 0.75f, true);
+    private long spillBytes;
+
+    public ToolOutputBudget(@Value("${roxycode.agent.tool-output.max-bytes:16384}") int maxBytes,
+                            @Value("${roxycode.agent.tool-output.spill-max-entries:256}") int maxEntries,
+                            @Value("${roxycode.agent.tool-output.spill-max-bytes:33554432}") long maxSpillBytes) {
+        this.maxBytes = Math.max(256, maxBytes);
+        this.maxEntries = maxEntries;
+        this.maxSpillBytes = maxSpillBytes;
+    }
+
+    private record Spill(String sessionId, String text) {}
+
+    public int maxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Returns {@code text} as is if it fits the budget, otherwise its head and tail around a
+     * marker, spilling the full text for the session.
+     */
+    public String fit(String sessionId, String text) {
+        if (text == null || text.length() <= maxBytes / 3 || utf8Length(text, 0, text.length()) <= maxBytes) {
+            return text;
+        }
+        String id = spill(sessionId, text);
+        int head = prefixEnd(text, 0, maxBytes / 2);
+        int tail = suffixStart(text, maxBytes - maxBytes / 2, head);
+        // Prefer whole lines when a line break is close to the cut
+        int headBreak = text.lastIndexOf('\n', head - 1) + 1;
+        if (headBreak > head / 2) {
+            head = headBreak;
+        }
+        int tailBreak = text.indexOf('\n', tail == 0 ? 0 : tail - 1) + 1;
+        if (tailBreak > 0 && tailBreak - tail < (text.length() - tail) / 2) {
+            tail = Math.max(tail, tailBreak);
+        }
+        int omittedBytes = utf8Length(text, head, tail);
+        int omittedLines = 0;
+        for (int i = head; i < tail; i++) {
+            if (text.charAt(i) == '\n') {
+                omittedLines++;
+            }
+        }
+        String where = id != null
+                ? "call read_tool_output with id \"" + id + "\" to page through the full output"
+                : "the full output was too large to keep";
+        return text.substring(0, head) + (head > 0 && text.charAt(head - 1) == '\n' ? "" : "\n")
+                + "... [" + omittedBytes + " bytes and " + omittedLines + " lines omitted; " + where + "] ...\n"
+                + text.substring(tail);
+    }
+
+    /**
+     * The end of the longest run of {@code text} from {@code start} that fits the budget, never
+     * splitting a surrogate pair; for paging through spilled text.
+     */
+    public int pageEnd(String text, int start) {
+        return prefixEnd(text, start, maxBytes);
+    }
+
+    /**
+     * The full text spilled under {@code id}, or null if it is unknown, evicted or belongs to another session.
+     */
+    public String spilled(String sessionId, String id) {
+        synchronized (spills) {
+            Spill spill = spills.get(id);
+            return spill != null && spill.sessionId().equals(sessionId) ? spill.text() : null;
+        }
+    }
+
+    private String spill(String sessionId, String text) {
+        long size = sizeOf(text);
+        if (sessionId == null || maxEntries <= 0 || size > maxSpillBytes) {
+            return null;
+        }
+        byte[] bytes = new byte[8];
+        RANDOM.nextBytes(bytes);
+        String id = HexFormat.of().formatHex(bytes);
+        synchronized (spills) {
+            spills.put(id, new Spill(sessionId, text));
+            spillBytes += size;
+            Iterator<Map.Entry<String, Spill>> it = spills.entrySet().iterator();
+            while ((spills.size() > maxEntries || spillBytes > maxSpillBytes) && it.hasNext()) {
+                spillBytes -= sizeOf(it.next().getValue().text());
+                it.remove();
+            }
+        }
+        return id;
+    }
+
+    private static long sizeOf(String text) {
+        return 2L * text.length();
+    }
+
+    /**
+     * The end of the longest run from {@code from} of at most {@code budget} UTF-8 bytes, not
+     * splitting a surrogate pair.
+     */
+    private static int prefixEnd(String text, int from, int budget) {
+        int bytes = 0;
+        int i = from;
+        while (i < text.length()) {
+            int cp = text.codePointAt(i);
+            bytes += utf8Length(cp);
+            if (bytes > budget) {
+                break;
+            }
+            i += Character.charCount(cp);
+        }
+        return i;
+    }
+
+    /**
+     * The start of the longest suffix of at most {@code budget} UTF-8 bytes that begins at or after {@code min}.
+     */
+    private static int suffixStart(String text, int budget, int min) {
+        int bytes = 0;
+        int i = text.length();
+        while (i > min) {
+            int cp = text.codePointBefore(i);
+            bytes += utf8Length(cp);
+            if (bytes > budget) {
+                break;
+            }
+            i -= Character.charCount(cp);
+        }
+        return i;
+    }
+
+    private static int utf8Length(String text, int from, int to) {
+        int bytes = 0;
+        for (int i = from; i < to; ) {
+            int cp = text.codePointAt(i);
+            bytes += utf8Length(cp);
+            i += Character.charCount(cp);
+        }
+        return bytes;
+    }
+
+    private static int utf8Length(int cp) {
+        return cp < 0x80 ? 1 : cp < 0x800 ? 2 : cp < 0x10000 ? 3 : 4;
+    }
+}
@@ -0,0 +1,72 @@
+package org.roxycode;
+
+import com.google.genai.types.FunctionDeclaration;
+import com.google.genai.types.GenerateContentConfig;
+import com.google.genai.types.Tool;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The tools offered to the model: every enabled {@link AgentTool} bean, in name order so the
+ * request stays byte-identical between chats. Declarations are built once, and so is the
+ * request config carrying them.
+ */
+@Singleton
+public class ToolRegistry {
+    private static final Logger LOG = LoggerFactory.getLogger(ToolRegistry.class);
+
+    private final Map<String, AgentTool> tools;
+    private final Tool tool;
+    private final GenerateContentConfig config;
+
+    public ToolRegistry(List<AgentTool> tools) {
+        Map<String, AgentTool> byName = new LinkedHashMap<>();
+        List<FunctionDeclaration> declarations = new ArrayList<>();
+        for (AgentTool each : tools.stream().sorted(Comparator.comparing(AgentTool::name)).toList()) {
+            if (!each.isEnabled()) {
+                continue;
+            }
+            FunctionDeclaration declaration = each.declaration();
+            String name = declaration.name().orElseThrow();
+            if (byName.putIfAbsent(name, each) != null) {
+                throw new IllegalStateException("Two tools are named " + name);
+            }
+            declarations.add(declaration);
+        }
+        this.tools = Collections.unmodifiableMap(byName);
+        this.tool = Tool.builder().functionDeclarations(declarations).build();
+        this.config = GenerateContentConfig.builder().tools(List.of(tool)).build();
+        LOG.info("Tools offered to the model: {}", this.tools.keySet());
+    }
+
+    /**
+     * The enabled tool with the given name, or null.
+     */
+    public AgentTool get(String name) {
+        return tools.get(name);
+    }
+
+    public Set<String> names() {
+        return tools.keySet();
+    }
+
+    public Tool tool() {
+        return tool;
+    }
+
+    /**
+     * The generation config declaring every tool; shared, so never modify it.
+     */
+    public GenerateContentConfig config() {
+        return config;
+    }
+}
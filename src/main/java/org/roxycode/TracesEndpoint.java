@@ -0,0 +1,26 @@
+package org.roxycode;
+
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.management.endpoint.annotation.Endpoint;
+import io.micronaut.management.endpoint.annotation.Read;
+
+import java.util.List;
+
+/**
+ * Serves the spans of recent agent runs at {@code /traces}, next to {@code /prometheus}.
+ */
+@Endpoint(id = "traces", defaultSensitive = false)
+public class TracesEndpoint {
+    private static final int DEFAULT_LIMIT = 20;
+
+    private final AgentTracer tracer;
+
+    public TracesEndpoint(AgentTracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Read
+    public List<List<SpanData>> recent(@Nullable Integer limit) {
+        return tracer.recentTraces(limit != null && limit > 0 ? limit : DEFAULT_LIMIT);
+    }
+}
@@ -0,0 +1,31 @@
+package org.roxycode;
+
+import io.micronaut.serde.annotation.Serdeable;
+
+/**
+ * Token counts and their cost in USD, for one model call or aggregated over many.
+ * {@code promptTokens} includes {@code cachedTokens}; {@code outputTokens} includes thinking tokens.
+ */
+@Serdeable
+public record UsageStats(
+    long requests,
+    long promptTokens,
+    long cachedTokens,
+    long outputTokens,
+    double costUsd
+) {
+    public static final UsageStats EMPTY = new UsageStats(0, 0, 0, 0, 0.0);
+
+    public UsageStats plus(UsageStats other) {
+        return new UsageStats(
+                requests + other.requests,
+                promptTokens + other.promptTokens,
+                cachedTokens + other.cachedTokens,
+                outputTokens + other.outputTokens,
+                costUsd + other.costUsd);
+    }
+
+    public long totalTokens() {
+        return promptTokens + outputTokens;
+    }
+}
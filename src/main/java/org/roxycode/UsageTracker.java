@@ -0,0 +1,73 @@
+package org.roxycode;
+
+import com.google.genai.types.GenerateContentResponseUsageMetadata;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Prices the {@code usageMetadata} of every Gemini response with {@link ModelPricingRegistry}
+ * and keeps running totals per model and per session, plus an overall total.
+ */
+@Singleton
+public class UsageTracker {
+    private static final Logger LOG = LoggerFactory.getLogger(UsageTracker.class);
+
+    private final ModelPricingRegistry pricingRegistry;
+    private final ConcurrentHashMap<String, UsageStats> byModel = new ConcurrentHashMap<>();
+    private final Set<String> unpricedModels = ConcurrentHashMap.newKeySet();
+
+    public UsageTracker(ModelPricingRegistry pricingRegistry) {
+        this.pricingRegistry = pricingRegistry;
+    }
+
+    /**
+     * Records one model call against the model and session totals and returns its priced usage.
+     */
+    public UsageStats record(ChatSession session, String model, GenerateContentResponseUsageMetadata usage) {
+        if (usage == null) {
+            return UsageStats.EMPTY;
+        }
+        long prompt = usage.promptTokenCount().orElse(0);
+        long cached = usage.cachedContentTokenCount().orElse(0);
+        long output = usage.candidatesTokenCount().orElse(0) + usage.thoughtsTokenCount().orElse(0);
+
+        double cost = 0.0;
+        ModelPricing pricing = pricingRegistry.find(model).orElse(null);
+        if (pricing != null) {
+            cost = cost(pricing, prompt, cached, output);
+        } else if (unpricedModels.add(String.valueOf(model))) {
+            LOG.warn("No pricing for model {} in models.toml, its cost is reported as 0", model);
+        }
+
+        UsageStats call = new UsageStats(1, prompt, cached, output, cost);
+        byModel.merge(String.valueOf(model), call, UsageStats::plus);
+        if (session != null) {
+            session.addUsage(call);
+        }
+        return call;
+    }
+
+    /**
+     * Cached prompt tokens are billed at the cached rate, the rest of the prompt at the input rate.
+     */
+    static double cost(ModelPricing pricing, long promptTokens, long cachedTokens, long outputTokens) {
+        long uncached = Math.max(0, promptTokens - cachedTokens);
+        return (uncached * pricing.inputPricePer1m()
+                + cachedTokens * pricing.cachedPricePer1m()
+                + outputTokens * pricing.outputPricePer1m()) / 1_000_000.0;
+    }
+
+    public Map<String, UsageStats> byModel() {
+        return new TreeMap<>(byModel);
+    }
+
+    public UsageStats total() {
+        return byModel.values().stream().reduce(UsageStats.EMPTY, UsageStats::plus);
+    }
+}
@@ -0,0 +1,210 @@
+package org.roxycode;
+
+import io.micronaut.context.annotation.Value;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * The directory scripts may inspect, mounted as a sandbox {@link FileSystem} rooted at
+ * {@code roxycode.workspace.root}. Disabled when no root is configured. Read-only unless
+ * {@code roxycode.workspace.read-only} is turned off.
+ * <p>
+ * With {@code roxycode.workspace.overlay} each session's {@code workspace} global instead gets
+ * its own copy-on-write view. The root is shared read-only, and the session's changes go to a
+ * directory under {@code roxycode.workspace.overlay-dir}. With {@code overlay-in-memory} they go
+ * to a {@link org.roxycode.sandbox.MemoryFileSystem} capped at {@code overlay-quota-bytes} instead, and never touch
+ * disk. Overlays are discarded once a session has been idle for the session timeout.
+ */
+@Singleton
+public class WorkspaceService {
+    private static final Logger LOG = LoggerFactory.getLogger(WorkspaceService.class);
+    static final URI WORKSPACE_URI = URI.create("sandbox://workspace");
+
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final Path root;
+    private final FileSystem fileSystem;
+    private final boolean readOnly;
+    private final int maxReadBytes;
+    private final boolean overlay;
+    private final Path overlayDir;
+    private final boolean overlayInMemory;
+    private final long overlayQuotaBytes;
+    private final boolean overlayOffHeap;
+    private final long overlayIdleNanos;
+    private final ConcurrentHashMap<String, SessionOverlay> overlays = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweep = new AtomicLong(System.nanoTime());
+
+    public WorkspaceService(@Value("${roxycode.workspace.root:}") String root,
+                            @Value("${roxycode.workspace.read-only:true}") boolean readOnly,
+                            @Value("${roxycode.workspace.max-read-bytes:1048576}") int maxReadBytes,
+                            @Value("${roxycode.workspace.overlay:false}") boolean overlay,
+                            @Value("${roxycode.workspace.overlay-dir:}") String overlayDir,
+                            @Value("${roxycode.workspace.overlay-in-memory:false}") boolean overlayInMemory,
+                            @Value("${roxycode.workspace.overlay-quota-bytes:268435456}") long overlayQuotaBytes,
+                            @Value("${roxycode.workspace.overlay-off-heap:false}") boolean overlayOffHeap,
+                            @Value("${roxycode.sessions.idle-timeout-minutes:60}") long idleTimeoutMinutes) {
+        this.readOnly = readOnly;
+        this.maxReadBytes = Math.max(1, maxReadBytes);
+        this.root = root == null || root.isBlank() ? null : Paths.get(root);
+        this.fileSystem = this.root == null ? null : mount(this.root, readOnly);
+        this.overlay = overlay && fileSystem != null;
+        this.overlayDir = overlayDir == null || overlayDir.isBlank()
+                ? Paths.get(System.getProperty("java.io.tmpdir"), "roxycode-overlays")
+                : Paths.get(overlayDir);
+        this.overlayInMemory = overlayInMemory;
+        this.overlayQuotaBytes = Math.max(1, overlayQuotaBytes);
+        this.overlayOffHeap = overlayOffHeap;
+        this.overlayIdleNanos = TimeUnit.MINUTES.toNanos(Math.max(1, idleTimeoutMinutes));
+        if (this.overlay) {
+            LOG.info("Sessions get copy-on-write workspaces {}", overlayInMemory
+                    ? "in memory (" + this.overlayQuotaBytes + " bytes each)"
+                    : "under " + this.overlayDir.toAbsolutePath());
+        }
+    }
+
+    /**
+     * @param memory the file system holding {@code upper} when the overlay is in memory, otherwise null
+     */
+    private record SessionOverlay(FileSystem fileSystem, Path upper, FileSystem memory, AtomicLong lastUsed) {}
+
+    private static FileSystem mount(Path root, boolean readOnly) {
+        if (!Files.isDirectory(root)) {
+            LOG.warn("Workspace root {} is not a directory, scripts get no file access", root);
+            return null;
+        }
+        try {
+            FileSystem fs = FileSystems.newFileSystem(WORKSPACE_URI, Map.of("root", root.toString(), "readOnly", readOnly));
+            LOG.info("Workspace {} mounted for scripts ({})", root.toAbsolutePath(), readOnly ? "read-only" : "read-write");
+            return fs;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to mount workspace " + root, e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return fileSystem != null;
+    }
+
+    /**
+     * The sandboxed view of the workspace, or null when no workspace is configured.
+     */
+    public FileSystem fileSystem() {
+        return fileSystem;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Whether each session writes to its own overlay rather than the shared file system.
+     */
+    public boolean isOverlay() {
+        return overlay;
+    }
+
+    /**
+     * What a session's scripts see: its own overlay in overlay mode, otherwise the shared file system.
+     */
+    public FileSystem fileSystem(String sessionId) {
+        if (!overlay || !SessionStore.isValidId(sessionId)) {
+            return fileSystem;
+        }
+        sweepIdleOverlays();
+        SessionOverlay session = overlays.computeIfAbsent(sessionId, this::mountOverlay);
+        session.lastUsed().set(System.nanoTime());
+        return session.fileSystem();
+    }
+
+    private SessionOverlay mountOverlay(String sessionId) {
+        try {
+            FileSystem memory = overlayInMemory
+                    ? FileSystems.newFileSystem(URI.create("memory://overlay-" + sessionId),
+                            Map.of("quota", overlayQuotaBytes, "offHeap", overlayOffHeap))
+                    : null;
+            Path upper = memory != null ? memory.getPath("/") : overlayDir.resolve(sessionId);
+            FileSystem fs = FileSystems.newFileSystem(URI.create("sandbox://workspace-" + sessionId),
+                    Map.of("root", root, "upper", upper));
+            LOG.debug("Mounted workspace overlay for session {} at {}", sessionId, upper.toUri());
+            return new SessionOverlay(fs, upper, memory, new AtomicLong(System.nanoTime()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to mount workspace overlay for session " + sessionId, e);
+        }
+    }
+
+    private void sweepIdleOverlays() {
+        long now = System.nanoTime();
+        long last = lastSweep.get();
+        if (now - last < SWEEP_INTERVAL_NANOS || !lastSweep.compareAndSet(last, now)) {
+            return;
+        }
+        overlays.forEach((sessionId, session) -> {
+            if (now - session.lastUsed().get() > overlayIdleNanos && overlays.remove(sessionId, session)) {
+                discard(sessionId, session);
+            }
+        });
+    }
+
+    private static void discard(String sessionId, SessionOverlay session) {
+        try {
+            session.fileSystem().close();
+            if (session.memory() != null) {
+                session.memory().close();
+            } else if (Files.exists(session.upper())) {
+                try (Stream<Path> paths = Files.walk(session.upper())) {
+                    for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                        Files.delete(path);
+                    }
+                }
+            }
+            LOG.debug("Discarded workspace overlay of session {}", sessionId);
+        } catch (IOException e) {
+            LOG.warn("Failed to discard workspace overlay of session {}: {}", sessionId, e.getMessage());
+        }
+    }
+
+    public int maxReadBytes() {
+        return maxReadBytes;
+    }
+
+    /**
+     * A fresh host object for one script execution; close it afterwards to release open listings.
+     */
+    public JsWorkspace newJsWorkspace() {
+        return new JsWorkspace(fileSystem, maxReadBytes);
+    }
+
+    /**
+     * Like {@link #newJsWorkspace()}, but on the session's overlay in overlay mode.
+     */
+    public JsWorkspace newJsWorkspace(String sessionId) {
+        return new JsWorkspace(fileSystem(sessionId), maxReadBytes);
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        overlays.forEach((sessionId, session) -> discard(sessionId, session));
+        overlays.clear();
+        if (fileSystem != null) {
+            fileSystem.close();
+        }
+    }
+}
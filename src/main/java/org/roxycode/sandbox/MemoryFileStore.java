@@ -0,0 +1,72 @@
+package org.roxycode.sandbox;
+
+import java.nio.file.FileStore;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileStoreAttributeView;
+
+/**
+ * The single store of a {@link MemoryFileSystem}; its space is the file system's quota.
+ */
+final class MemoryFileStore extends FileStore {
+    private final MemoryFileSystem fs;
+
+    MemoryFileStore(MemoryFileSystem fs) {
+        this.fs = fs;
+    }
+
+    @Override
+    public String name() {
+        return fs.getUri().toString();
+    }
+
+    @Override
+    public String type() {
+        return "memory";
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return false;
+    }
+
+    @Override
+    public long getTotalSpace() {
+        return fs.quota();
+    }
+
+    @Override
+    public long getUsableSpace() {
+        return Math.max(0, fs.quota() - fs.usedBytes());
+    }
+
+    @Override
+    public long getUnallocatedSpace() {
+        return getUsableSpace();
+    }
+
+    @Override
+    public boolean supportsFileAttributeView(Class<? extends FileAttributeView> type) {
+        return type == BasicFileAttributeView.class;
+    }
+
+    @Override
+    public boolean supportsFileAttributeView(String name) {
+        return "basic".equals(name);
+    }
+
+    @Override
+    public <V extends FileStoreAttributeView> V getFileStoreAttributeView(Class<V> type) {
+        return null;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) {
+        return switch (attribute) {
+            case "totalSpace" -> getTotalSpace();
+            case "usableSpace" -> getUsableSpace();
+            case "unallocatedSpace" -> getUnallocatedSpace();
+            default -> throw new UnsupportedOperationException("'" + attribute + "' not recognized");
+        };
+    }
+}
@@ -0,0 +1,533 @@
+package org.roxycode.sandbox;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.file.ClosedFileSystemException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileSystems;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.UserPrincipalLookupService;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A file system held entirely in memory, for scratch sandboxes that should never touch disk.
+ * <p>
+ * File contents live in {@link ByteBuffer}s: on the heap, or direct when {@code offHeap} is set
+ * so large scratch files don't add to GC pressure. Every byte of buffer capacity counts against
+ * the quota, and a write that would exceed it fails. The directory tree is guarded by one
+ * read/write lock. File contents are guarded by their node, so channels on different files
+ * never contend. There are no links and no watch service.
+ */
+public class MemoryFileSystem extends FileSystem {
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+
+    private final MemoryFileSystemProvider provider;
+    private final URI uri;
+    private final long quota;
+    private final boolean offHeap;
+    private final AtomicLong used = new AtomicLong();
+    private final ReentrantReadWriteLock tree = new ReentrantReadWriteLock();
+    private final DirectoryNode root = new DirectoryNode();
+    private final MemoryFileStore store = new MemoryFileStore(this);
+    private volatile boolean open = true;
+
+    MemoryFileSystem(MemoryFileSystemProvider provider, URI uri, long quota, boolean offHeap) {
+        this.provider = provider;
+        this.uri = uri;
+        this.quota = quota;
+        this.offHeap = offHeap;
+    }
+
+    URI getUri() {
+        return uri;
+    }
+
+    long quota() {
+        return quota;
+    }
+
+    long usedBytes() {
+        return used.get();
+    }
+
+    abstract static class Node {
+        final long id = NEXT_ID.incrementAndGet();
+        volatile FileTime creationTime = FileTime.fromMillis(System.currentTimeMillis());
+        volatile FileTime lastModifiedTime = creationTime;
+        volatile FileTime lastAccessTime = creationTime;
+
+        void touch() {
+            lastModifiedTime = FileTime.fromMillis(System.currentTimeMillis());
+        }
+    }
+
+    static final class DirectoryNode extends Node {
+        final TreeMap<String, Node> children = new TreeMap<>();
+    }
+
+    /**
+     * A regular file. {@code data} and {@code size} are only touched while holding the node's monitor.
+     */
+    final class FileNode extends Node {
+        private ByteBuffer data = ByteBuffer.allocate(0);
+        private long size;
+        private boolean deleted;
+
+        synchronized long size() {
+            return size;
+        }
+
+        synchronized int read(long position, ByteBuffer dst) {
+            if (position >= size) {
+                return -1;
+            }
+            int count = (int) Math.min(dst.remaining(), size - position);
+            dst.put(data.duplicate().position((int) position).limit((int) position + count));
+            lastAccessTime = FileTime.fromMillis(System.currentTimeMillis());
+            return count;
+        }
+
+        synchronized int write(long position, ByteBuffer src) throws IOException {
+            int count = src.remaining();
+            long end = position + count;
+            ensureCapacity(end);
+            if (position > size) {
+                // Writing past the end leaves a zero-filled gap
+                data.duplicate().position((int) size).limit((int) position).put(ByteBuffer.allocate((int) (position - size)));
+            }
+            data.duplicate().position((int) position).put(src);
+            size = Math.max(size, end);
+            touch();
+            return count;
+        }
+
+        synchronized void truncate(long newSize) {
+            if (newSize < size) {
+                size = newSize;
+                touch();
+            }
+        }
+
+        synchronized FileNode copy() throws IOException {
+            FileNode copy = new FileNode();
+            copy.write(0, data.duplicate().position(0).limit((int) size));
+            return copy;
+        }
+
+        private void ensureCapacity(long needed) throws IOException {
+            if (needed <= data.capacity()) {
+                return;
+            }
+            if (deleted) {
+                // Its capacity was already given back to the quota
+                throw new FileSystemException(null, null, "File was deleted");
+            }
+            if (needed > Integer.MAX_VALUE - 8) {
+                throw new FileSystemException(null, null, "File too large for a memory file system");
+            }
+            // Grow geometrically, but never reserve more than the quota has left
+            long headroom = Math.max(needed, quota - used.get() + data.capacity());
+            int capacity = (int) Math.min(Math.max(needed, Math.min((long) data.capacity() * 2, Integer.MAX_VALUE - 8)), headroom);
+            reserve(capacity - data.capacity());
+            ByteBuffer grown = offHeap ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+            grown.put(data.duplicate().position(0).limit((int) size));
+            data = grown;
+        }
+
+        synchronized void free() {
+            release(data.capacity());
+            data = ByteBuffer.allocate(0);
+            size = 0;
+            deleted = true;
+        }
+    }
+
+    private void reserve(long bytes) throws IOException {
+        while (true) {
+            long current = used.get();
+            if (current + bytes > quota) {
+                throw new FileSystemException(null, null, "Memory file system quota of " + quota + " bytes exceeded");
+            }
+            if (used.compareAndSet(current, current + bytes)) {
+                return;
+            }
+        }
+    }
+
+    private void release(long bytes) {
+        used.addAndGet(-bytes);
+    }
+
+    Node find(MemoryPath path) {
+        tree.readLock().lock();
+        try {
+            return lookup(path);
+        } finally {
+            tree.readLock().unlock();
+        }
+    }
+
+    Node require(MemoryPath path) throws IOException {
+        Node node = find(path);
+        if (node == null) {
+            throw new NoSuchFileException(path.toString());
+        }
+        return node;
+    }
+
+    private Node lookup(MemoryPath path) {
+        ensureOpen();
+        Node node = root;
+        for (String name : ((MemoryPath) path.toAbsolutePath().normalize()).names()) {
+            if (!(node instanceof DirectoryNode dir)) {
+                return null;
+            }
+            node = dir.children.get(name);
+            if (node == null) {
+                return null;
+            }
+        }
+        return node;
+    }
+
+    private DirectoryNode parentOf(MemoryPath path) throws IOException {
+        MemoryPath normalized = (MemoryPath) path.toAbsolutePath().normalize();
+        Path parent = normalized.getParent();
+        if (parent == null) {
+            throw new FileSystemException(path.toString(), null, "Operation not allowed on the root");
+        }
+        Node node = lookup((MemoryPath) parent);
+        if (node == null) {
+            throw new NoSuchFileException(parent.toString());
+        }
+        if (!(node instanceof DirectoryNode dir)) {
+            throw new NotDirectoryException(parent.toString());
+        }
+        return dir;
+    }
+
+    private static String nameOf(MemoryPath path) {
+        String[] names = ((MemoryPath) path.toAbsolutePath().normalize()).names();
+        return names[names.length - 1];
+    }
+
+    /**
+     * Finds or creates the file a channel opens, applying {@code CREATE}, {@code CREATE_NEW} and
+     * {@code TRUNCATE_EXISTING}.
+     */
+    FileNode openFile(MemoryPath path, Set<? extends OpenOption> options) throws IOException {
+        boolean write = options.contains(StandardOpenOption.WRITE) || options.contains(StandardOpenOption.APPEND);
+        boolean createNew = write && options.contains(StandardOpenOption.CREATE_NEW);
+        boolean create = createNew || (write && options.contains(StandardOpenOption.CREATE));
+        Node node;
+        tree.writeLock().lock();
+        try {
+            node = lookup(path);
+            if (node != null && createNew) {
+                throw new FileAlreadyExistsException(path.toString());
+            }
+            if (node == null) {
+                if (!create) {
+                    throw new NoSuchFileException(path.toString());
+                }
+                DirectoryNode parent = parentOf(path);
+                node = new FileNode();
+                parent.children.put(nameOf(path), node);
+                parent.touch();
+            }
+        } finally {
+            tree.writeLock().unlock();
+        }
+        if (!(node instanceof FileNode file)) {
+            throw new FileSystemException(path.toString(), null, "Is a directory");
+        }
+        if (write && options.contains(StandardOpenOption.TRUNCATE_EXISTING)) {
+            file.truncate(0);
+        }
+        return file;
+    }
+
+    void createDirectory(MemoryPath path) throws IOException {
+        tree.writeLock().lock();
+        try {
+            if (lookup(path) != null) {
+                throw new FileAlreadyExistsException(path.toString());
+            }
+            DirectoryNode parent = parentOf(path);
+            parent.children.put(nameOf(path), new DirectoryNode());
+            parent.touch();
+        } finally {
+            tree.writeLock().unlock();
+        }
+    }
+
+    void delete(MemoryPath path) throws IOException {
+        Node removed;
+        tree.writeLock().lock();
+        try {
+            Node node = lookup(path);
+            if (node == null) {
+                throw new NoSuchFileException(path.toString());
+            }
+            if (node instanceof DirectoryNode dir && !dir.children.isEmpty()) {
+                throw new DirectoryNotEmptyException(path.toString());
+            }
+            DirectoryNode parent = parentOf(path);
+            removed = parent.children.remove(nameOf(path));
+            parent.touch();
+        } finally {
+            tree.writeLock().unlock();
+        }
+        if (removed instanceof FileNode file) {
+            file.free();
+        }
+    }
+
+    /**
+     * Copies a file's contents, or creates an empty directory for a directory, like {@code Files.copy}.
+     */
+    void copy(MemoryPath source, MemoryPath target, boolean replace, boolean copyAttributes) throws IOException {
+        Node node = require(source);
+        Node copy = node instanceof FileNode file ? file.copy() : new DirectoryNode();
+        if (copyAttributes) {
+            copy.creationTime = node.creationTime;
+            copy.lastModifiedTime = node.lastModifiedTime;
+            copy.lastAccessTime = node.lastAccessTime;
+        }
+        try {
+            link(target, copy, replace);
+        } catch (IOException e) {
+            if (copy instanceof FileNode file) {
+                file.free();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Renames within the tree; nothing is copied, so moving a large file or directory is O(depth).
+     */
+    void move(MemoryPath source, MemoryPath target, boolean replace) throws IOException {
+        MemoryPath from = (MemoryPath) source.toAbsolutePath().normalize();
+        MemoryPath to = (MemoryPath) target.toAbsolutePath().normalize();
+        if (from.equals(to)) {
+            return;
+        }
+        tree.writeLock().lock();
+        try {
+            Node node = lookup(from);
+            if (node == null) {
+                throw new NoSuchFileException(source.toString());
+            }
+            if (to.startsWith(from)) {
+                throw new FileSystemException(source.toString(), target.toString(), "Cannot move a directory into itself");
+            }
+            link(to, node, replace);
+            DirectoryNode parent = parentOf(from);
+            parent.children.remove(nameOf(from));
+            parent.touch();
+        } finally {
+            tree.writeLock().unlock();
+        }
+    }
+
+    private void link(MemoryPath target, Node node, boolean replace) throws IOException {
+        Node replaced;
+        tree.writeLock().lock();
+        try {
+            Node existing = lookup(target);
+            if (existing != null) {
+                if (!replace) {
+                    throw new FileAlreadyExistsException(target.toString());
+                }
+                if (existing instanceof DirectoryNode dir && !dir.children.isEmpty()) {
+                    throw new DirectoryNotEmptyException(target.toString());
+                }
+            }
+            DirectoryNode parent = parentOf(target);
+            replaced = parent.children.put(nameOf(target), node);
+            parent.touch();
+        } finally {
+            tree.writeLock().unlock();
+        }
+        if (replaced instanceof FileNode file && replaced != node) {
+            file.free();
+        }
+    }
+
+    /**
+     * A snapshot of a directory's entry names, so listing never holds the tree lock.
+     */
+    List<String> list(MemoryPath dir) throws IOException {
+        tree.readLock().lock();
+        try {
+            Node node = lookup(dir);
+            if (node == null) {
+                throw new NoSuchFileException(dir.toString());
+            }
+            if (!(node instanceof DirectoryNode directory)) {
+                throw new NotDirectoryException(dir.toString());
+            }
+            node.lastAccessTime = FileTime.fromMillis(System.currentTimeMillis());
+            return new ArrayList<>(directory.children.keySet());
+        } finally {
+            tree.readLock().unlock();
+        }
+    }
+
+    BasicFileAttributes attributes(MemoryPath path) throws IOException {
+        Node node = require(path);
+        long size = node instanceof FileNode file ? file.size() : 0;
+        return new MemoryFileAttributes(node, size);
+    }
+
+    private record MemoryFileAttributes(Node node, long size) implements BasicFileAttributes {
+        @Override
+        public FileTime lastModifiedTime() {
+            return node.lastModifiedTime;
+        }
+
+        @Override
+        public FileTime lastAccessTime() {
+            return node.lastAccessTime;
+        }
+
+        @Override
+        public FileTime creationTime() {
+            return node.creationTime;
+        }
+
+        @Override
+        public boolean isRegularFile() {
+            return !(node instanceof DirectoryNode);
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return node instanceof DirectoryNode;
+        }
+
+        @Override
+        public boolean isSymbolicLink() {
+            return false;
+        }
+
+        @Override
+        public boolean isOther() {
+            return false;
+        }
+
+        @Override
+        public Object fileKey() {
+            return node.id;
+        }
+    }
+
+    void ensureOpen() {
+        if (!open) {
+            throw new ClosedFileSystemException();
+        }
+    }
+
+    @Override
+    public FileSystemProvider provider() {
+        return provider;
+    }
+
+    /**
+     * Deregisters the file system and drops all contents.
+     */
+    @Override
+    public void close() {
+        tree.writeLock().lock();
+        try {
+            if (!open) {
+                return;
+            }
+            open = false;
+            root.children.clear();
+            used.set(0);
+        } finally {
+            tree.writeLock().unlock();
+        }
+        provider.deregister(uri, this);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return false;
+    }
+
+    @Override
+    public String getSeparator() {
+        return "/";
+    }
+
+    @Override
+    public Iterable<Path> getRootDirectories() {
+        return Collections.singleton(getPath("/"));
+    }
+
+    @Override
+    public Iterable<FileStore> getFileStores() {
+        return Collections.singleton(store);
+    }
+
+    FileStore getFileStore() {
+        return store;
+    }
+
+    @Override
+    public Set<String> supportedFileAttributeViews() {
+        return Set.of("basic");
+    }
+
+    @Override
+    public Path getPath(String first, String... more) {
+        return MemoryPath.parse(this, first, more);
+    }
+
+    /**
+     * Patterns match on the path string, the same way the default file system's matchers do.
+     */
+    @Override
+    public PathMatcher getPathMatcher(String syntaxAndPattern) {
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher(syntaxAndPattern);
+        return path -> matcher.matches(FileSystems.getDefault().getPath(path.toString()));
+    }
+
+    @Override
+    public UserPrincipalLookupService getUserPrincipalLookupService() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public WatchService newWatchService() {
+        throw new UnsupportedOperationException("Memory file systems cannot be watched");
+    }
+}
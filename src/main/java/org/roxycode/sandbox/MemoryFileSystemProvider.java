@@ -0,0 +1,309 @@
+package org.roxycode.sandbox;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AccessMode;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.LinkOption;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates {@link MemoryFileSystem}s for {@code memory://} URIs. The environment may set
+ * {@code quota} (bytes, unlimited by default) and {@code offHeap} (direct buffers, false by default).
+ */
+public class MemoryFileSystemProvider extends FileSystemProvider {
+    private static final List<String> BASIC_ATTRIBUTES = List.of("lastModifiedTime", "lastAccessTime", "creationTime",
+            "size", "isRegularFile", "isDirectory", "isSymbolicLink", "isOther", "fileKey");
+
+    private final ConcurrentHashMap<URI, MemoryFileSystem> filesystems = new ConcurrentHashMap<>();
+
+    @Override
+    public String getScheme() {
+        return "memory";
+    }
+
+    @Override
+    public FileSystem newFileSystem(URI uri, Map<String, ?> env) throws IOException {
+        Object quota = env.get("quota");
+        long quotaBytes = quota == null ? Long.MAX_VALUE : Long.parseLong(quota.toString());
+        if (quotaBytes <= 0) {
+            throw new IllegalArgumentException("quota must be positive");
+        }
+        boolean offHeap = Boolean.parseBoolean(String.valueOf(env.get("offHeap")));
+        MemoryFileSystem fs = new MemoryFileSystem(this, uri, quotaBytes, offHeap);
+        if (filesystems.putIfAbsent(uri, fs) != null) {
+            throw new FileSystemAlreadyExistsException();
+        }
+        return fs;
+    }
+
+    @Override
+    public FileSystem getFileSystem(URI uri) {
+        MemoryFileSystem fs = filesystems.get(uri);
+        if (fs == null) throw new FileSystemNotFoundException();
+        return fs;
+    }
+
+    @Override
+    public Path getPath(URI uri) {
+        URI base = URI.create(uri.getScheme() + "://" + (uri.getHost() != null ? uri.getHost() : ""));
+        return getFileSystem(base).getPath(uri.getPath());
+    }
+
+    void deregister(URI uri, MemoryFileSystem fs) {
+        filesystems.remove(uri, fs);
+    }
+
+    private static MemoryPath toMemory(Path path) {
+        if (!(path instanceof MemoryPath)) {
+            throw new ProviderMismatchException();
+        }
+        return (MemoryPath) path;
+    }
+
+    @Override
+    public SeekableByteChannel newByteChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs) throws IOException {
+        return newFileChannel(path, options, attrs);
+    }
+
+    @Override
+    public FileChannel newFileChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs) throws IOException {
+        MemoryPath memoryPath = toMemory(path);
+        boolean append = options.contains(StandardOpenOption.APPEND);
+        boolean write = append || options.contains(StandardOpenOption.WRITE);
+        boolean read = options.contains(StandardOpenOption.READ) || !write;
+        MemoryFileSystem.FileNode file = memoryPath.getFileSystem().openFile(memoryPath, options);
+        return new MemoryFileChannel(file, read, write, append);
+    }
+
+    /**
+     * Iterates a snapshot of the entry names taken when the stream is opened.
+     */
+    @Override
+    public DirectoryStream<Path> newDirectoryStream(Path dir, DirectoryStream.Filter<? super Path> filter) throws IOException {
+        MemoryPath memoryDir = toMemory(dir);
+        List<String> names = memoryDir.getFileSystem().list(memoryDir);
+        return new DirectoryStream<>() {
+            @Override
+            public Iterator<Path> iterator() {
+                Iterator<String> it = names.iterator();
+                return new Iterator<>() {
+                    private Path next;
+
+                    @Override
+                    public boolean hasNext() {
+                        while (next == null && it.hasNext()) {
+                            Path candidate = memoryDir.resolve(it.next());
+                            try {
+                                if (filter == null || filter.accept(candidate)) {
+                                    next = candidate;
+                                }
+                            } catch (IOException e) {
+                                throw new DirectoryIteratorException(e);
+                            }
+                        }
+                        return next != null;
+                    }
+
+                    @Override
+                    public Path next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        Path result = next;
+                        next = null;
+                        return result;
+                    }
+                };
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Override
+    public void createDirectory(Path dir, FileAttribute<?>... attrs) throws IOException {
+        MemoryPath memoryDir = toMemory(dir);
+        memoryDir.getFileSystem().createDirectory(memoryDir);
+    }
+
+    @Override
+    public void delete(Path path) throws IOException {
+        MemoryPath memoryPath = toMemory(path);
+        memoryPath.getFileSystem().delete(memoryPath);
+    }
+
+    @Override
+    public void copy(Path source, Path target, CopyOption... options) throws IOException {
+        MemoryPath from = toMemory(source);
+        MemoryPath to = toMemory(target);
+        if (from.getFileSystem() != to.getFileSystem()) {
+            throw new ProviderMismatchException();
+        }
+        List<CopyOption> list = Arrays.asList(options);
+        from.getFileSystem().copy(from, to, list.contains(StandardCopyOption.REPLACE_EXISTING),
+                list.contains(StandardCopyOption.COPY_ATTRIBUTES));
+    }
+
+    @Override
+    public void move(Path source, Path target, CopyOption... options) throws IOException {
+        MemoryPath from = toMemory(source);
+        MemoryPath to = toMemory(target);
+        if (from.getFileSystem() != to.getFileSystem()) {
+            throw new ProviderMismatchException();
+        }
+        from.getFileSystem().move(from, to, Arrays.asList(options).contains(StandardCopyOption.REPLACE_EXISTING));
+    }
+
+    @Override
+    public boolean isSameFile(Path path, Path path2) throws IOException {
+        if (path.equals(path2)) {
+            return true;
+        }
+        if (!(path2 instanceof MemoryPath) || toMemory(path).getFileSystem() != ((MemoryPath) path2).getFileSystem()) {
+            return false;
+        }
+        MemoryPath first = toMemory(path);
+        return first.getFileSystem().require(first) == first.getFileSystem().require((MemoryPath) path2);
+    }
+
+    @Override
+    public boolean isHidden(Path path) {
+        Path name = toMemory(path).getFileName();
+        return name != null && name.toString().startsWith(".");
+    }
+
+    @Override
+    public FileStore getFileStore(Path path) {
+        return toMemory(path).getFileSystem().getFileStore();
+    }
+
+    @Override
+    public void checkAccess(Path path, AccessMode... modes) throws IOException {
+        MemoryPath memoryPath = toMemory(path);
+        memoryPath.getFileSystem().require(memoryPath);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <V extends FileAttributeView> V getFileAttributeView(Path path, Class<V> type, LinkOption... options) {
+        if (type != BasicFileAttributeView.class) {
+            return null;
+        }
+        MemoryPath memoryPath = toMemory(path);
+        return (V) new BasicFileAttributeView() {
+            @Override
+            public String name() {
+                return "basic";
+            }
+
+            @Override
+            public BasicFileAttributes readAttributes() throws IOException {
+                return memoryPath.getFileSystem().attributes(memoryPath);
+            }
+
+            @Override
+            public void setTimes(FileTime lastModifiedTime, FileTime lastAccessTime, FileTime createTime) throws IOException {
+                MemoryFileSystem.Node node = memoryPath.getFileSystem().require(memoryPath);
+                if (lastModifiedTime != null) {
+                    node.lastModifiedTime = lastModifiedTime;
+                }
+                if (lastAccessTime != null) {
+                    node.lastAccessTime = lastAccessTime;
+                }
+                if (createTime != null) {
+                    node.creationTime = createTime;
+                }
+            }
+        };
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <A extends BasicFileAttributes> A readAttributes(Path path, Class<A> type, LinkOption... options) throws IOException {
+        if (!type.isAssignableFrom(BasicFileAttributes.class)) {
+            throw new UnsupportedOperationException("Only basic attributes are supported");
+        }
+        MemoryPath memoryPath = toMemory(path);
+        return (A) memoryPath.getFileSystem().attributes(memoryPath);
+    }
+
+    @Override
+    public Map<String, Object> readAttributes(Path path, String attributes, LinkOption... options) throws IOException {
+        String names = attributes;
+        int colon = attributes.indexOf(':');
+        if (colon >= 0) {
+            if (!attributes.substring(0, colon).equals("basic")) {
+                throw new UnsupportedOperationException("View '" + attributes.substring(0, colon) + "' not available");
+            }
+            names = attributes.substring(colon + 1);
+        }
+        BasicFileAttributes attrs = readAttributes(path, BasicFileAttributes.class, options);
+        Map<String, Object> result = new HashMap<>();
+        for (String name : names.split(",")) {
+            if (name.equals("*")) {
+                BASIC_ATTRIBUTES.forEach(each -> result.put(each, attribute(attrs, each)));
+            } else if (BASIC_ATTRIBUTES.contains(name)) {
+                result.put(name, attribute(attrs, name));
+            } else {
+                throw new IllegalArgumentException("'" + name + "' not recognized");
+            }
+        }
+        return result;
+    }
+
+    private static Object attribute(BasicFileAttributes attrs, String name) {
+        return switch (name) {
+            case "lastModifiedTime" -> attrs.lastModifiedTime();
+            case "lastAccessTime" -> attrs.lastAccessTime();
+            case "creationTime" -> attrs.creationTime();
+            case "size" -> attrs.size();
+            case "isRegularFile" -> attrs.isRegularFile();
+            case "isDirectory" -> attrs.isDirectory();
+            case "isSymbolicLink" -> attrs.isSymbolicLink();
+            case "isOther" -> attrs.isOther();
+            default -> attrs.fileKey();
+        };
+    }
+
+    @Override
+    public void setAttribute(Path path, String attribute, Object value, LinkOption... options) throws IOException {
+        String name = attribute.startsWith("basic:") ? attribute.substring("basic:".length()) : attribute;
+        BasicFileAttributeView view = getFileAttributeView(path, BasicFileAttributeView.class, options);
+        FileTime time = (FileTime) value;
+        switch (name) {
+            case "lastModifiedTime" -> view.setTimes(time, null, null);
+            case "lastAccessTime" -> view.setTimes(null, time, null);
+            case "creationTime" -> view.setTimes(null, null, time);
+            default -> throw new UnsupportedOperationException("'" + attribute + "' cannot be set");
+        }
+    }
+}
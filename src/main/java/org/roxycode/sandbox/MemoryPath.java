@@ -0,0 +1,250 @@
+package org.roxycode.sandbox;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A path on a {@link MemoryFileSystem}: {@code /}-separated names, absolute or relative.
+ * Relative paths resolve against the root.
+ */
+final class MemoryPath implements Path {
+    private static final String[] NO_NAMES = new String[0];
+
+    private final MemoryFileSystem fs;
+    private final boolean absolute;
+    private final String[] names;
+    private String string;
+
+    MemoryPath(MemoryFileSystem fs, boolean absolute, String[] names) {
+        this.fs = fs;
+        this.absolute = absolute;
+        this.names = names;
+    }
+
+    static MemoryPath parse(MemoryFileSystem fs, String first, String... more) {
+        StringBuilder joined = new StringBuilder(first);
+        for (String part : more) {
+            if (!part.isEmpty()) {
+                joined.append('/').append(part);
+            }
+        }
+        String path = joined.toString();
+        if (path.indexOf('\0') >= 0) {
+            throw new java.nio.file.InvalidPathException(path, "Nul character not allowed");
+        }
+        List<String> names = new ArrayList<>();
+        for (String name : path.split("/")) {
+            if (!name.isEmpty()) {
+                names.add(name);
+            }
+        }
+        return new MemoryPath(fs, path.startsWith("/"), names.toArray(NO_NAMES));
+    }
+
+    String[] names() {
+        return names;
+    }
+
+    @Override
+    public MemoryFileSystem getFileSystem() {
+        return fs;
+    }
+
+    @Override
+    public boolean isAbsolute() {
+        return absolute;
+    }
+
+    @Override
+    public Path getRoot() {
+        return absolute ? new MemoryPath(fs, true, NO_NAMES) : null;
+    }
+
+    @Override
+    public Path getFileName() {
+        return names.length == 0 ? null : new MemoryPath(fs, false, new String[]{names[names.length - 1]});
+    }
+
+    @Override
+    public Path getParent() {
+        if (names.length == 0 || (names.length == 1 && !absolute)) {
+            return null;
+        }
+        return new MemoryPath(fs, absolute, Arrays.copyOf(names, names.length - 1));
+    }
+
+    @Override
+    public int getNameCount() {
+        return names.length;
+    }
+
+    @Override
+    public Path getName(int index) {
+        if (index < 0 || index >= names.length) {
+            throw new IllegalArgumentException();
+        }
+        return new MemoryPath(fs, false, new String[]{names[index]});
+    }
+
+    @Override
+    public Path subpath(int beginIndex, int endIndex) {
+        if (beginIndex < 0 || endIndex > names.length || beginIndex >= endIndex) {
+            throw new IllegalArgumentException();
+        }
+        return new MemoryPath(fs, false, Arrays.copyOfRange(names, beginIndex, endIndex));
+    }
+
+    @Override
+    public boolean startsWith(Path other) {
+        if (!(other instanceof MemoryPath that) || that.fs != fs || that.absolute != absolute
+                || that.names.length > names.length) {
+            return false;
+        }
+        for (int i = 0; i < that.names.length; i++) {
+            if (!names[i].equals(that.names[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean endsWith(Path other) {
+        if (!(other instanceof MemoryPath that) || that.fs != fs) {
+            return false;
+        }
+        if (that.absolute) {
+            return equals(that);
+        }
+        if (that.names.length > names.length) {
+            return false;
+        }
+        int offset = names.length - that.names.length;
+        for (int i = 0; i < that.names.length; i++) {
+            if (!names[offset + i].equals(that.names[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Path normalize() {
+        List<String> result = new ArrayList<>(names.length);
+        for (String name : names) {
+            if (name.equals(".")) {
+                continue;
+            }
+            if (name.equals("..")) {
+                if (!result.isEmpty() && !result.get(result.size() - 1).equals("..")) {
+                    result.remove(result.size() - 1);
+                    continue;
+                }
+                if (absolute) {
+                    // ".." at the root stays at the root
+                    continue;
+                }
+            }
+            result.add(name);
+        }
+        return new MemoryPath(fs, absolute, result.toArray(NO_NAMES));
+    }
+
+    @Override
+    public Path resolve(Path other) {
+        MemoryPath that = check(other);
+        if (that.absolute) {
+            return that;
+        }
+        if (that.names.length == 0) {
+            return this;
+        }
+        String[] joined = Arrays.copyOf(names, names.length + that.names.length);
+        System.arraycopy(that.names, 0, joined, names.length, that.names.length);
+        return new MemoryPath(fs, absolute, joined);
+    }
+
+    @Override
+    public Path relativize(Path other) {
+        MemoryPath that = check(other);
+        if (that.absolute != absolute) {
+            throw new IllegalArgumentException("'other' is different type of Path");
+        }
+        int common = 0;
+        while (common < names.length && common < that.names.length && names[common].equals(that.names[common])) {
+            common++;
+        }
+        List<String> result = new ArrayList<>();
+        for (int i = common; i < names.length; i++) {
+            result.add("..");
+        }
+        result.addAll(Arrays.asList(that.names).subList(common, that.names.length));
+        return new MemoryPath(fs, false, result.toArray(NO_NAMES));
+    }
+
+    @Override
+    public URI toUri() {
+        return URI.create(fs.getUri() + toAbsolutePath().toString());
+    }
+
+    @Override
+    public MemoryPath toAbsolutePath() {
+        return absolute ? this : new MemoryPath(fs, true, names);
+    }
+
+    @Override
+    public Path toRealPath(LinkOption... options) throws IOException {
+        MemoryPath real = (MemoryPath) toAbsolutePath().normalize();
+        if (fs.find(real) == null) {
+            throw new NoSuchFileException(toString());
+        }
+        return real;
+    }
+
+    @Override
+    public WatchKey register(WatchService watcher, WatchEvent.Kind<?>[] events, WatchEvent.Modifier... modifiers) {
+        throw new UnsupportedOperationException("Memory file systems cannot be watched");
+    }
+
+    @Override
+    public int compareTo(Path other) {
+        return toString().compareTo(other.toString());
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof MemoryPath that && that.fs == fs && that.toString().equals(toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        String result = string;
+        if (result == null) {
+            result = (absolute ? "/" : "") + String.join("/", names);
+            string = result;
+        }
+        return result;
+    }
+
+    private MemoryPath check(Path other) {
+        if (!(other instanceof MemoryPath that) || that.fs != fs) {
+            throw new ProviderMismatchException();
+        }
+        return that;
+    }
+}
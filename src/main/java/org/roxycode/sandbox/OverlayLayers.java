@@ -0,0 +1,322 @@
+package org.roxycode.sandbox;
+
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Copy-on-write view of a shared base directory through a private upper layer, laid out like
+ * overlayfs: a file in the upper layer hides the base file of the same name, {@code .wh.<name>}
+ * marks a deleted base entry, and {@code .wh..wh..opq} in a directory hides all base entries
+ * below it. The base is never written. A base file is copied up the first time it is opened
+ * for writing.
+ * <p>
+ * Lookups stop checking the upper layer at the first directory it doesn't have, so paths the
+ * session never touched cost one {@code stat} per level that does exist above.
+ */
+final class OverlayLayers {
+    static final String WHITEOUT_PREFIX = ".wh.";
+    static final String OPAQUE_MARKER = ".wh..wh..opq";
+
+    private final Path baseRoot;
+    private final Path upperRoot;
+    private final RealPathGuard guard;
+
+    OverlayLayers(Path baseRoot, Path upperRoot, RealPathGuard guard) {
+        this.baseRoot = baseRoot;
+        this.upperRoot = upperRoot;
+        this.guard = guard;
+    }
+
+    Path upperRoot() {
+        return upperRoot;
+    }
+
+    /**
+     * Where a path lives in each layer. {@code base} is null when a whiteout or opaque directory
+     * hides the base layer at this path.
+     */
+    private record Lookup(Path upper, Path base) {
+        boolean inUpper() {
+            return Files.exists(upper, LinkOption.NOFOLLOW_LINKS);
+        }
+    }
+
+    private Lookup lookup(Path lexical) {
+        Path rel = lexical.startsWith(baseRoot) ? baseRoot.relativize(lexical) : guard.resolvedRoot().relativize(lexical);
+        Path upper = upperRoot;
+        boolean baseVisible = true;
+        boolean upperDirectory = true;
+        for (Path element : rel) {
+            String name = element.toString();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (upperDirectory && baseVisible && Files.exists(upper.resolve(WHITEOUT_PREFIX + name), LinkOption.NOFOLLOW_LINKS)) {
+                baseVisible = false;
+            }
+            upper = upper.resolve(name);
+            upperDirectory = upperDirectory && Files.isDirectory(upper, LinkOption.NOFOLLOW_LINKS);
+            if (upperDirectory && baseVisible && Files.exists(upper.resolve(OPAQUE_MARKER), LinkOption.NOFOLLOW_LINKS)) {
+                baseVisible = false;
+            }
+        }
+        return new Lookup(upper, baseVisible ? lexical : null);
+    }
+
+    /**
+     * The layer a read of {@code lexical} is served from.
+     */
+    Path readPath(Path lexical, boolean followLeaf) throws IOException {
+        Lookup lookup = lookup(lexical);
+        if (lookup.inUpper() || lookup.base() == null) {
+            return lookup.upper();
+        }
+        return guard.check(lookup.base(), followLeaf);
+    }
+
+    /**
+     * The upper layer path to open for writing, after copying the base file up unless the open
+     * truncates it anyway.
+     */
+    Path writePath(Path lexical, Set<? extends OpenOption> options) throws IOException {
+        checkName(lexical);
+        Lookup lookup = lookup(lexical);
+        if (lookup.inUpper()) {
+            return lookup.upper();
+        }
+        Path base = baseFile(lookup);
+        if (base != null && options.contains(StandardOpenOption.CREATE_NEW)) {
+            throw new FileAlreadyExistsException(lexical.toString());
+        }
+        prepareParent(lexical, lookup);
+        if (base != null && !options.contains(StandardOpenOption.TRUNCATE_EXISTING)) {
+            Files.copy(base, lookup.upper(), StandardCopyOption.COPY_ATTRIBUTES);
+        }
+        return lookup.upper();
+    }
+
+    /**
+     * The upper layer path to copy or move a file to; the base file is never copied up first.
+     */
+    Path copyTarget(Path lexical, CopyOption... options) throws IOException {
+        checkName(lexical);
+        Lookup lookup = lookup(lexical);
+        boolean replace = false;
+        for (CopyOption option : options) {
+            replace |= option == StandardCopyOption.REPLACE_EXISTING;
+        }
+        if (!replace && (lookup.inUpper() || baseFile(lookup) != null)) {
+            throw new FileAlreadyExistsException(lexical.toString());
+        }
+        if (!lookup.inUpper()) {
+            prepareParent(lexical, lookup);
+        }
+        return lookup.upper();
+    }
+
+    void createDirectory(Path lexical, FileAttribute<?>... attrs) throws IOException {
+        checkName(lexical);
+        Lookup lookup = lookup(lexical);
+        if (lookup.inUpper() || baseFile(lookup) != null) {
+            throw new FileAlreadyExistsException(lexical.toString());
+        }
+        boolean hidesBase = prepareParent(lexical, lookup);
+        Files.createDirectory(lookup.upper(), attrs);
+        if (hidesBase) {
+            // A deleted base directory came back; its old entries must stay deleted
+            Files.createFile(lookup.upper().resolve(OPAQUE_MARKER));
+        }
+    }
+
+    void delete(Path lexical) throws IOException {
+        Lookup lookup = lookup(lexical);
+        boolean inUpper = lookup.inUpper();
+        // A base link is deleted as the link, so its target doesn't matter
+        Path base = baseFile(lookup, false);
+        if (!inUpper && base == null) {
+            throw new NoSuchFileException(lexical.toString());
+        }
+        Path effective = inUpper ? lookup.upper() : base;
+        if (Files.isDirectory(effective, LinkOption.NOFOLLOW_LINKS)) {
+            try (DirectoryStream<Path> entries = newDirectoryStream(lexical)) {
+                if (entries.iterator().hasNext()) {
+                    throw new DirectoryNotEmptyException(lexical.toString());
+                }
+            }
+        }
+        if (inUpper) {
+            if (Files.isDirectory(lookup.upper(), LinkOption.NOFOLLOW_LINKS)) {
+                // Only markers are left once the merged directory is empty
+                try (DirectoryStream<Path> markers = Files.newDirectoryStream(lookup.upper())) {
+                    for (Path marker : markers) {
+                        Files.delete(marker);
+                    }
+                }
+            }
+            Files.delete(lookup.upper());
+        }
+        if (base != null) {
+            Files.createDirectories(lookup.upper().getParent());
+            Files.createFile(whiteout(lookup.upper()));
+        }
+    }
+
+    /**
+     * The merged listing of a directory, as lexical paths: upper entries first, then base
+     * entries that are neither replaced nor whited out. The base directory is streamed, only
+     * the upper directory's names are held in memory.
+     */
+    DirectoryStream<Path> newDirectoryStream(Path lexicalDir) throws IOException {
+        Lookup lookup = lookup(lexicalDir);
+        boolean inUpper = lookup.inUpper();
+        Path base = baseFile(lookup);
+        if (!inUpper && base == null) {
+            throw new NoSuchFileException(lexicalDir.toString());
+        }
+        Set<String> upperNames = new HashSet<>();
+        Set<String> hidden = new HashSet<>();
+        if (inUpper) {
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(lookup.upper())) {
+                for (Path entry : entries) {
+                    String name = entry.getFileName().toString();
+                    if (name.startsWith(WHITEOUT_PREFIX)) {
+                        hidden.add(name.substring(WHITEOUT_PREFIX.length()));
+                    } else {
+                        upperNames.add(name);
+                    }
+                }
+            }
+        }
+        DirectoryStream<Path> baseStream = base != null && Files.isDirectory(base)
+                ? Files.newDirectoryStream(base) : null;
+        Iterator<String> upperIterator = upperNames.iterator();
+        Iterator<Path> baseIterator = baseStream != null ? baseStream.iterator() : null;
+
+        return new DirectoryStream<>() {
+            @Override
+            public Iterator<Path> iterator() {
+                return new Iterator<>() {
+                    private Path next;
+
+                    @Override
+                    public boolean hasNext() {
+                        if (next == null && upperIterator.hasNext()) {
+                            next = lexicalDir.resolve(upperIterator.next());
+                        }
+                        while (next == null && baseIterator != null && baseIterator.hasNext()) {
+                            String name = baseIterator.next().getFileName().toString();
+                            if (!upperNames.contains(name) && !hidden.contains(name)) {
+                                next = lexicalDir.resolve(name);
+                            }
+                        }
+                        return next != null;
+                    }
+
+                    @Override
+                    public Path next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        Path result = next;
+                        next = null;
+                        return result;
+                    }
+                };
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (baseStream != null) {
+                    baseStream.close();
+                }
+            }
+        };
+    }
+
+    boolean isDirectory(Path lexical) throws IOException {
+        try {
+            return Files.readAttributes(readPath(lexical, true), BasicFileAttributes.class).isDirectory();
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    /**
+     * The visible base file at this path, or null if there is none.
+     */
+    private Path baseFile(Lookup lookup) throws IOException {
+        return baseFile(lookup, true);
+    }
+
+    private Path baseFile(Lookup lookup, boolean followLeaf) throws IOException {
+        if (lookup.base() == null) {
+            return null;
+        }
+        Path base = guard.check(lookup.base(), followLeaf);
+        return Files.exists(base, LinkOption.NOFOLLOW_LINKS) ? base : null;
+    }
+
+    /**
+     * Creates the upper parent directories of a path and removes any whiteout of the path
+     * itself. Returns whether there was one.
+     */
+    private boolean prepareParent(Path lexical, Lookup lookup) throws IOException {
+        Path parent = lexical.getParent();
+        if (parent != null && !lexical.equals(baseRoot) && !isDirectory(parent)) {
+            throw new NoSuchFileException(parent.toString());
+        }
+        Files.createDirectories(lookup.upper().getParent());
+        return Files.deleteIfExists(whiteout(lookup.upper()));
+    }
+
+    private static Path whiteout(Path upper) {
+        return upper.resolveSibling(WHITEOUT_PREFIX + upper.getFileName());
+    }
+
+    private static void checkName(Path lexical) throws AccessDeniedException {
+        Path name = lexical.getFileName();
+        if (name != null && name.toString().startsWith(WHITEOUT_PREFIX)) {
+            throw new AccessDeniedException(lexical.toString(), null, "Names starting with " + WHITEOUT_PREFIX + " are reserved");
+        }
+    }
+
+    /**
+     * Moves a file by copying it into the upper layer and deleting the source. Directories
+     * can only be moved while empty, since the base side of them can't be renamed.
+     */
+    void move(Path source, Path target, CopyOption... options) throws IOException {
+        checkName(source);
+        Path from = readPath(source, false);
+        if (Files.isDirectory(from, LinkOption.NOFOLLOW_LINKS)) {
+            try (DirectoryStream<Path> entries = newDirectoryStream(source)) {
+                if (entries.iterator().hasNext()) {
+                    throw new FileSystemException(source.toString(), target.toString(),
+                            "Directories with contents cannot be moved in an overlay sandbox");
+                }
+            }
+            createDirectory(target);
+        } else {
+            Path to = copyTarget(target, options);
+            Files.copy(from, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+        }
+        delete(source);
+    }
+}
@@ -0,0 +1,233 @@
+package org.roxycode.sandbox;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Makes sure a real path stays inside the sandbox root once symbolic links are followed.
+ * <p>
+ * Directories are resolved with {@code toRealPath} once and cached, so a check usually costs
+ * one map lookup for the parent plus one {@code lstat} for the last element. The root and each
+ * cached directory are watched. Creating or deleting a subdirectory or link, or a watched
+ * directory going away, invalidates the whole cache, since any of these can change how paths
+ * below it resolve. Plain file churn keeps it. Nothing is cached while the root can't be watched.
+ * <p>
+ * Guards are shared by all sandboxes over the same root, such as the per-session overlays of one
+ * workspace, through {@link SandboxFileSystemProvider#acquireGuard}, so a root costs one watch
+ * service and one thread however many sandboxes are mounted on it.
+ */
+final class RealPathGuard implements Closeable {
+    private static final int MAX_LINK_HOPS = 40;
+
+    private final Path realRoot;
+    private final Path resolvedRoot;
+    private final int maxCachedDirectories;
+    private final ConcurrentHashMap<Path, Path> resolvedDirectories = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Path, WatchKey> watchKeys = new ConcurrentHashMap<>();
+    private final WatchService watcher;
+    // Null when the root isn't watched, and then nothing may be cached
+    private volatile WatchKey rootKey;
+    // Sandboxes using this guard; only changed by the provider under its map's per-root lock
+    private int users;
+
+    RealPathGuard(Path realRoot, int maxCachedDirectories) {
+        this.realRoot = realRoot;
+        this.resolvedRoot = resolveRoot(realRoot);
+        this.maxCachedDirectories = maxCachedDirectories;
+        this.watcher = newWatcher(realRoot);
+        this.rootKey = watcher == null ? null : register(resolvedRoot);
+        if (watcher != null) {
+            Thread thread = new Thread(this::watchLoop, "sandbox-path-watch");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private static Path resolveRoot(Path realRoot) {
+        try {
+            return realRoot.toRealPath();
+        } catch (IOException e) {
+            // Root doesn't exist (yet); every access will fail with NoSuchFileException anyway
+            return realRoot;
+        }
+    }
+
+    private static WatchService newWatcher(Path realRoot) {
+        try {
+            return realRoot.getFileSystem().newWatchService();
+        } catch (IOException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    private WatchKey register(Path dir) {
+        try {
+            return dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    Path realRoot() {
+        return realRoot;
+    }
+
+    Path resolvedRoot() {
+        return resolvedRoot;
+    }
+
+    int cachedDirectories() {
+        return resolvedDirectories.size();
+    }
+
+    /**
+     * Returns the path to hand to the real file system for {@code lexical}, a normalized path
+     * inside the root. Every directory on the way is resolved. The last element is resolved
+     * too when {@code followLeaf} is set; otherwise a link there is used as the link itself.
+     *
+     * @throws AccessDeniedException if a symbolic link leads outside the root
+     */
+    Path check(Path lexical, boolean followLeaf) throws IOException {
+        Path current = lexical;
+        for (int hops = 0; ; hops++) {
+            if (current.equals(realRoot) || current.equals(resolvedRoot)) {
+                return resolvedRoot;
+            }
+            Path candidate = resolveDirectory(current.getParent()).resolve(current.getFileName());
+            if (!followLeaf || !Files.isSymbolicLink(candidate)) {
+                return candidate;
+            }
+            if (hops >= MAX_LINK_HOPS) {
+                throw new FileSystemException(lexical.toString(), null, "Too many levels of symbolic links");
+            }
+            current = inside(candidate.getParent().resolve(Files.readSymbolicLink(candidate)).normalize(), lexical);
+        }
+    }
+
+    private Path resolveDirectory(Path dir) throws IOException {
+        if (dir == null) {
+            throw new AccessDeniedException(realRoot.toString(), null, "Path escapes the sandbox");
+        }
+        if (dir.equals(realRoot) || dir.equals(resolvedRoot)) {
+            return resolvedRoot;
+        }
+        Path cached = resolvedDirectories.get(dir);
+        if (cached != null) {
+            return cached;
+        }
+        Path resolved;
+        try {
+            resolved = dir.toRealPath();
+        } catch (NoSuchFileException e) {
+            // Not created yet: nothing below an existing ancestor can be a link
+            return resolveDirectory(dir.getParent()).resolve(dir.getFileName());
+        }
+        if (!resolved.startsWith(resolvedRoot)) {
+            throw new AccessDeniedException(dir.toString(), null, "Path escapes the sandbox through a symbolic link");
+        }
+        remember(dir, resolved);
+        return resolved;
+    }
+
+    /**
+     * Maps a link target back into the resolved root, or denies it if it points elsewhere.
+     */
+    private Path inside(Path target, Path lexical) throws AccessDeniedException {
+        if (target.startsWith(resolvedRoot)) {
+            return target;
+        }
+        if (target.startsWith(realRoot)) {
+            return resolvedRoot.resolve(realRoot.relativize(target));
+        }
+        throw new AccessDeniedException(lexical.toString(), null, "Symbolic link points outside the sandbox");
+    }
+
+    private void remember(Path dir, Path resolved) {
+        if (rootKey == null) {
+            return;
+        }
+        if (resolvedDirectories.size() >= maxCachedDirectories) {
+            invalidateAll(true);
+        }
+        try {
+            WatchKey key = watchKeys.computeIfAbsent(resolved, this::register);
+            if (key != null) {
+                resolvedDirectories.put(dir, resolved);
+            }
+            // Unwatched directories are resolved on every access instead of being cached
+        } catch (ClosedWatchServiceException e) {
+            // Closing
+        }
+    }
+
+    void invalidateAll(boolean cancelWatches) {
+        resolvedDirectories.clear();
+        if (cancelWatches) {
+            watchKeys.values().forEach(WatchKey::cancel);
+            watchKeys.clear();
+        }
+    }
+
+    private void watchLoop() {
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                Path dir = (Path) key.watchable();
+                boolean structural = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                            || event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                        structural = true;
+                    } else if (event.context() instanceof Path name) {
+                        Path created = dir.resolve(name);
+                        structural |= Files.isDirectory(created, LinkOption.NOFOLLOW_LINKS) || Files.isSymbolicLink(created);
+                    }
+                }
+                if (structural) {
+                    invalidateAll(false);
+                }
+                if (!key.reset()) {
+                    // The directory itself was deleted or moved, which sends no event to its parent
+                    if (key == rootKey) {
+                        rootKey = null;
+                    }
+                    watchKeys.remove(dir, key);
+                    invalidateAll(false);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // File system closed
+        }
+    }
+
+    void retain() {
+        users++;
+    }
+
+    /**
+     * @return the sandboxes still using this guard
+     */
+    int release() {
+        return --users;
+    }
+
+    @Override
+    public void close() throws IOException {
+        invalidateAll(true);
+        if (watcher != null) {
+            watcher.close();
+        }
+    }
+}
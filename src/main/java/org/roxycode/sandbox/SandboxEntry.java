@@ -0,0 +1,10 @@
+package org.roxycode.sandbox;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * One entry of a {@link SandboxWalker} walk, with the attributes read while walking.
+ * Symbolic links are reported as links, never followed.
+ */
+public record SandboxEntry(Path path, BasicFileAttributes attributes) {}
@@ -1,6 +1,7 @@
 package org.roxycode.sandbox;
 
 import java.io.IOException;
+import java.net.URI;
 import java.nio.file.*;
 import java.nio.file.attribute.UserPrincipalLookupService;
 import java.nio.file.spi.FileSystemProvider;
@@ -8,22 +9,73 @@ import java.util.Collections;
 import java.util.Set;
 
 public class SandboxFileSystem extends FileSystem {
+    private static final int MAX_CACHED_DIRECTORIES = 4096;
+
     private final SandboxFileSystemProvider provider;
+    private final URI uri;
     private final Path realRoot;
     private final boolean readOnly;
     private final FileSystem delegateFs;
+    private final Path virtualRoot;
+    private final RealPathGuard guard;
+    private final OverlayLayers overlay;
+    private volatile boolean open = true;
 
     public SandboxFileSystem(SandboxFileSystemProvider provider, Path realRoot, boolean readOnly) {
+        this(provider, null, realRoot, readOnly);
+    }
+
+    /**
+     * @param uri the URI the provider registered this file system under, or {@code null} if unregistered
+     */
+    public SandboxFileSystem(SandboxFileSystemProvider provider, URI uri, Path realRoot, boolean readOnly) {
+        this(provider, uri, realRoot, null, readOnly);
+    }
+
+    /**
+     * @param upperRoot when set, {@code realRoot} becomes a shared read-only base and all changes
+     *                  go to this directory instead; see {@link OverlayLayers}
+     */
+    public SandboxFileSystem(SandboxFileSystemProvider provider, URI uri, Path realRoot, Path upperRoot, boolean readOnly) {
         this.provider = provider;
+        this.uri = uri;
         this.realRoot = realRoot.toAbsolutePath().normalize();
         this.readOnly = readOnly;
         this.delegateFs = realRoot.getFileSystem();
+        this.virtualRoot = delegateFs.getPath("/");
+        this.guard = provider.acquireGuard(this.realRoot, MAX_CACHED_DIRECTORIES);
+        this.overlay = upperRoot == null ? null : new OverlayLayers(this.realRoot, upperRoot.toAbsolutePath().normalize(), guard);
+    }
+
+    public URI getUri() {
+        return uri;
     }
 
     public Path getRealRoot() {
         return realRoot;
     }
 
+    /**
+     * The root of the virtual path space; virtual paths live on the delegate file system.
+     */
+    Path getVirtualRoot() {
+        return virtualRoot;
+    }
+
+    /**
+     * Checks real paths against symbolic links that lead out of the root.
+     */
+    RealPathGuard getGuard() {
+        return guard;
+    }
+
+    /**
+     * The copy-on-write layers, or null when this file system passes straight through to its root.
+     */
+    OverlayLayers getOverlay() {
+        return overlay;
+    }
+
     public boolean isReadOnlyFlag() {
         return readOnly;
     }
@@ -34,13 +86,19 @@ public class SandboxFileSystem extends FileSystem {
     }
 
     @Override
-    public void close() throws IOException {
+    public synchronized void close() throws IOException {
+        if (!open) {
+            return;
+        }
+        open = false;
+        provider.deregister(uri, this);
         // We don't close the delegate as it's the default FS
+        provider.releaseGuard(guard);
     }
 
     @Override
     public boolean isOpen() {
-        return true;
+        return open;
     }
 
     @Override
@@ -55,7 +113,7 @@ public class SandboxFileSystem extends FileSystem {
 
     @Override
     public Iterable<Path> getRootDirectories() {
-        return Collections.singleton(new SandboxPath(this, Paths.get("/")));
+        return Collections.singleton(new SandboxPath(this, virtualRoot, realRoot));
     }
 
     @Override
@@ -3,22 +3,36 @@ package org.roxycode.sandbox;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.nio.channels.AsynchronousFileChannel;
 import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributeView;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileAttribute;
 import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileTime;
 import java.nio.file.spi.FileSystemProvider;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 
 public class SandboxFileSystemProvider extends FileSystemProvider {
-    private final Map<URI, SandboxFileSystem> filesystems = new HashMap<>();
+    /**
+     * One entry per mounted sandbox, typically one per session. Lookups never lock, and each
+     * file system knows its own URI, so nothing here scans the registry.
+     */
+    private final ConcurrentHashMap<URI, SandboxFileSystem> filesystems = new ConcurrentHashMap<>();
+    /**
+     * Symlink guards by real root, shared by every open sandbox over that root.
+     */
+    private final ConcurrentHashMap<Path, RealPathGuard> guards = new ConcurrentHashMap<>();
 
     @Override
     public String getScheme() {
@@ -27,31 +41,47 @@ public class SandboxFileSystemProvider extends FileSystemProvider {
 
     @Override
     public FileSystem newFileSystem(URI uri, Map<String, ?> env) throws IOException {
-        synchronized (filesystems) {
-            if (filesystems.containsKey(uri)) {
-                throw new FileSystemAlreadyExistsException();
-            }
-            
-            String rootPathStr = (String) env.get("root");
-            if (rootPathStr == null) {
-                throw new IllegalArgumentException("Missing 'root' in environment");
-            }
-            
-            boolean readOnly = Boolean.TRUE.equals(env.get("readOnly"));
-            Path rootPath = Paths.get(rootPathStr);
-            SandboxFileSystem fs = new SandboxFileSystem(this, rootPath, readOnly);
-            filesystems.put(uri, fs);
-            return fs;
+        if (filesystems.containsKey(uri)) {
+            throw new FileSystemAlreadyExistsException();
+        }
+
+        Path rootPath = pathOf(env.get("root"));
+        if (rootPath == null) {
+            throw new IllegalArgumentException("Missing 'root' in environment");
+        }
+
+        boolean readOnly = Boolean.TRUE.equals(env.get("readOnly"));
+        Path upperPath = pathOf(env.get("upper"));
+        if (upperPath != null) {
+            Files.createDirectories(upperPath);
         }
+        SandboxFileSystem fs = new SandboxFileSystem(this, uri, rootPath, upperPath, readOnly);
+        if (filesystems.putIfAbsent(uri, fs) != null) {
+            // Lost a race for the same URI
+            fs.close();
+            throw new FileSystemAlreadyExistsException();
+        }
+        return fs;
+    }
+
+    /**
+     * {@code root}, and the optional {@code upper}, may be path strings or {@link Path}s on any file
+     * system, such as a {@link MemoryFileSystem}. Setting {@code upper} turns the root into a
+     * read-only base with copy-on-write changes kept under that directory.
+     */
+    private static Path pathOf(Object value) {
+        if (value == null || value instanceof Path) {
+            return (Path) value;
+        }
+        String path = value.toString();
+        return path.isBlank() ? null : Paths.get(path);
     }
 
     @Override
     public FileSystem getFileSystem(URI uri) {
-        synchronized (filesystems) {
-            SandboxFileSystem fs = filesystems.get(uri);
-            if (fs == null) throw new FileSystemNotFoundException();
-            return fs;
-        }
+        SandboxFileSystem fs = filesystems.get(uri);
+        if (fs == null) throw new FileSystemNotFoundException();
+        return fs;
     }
 
     @Override
@@ -64,26 +94,110 @@ public class SandboxFileSystemProvider extends FileSystemProvider {
     }
 
     public URI getUri(SandboxPath path) {
-        SandboxFileSystem fs = (SandboxFileSystem) path.getFileSystem();
-        // find the uri for this fs
-        URI base = null;
-        synchronized (filesystems) {
-            for (Map.Entry<URI, SandboxFileSystem> entry : filesystems.entrySet()) {
-                if (entry.getValue() == fs) {
-                    base = entry.getKey();
-                    break;
-                }
-            }
-        }
+        URI base = ((SandboxFileSystem) path.getFileSystem()).getUri();
         if (base == null) return null;
         return URI.create(base.toString() + path.toString());
     }
 
-    private Path toReal(Path path) {
+    /**
+     * Called by {@link SandboxFileSystem#close()}; only removes the entry if it still maps to that instance.
+     */
+    void deregister(URI uri, SandboxFileSystem fs) {
+        if (uri != null) {
+            filesystems.remove(uri, fs);
+        }
+    }
+
+    /**
+     * The guard for {@code realRoot}, shared with other open sandboxes over the same root.
+     * Hand it back with {@link #releaseGuard} when the sandbox closes.
+     */
+    RealPathGuard acquireGuard(Path realRoot, int maxCachedDirectories) {
+        return guards.compute(realRoot, (root, guard) -> {
+            RealPathGuard shared = guard != null ? guard : new RealPathGuard(root, maxCachedDirectories);
+            shared.retain();
+            return shared;
+        });
+    }
+
+    /**
+     * Closes the guard once the last sandbox using it has released it.
+     */
+    void releaseGuard(RealPathGuard guard) throws IOException {
+        RealPathGuard remaining = guards.computeIfPresent(guard.realRoot(),
+                (root, current) -> current == guard && current.release() == 0 ? null : current);
+        if (remaining != guard) {
+            guard.close();
+        }
+    }
+
+    /**
+     * The real path to operate on, with every symbolic link on the way checked to stay inside
+     * the root. {@code getRealDelegate} is only lexically confined.
+     */
+    private Path toReal(Path path) throws IOException {
+        return toReal(path, true);
+    }
+
+    private Path toReal(Path path, boolean followLeaf) throws IOException {
         if (!(path instanceof SandboxPath)) {
             throw new ProviderMismatchException();
         }
-        return ((SandboxPath) path).getRealDelegate();
+        SandboxPath sandboxPath = (SandboxPath) path;
+        SandboxFileSystem fs = openFileSystem(sandboxPath);
+        if (fs.getOverlay() != null) {
+            return fs.getOverlay().readPath(sandboxPath.getRealDelegate(), followLeaf);
+        }
+        return fs.getGuard().check(sandboxPath.getRealDelegate(), followLeaf);
+    }
+
+    /**
+     * The real path to open for writing. In overlay mode this is always in the upper layer, with
+     * the base file copied up first unless {@code options} truncate it.
+     */
+    private Path toWritable(Path path, Set<? extends OpenOption> options) throws IOException {
+        if (!(path instanceof SandboxPath)) {
+            throw new ProviderMismatchException();
+        }
+        SandboxPath sandboxPath = (SandboxPath) path;
+        checkWrite(sandboxPath);
+        OverlayLayers overlay = openFileSystem(sandboxPath).getOverlay();
+        return overlay != null ? overlay.writePath(sandboxPath.getRealDelegate(), options) : toReal(path);
+    }
+
+    private static SandboxFileSystem openFileSystem(SandboxPath path) {
+        SandboxFileSystem fs = (SandboxFileSystem) path.getFileSystem();
+        if (!fs.isOpen()) {
+            throw new ClosedFileSystemException();
+        }
+        return fs;
+    }
+
+    private static OverlayLayers overlayOf(Path path) {
+        if (!(path instanceof SandboxPath)) {
+            throw new ProviderMismatchException();
+        }
+        return openFileSystem((SandboxPath) path).getOverlay();
+    }
+
+    private static boolean isWrite(Set<? extends OpenOption> options) {
+        return options.contains(StandardOpenOption.WRITE) || options.contains(StandardOpenOption.APPEND);
+    }
+
+    /**
+     * The checked real path of a sandbox path, for walks that read the real tree directly.
+     */
+    Path checkedRealPath(SandboxPath path) throws IOException {
+        return toReal(path);
+    }
+
+    private static boolean followLinks(LinkOption... options) {
+        for (LinkOption option : options) {
+            if (option == LinkOption.NOFOLLOW_LINKS) {
+                return false;
+            }
+        }
+        return true;
     }
 
     private void checkWrite(SandboxPath path) throws IOException {
@@ -99,81 +213,148 @@ public class SandboxFileSystemProvider extends FileSystemProvider {
 
     @Override
     public OutputStream newOutputStream(Path path, OpenOption... options) throws IOException {
-        checkWrite((SandboxPath) path);
-        return Files.newOutputStream(toReal(path), options);
+        Set<OpenOption> opened = options.length == 0
+                ? Set.of(StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)
+                : Set.of(options);
+        return Files.newOutputStream(toWritable(path, opened), options);
     }
 
     @Override
     public FileChannel newFileChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs) throws IOException {
-        if (options.contains(StandardOpenOption.WRITE)) {
-            checkWrite((SandboxPath) path);
-        }
-        return FileChannel.open(toReal(path), options, attrs);
+        Path real = isWrite(options) ? toWritable(path, options) : toReal(path);
+        return FileChannel.open(real, options, attrs);
     }
 
     @Override
     public AsynchronousFileChannel newAsynchronousFileChannel(Path path, Set<? extends OpenOption> options, ExecutorService executor, FileAttribute<?>... attrs) throws IOException {
-        if (options.contains(StandardOpenOption.WRITE)) {
-            checkWrite((SandboxPath) path);
-        }
-        return AsynchronousFileChannel.open(toReal(path), options, executor, attrs);
+        Path real = isWrite(options) ? toWritable(path, options) : toReal(path);
+        return AsynchronousFileChannel.open(real, options, executor, attrs);
     }
 
     @Override
     public SeekableByteChannel newByteChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs) throws IOException {
-        if (options.contains(StandardOpenOption.WRITE)) {
-            checkWrite((SandboxPath) path);
-        }
-        return Files.newByteChannel(toReal(path), options, attrs);
+        Path real = isWrite(options) ? toWritable(path, options) : toReal(path);
+        return Files.newByteChannel(real, options, attrs);
     }
 
+    /**
+     * Entries are mapped straight from the real directory stream: one virtual resolve per entry,
+     * with the real path carried over so later provider calls don't translate it again.
+     */
     @Override
     public DirectoryStream<Path> newDirectoryStream(Path dir, DirectoryStream.Filter<? super Path> filter) throws IOException {
-        final SandboxFileSystem fs = (SandboxFileSystem) dir.getFileSystem();
-        final DirectoryStream<Path> delegateStream = Files.newDirectoryStream(toReal(dir), entry -> {
-             // filter must return true for the filter passed in
-             return filter.accept(new SandboxPath(fs, Paths.get("/").resolve(fs.getRealRoot().relativize(entry))));
-        });
-        
+        if (!(dir instanceof SandboxPath)) {
+            throw new ProviderMismatchException();
+        }
+        final SandboxPath sandboxDir = (SandboxPath) dir;
+        OverlayLayers overlay = overlayOf(sandboxDir);
+        final DirectoryStream<Path> delegateStream = overlay != null
+                ? overlay.newDirectoryStream(sandboxDir.getRealDelegate())
+                : Files.newDirectoryStream(toReal(sandboxDir));
+
         return new DirectoryStream<Path>() {
             @Override
-            public java.util.Iterator<Path> iterator() {
-                final java.util.Iterator<Path> it = delegateStream.iterator();
-                return new java.util.Iterator<Path>() {
-                    @Override public boolean hasNext() { return it.hasNext(); }
-                    @Override public Path next() { 
-                        Path next = it.next();
-                        return new SandboxPath(fs, Paths.get("/").resolve(fs.getRealRoot().relativize(next)));
+            public Iterator<Path> iterator() {
+                final Iterator<Path> it = delegateStream.iterator();
+                return new Iterator<Path>() {
+                    private Path next;
+
+                    @Override
+                    public boolean hasNext() {
+                        while (next == null && it.hasNext()) {
+                            SandboxPath candidate = sandboxDir.resolveEntry(it.next());
+                            try {
+                                if (filter == null || filter.accept(candidate)) {
+                                    next = candidate;
+                                }
+                            } catch (IOException e) {
+                                throw new DirectoryIteratorException(e);
+                            }
+                        }
+                        return next != null;
+                    }
+
+                    @Override
+                    public Path next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        Path result = next;
+                        next = null;
+                        return result;
                     }
                 };
             }
-            @Override public void close() throws IOException { delegateStream.close(); }
+
+            @Override
+            public void close() throws IOException {
+                delegateStream.close();
+            }
         };
     }
 
     @Override
     public void createDirectory(Path dir, FileAttribute<?>... attrs) throws IOException {
         checkWrite((SandboxPath) dir);
-        Files.createDirectory(toReal(dir), attrs);
+        OverlayLayers overlay = overlayOf(dir);
+        if (overlay != null) {
+            overlay.createDirectory(((SandboxPath) dir).getRealDelegate(), attrs);
+            return;
+        }
+        Files.createDirectory(toReal(dir, false), attrs);
     }
 
     @Override
     public void delete(Path path) throws IOException {
         checkWrite((SandboxPath) path);
-        Files.delete(toReal(path));
+        OverlayLayers overlay = overlayOf(path);
+        if (overlay != null) {
+            overlay.delete(((SandboxPath) path).getRealDelegate());
+            return;
+        }
+        Files.delete(toReal(path, false));
     }
 
     @Override
     public void copy(Path source, Path target, CopyOption... options) throws IOException {
         checkWrite((SandboxPath) target);
-        Files.copy(toReal(source), toReal(target), options);
+        OverlayLayers overlay = overlayOf(target);
+        if (overlay != null) {
+            Path to = overlay.copyTarget(((SandboxPath) target).getRealDelegate(), options);
+            Files.copy(toReal(source, followLinks(linkOptions(options))), to, withReplace(options));
+            return;
+        }
+        Files.copy(toReal(source, followLinks(linkOptions(options))), toReal(target, false), options);
     }
 
     @Override
     public void move(Path source, Path target, CopyOption... options) throws IOException {
         checkWrite((SandboxPath) source);
         checkWrite((SandboxPath) target);
-        Files.move(toReal(source), toReal(target), options);
+        OverlayLayers overlay = overlayOf(target);
+        if (overlay != null) {
+            overlay.move(((SandboxPath) source).getRealDelegate(), ((SandboxPath) target).getRealDelegate(), options);
+            return;
+        }
+        Files.move(toReal(source, false), toReal(target, false), options);
+    }
+
+    private static LinkOption[] linkOptions(CopyOption... options) {
+        for (CopyOption option : options) {
+            if (option == LinkOption.NOFOLLOW_LINKS) {
+                return new LinkOption[]{LinkOption.NOFOLLOW_LINKS};
+            }
+        }
+        return new LinkOption[0];
+    }
+
+    /**
+     * The overlay has already checked whether the target may be replaced; an existing upper file is always replaced.
+     */
+    private static CopyOption[] withReplace(CopyOption... options) {
+        CopyOption[] result = Arrays.copyOf(options, options.length + 1);
+        result[options.length] = StandardCopyOption.REPLACE_EXISTING;
+        return result;
     }
 
     @Override
@@ -198,27 +379,76 @@ public class SandboxFileSystemProvider extends FileSystemProvider {
                 throw new AccessDeniedException(path.toString());
             }
         }
-        toReal(path).getFileSystem().provider().checkAccess(toReal(path), modes);
+        Path real = toReal(path);
+        real.getFileSystem().provider().checkAccess(real, modes);
     }
 
     @Override
     public <V extends FileAttributeView> V getFileAttributeView(Path path, Class<V> type, LinkOption... options) {
-        return Files.getFileAttributeView(toReal(path), type, options);
+        try {
+            Path real = toReal(path, followLinks(options));
+            OverlayLayers overlay = overlayOf(path);
+            if (overlay == null || real.startsWith(overlay.upperRoot())) {
+                return Files.getFileAttributeView(real, type, options);
+            }
+            // A view straight onto the base could change it; only basic attributes get a copy-up on write
+            if (type != BasicFileAttributeView.class) {
+                return null;
+            }
+            return type.cast(new CopyUpAttributeView((SandboxPath) path, real, options));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Basic attributes of a base file in overlay mode: read from the base, written to a copy in the upper layer.
+     */
+    private class CopyUpAttributeView implements BasicFileAttributeView {
+        private final SandboxPath path;
+        private final Path base;
+        private final LinkOption[] options;
+
+        CopyUpAttributeView(SandboxPath path, Path base, LinkOption... options) {
+            this.path = path;
+            this.base = base;
+            this.options = options;
+        }
+
+        @Override
+        public String name() {
+            return "basic";
+        }
+
+        @Override
+        public BasicFileAttributes readAttributes() throws IOException {
+            return Files.readAttributes(base, BasicFileAttributes.class, options);
+        }
+
+        @Override
+        public void setTimes(FileTime lastModifiedTime, FileTime lastAccessTime, FileTime createTime) throws IOException {
+            Path upper = toWritable(path, Set.of(StandardOpenOption.WRITE));
+            Files.getFileAttributeView(upper, BasicFileAttributeView.class, options)
+                    .setTimes(lastModifiedTime, lastAccessTime, createTime);
+        }
     }
 
     @Override
     public <A extends BasicFileAttributes> A readAttributes(Path path, Class<A> type, LinkOption... options) throws IOException {
-        return Files.readAttributes(toReal(path), type, options);
+        return Files.readAttributes(toReal(path, followLinks(options)), type, options);
     }
 
     @Override
     public Map<String, Object> readAttributes(Path path, String attributes, LinkOption... options) throws IOException {
-        return Files.readAttributes(toReal(path), attributes, options);
+        return Files.readAttributes(toReal(path, followLinks(options)), attributes, options);
     }
 
     @Override
     public void setAttribute(Path path, String attribute, Object value, LinkOption... options) throws IOException {
         checkWrite((SandboxPath) path);
-        Files.setAttribute(toReal(path), attribute, value, options);
+        Path real = overlayOf(path) != null
+                ? toWritable(path, Set.of(StandardOpenOption.WRITE))
+                : toReal(path, followLinks(options));
+        Files.setAttribute(real, attribute, value, options);
     }
 }
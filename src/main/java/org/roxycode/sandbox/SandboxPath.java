@@ -4,26 +4,59 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Iterator;
 
 public class SandboxPath implements Path {
     private final SandboxFileSystem fs;
     private final Path virtualPath;
+    // Computed on first use; racing threads compute the same immutable value
+    private Path realDelegate;
 
     public SandboxPath(SandboxFileSystem fs, Path virtualPath) {
         this.fs = fs;
         this.virtualPath = virtualPath.normalize();
     }
 
+    /**
+     * For paths the provider already knows the real location of, such as directory entries.
+     * The virtual path must already be normalized.
+     */
+    SandboxPath(SandboxFileSystem fs, Path normalizedVirtualPath, Path realDelegate) {
+        this.fs = fs;
+        this.virtualPath = normalizedVirtualPath;
+        this.realDelegate = realDelegate;
+    }
+
+    Path virtualPath() {
+        return virtualPath;
+    }
+
+    /**
+     * The real path this virtual path maps to. Relative paths are taken from the sandbox root.
+     * The virtual path is normalized, so only a relative path can still start with "..";
+     * such a path would leave the root and maps to the root itself.
+     */
     public Path getRealDelegate() {
-        Path resolved = fs.getRealRoot().resolve(virtualPath.isAbsolute() 
-            ? virtualPath.toString().substring(1) 
-            : virtualPath.toString()).normalize();
-        
-        if (!resolved.startsWith(fs.getRealRoot())) {
-            return fs.getRealRoot();
+        Path real = realDelegate;
+        if (real == null) {
+            real = computeRealDelegate();
+            realDelegate = real;
         }
-        return resolved;
+        return real;
+    }
+
+    private Path computeRealDelegate() {
+        Path realRoot = fs.getRealRoot();
+        int count = virtualPath.getNameCount();
+        if (count == 0) {
+            return realRoot;
+        }
+        if (virtualPath.getName(0).toString().equals("..")) {
+            return realRoot;
+        }
+        Path relative = virtualPath.isAbsolute() ? virtualPath.subpath(0, count) : virtualPath;
+        return realRoot.resolve(relative);
     }
 
     @Override
@@ -88,18 +121,34 @@ public class SandboxPath implements Path {
     @Override
     public Path resolve(Path other) {
         if (other instanceof SandboxPath) {
-            return resolve(((SandboxPath) other).virtualPath.toString());
+            return resolveVirtual(((SandboxPath) other).virtualPath);
         }
         return resolve(other.toString());
     }
 
     @Override
     public Path resolve(String other) {
-        Path otherPath = Paths.get(other);
-        if (otherPath.isAbsolute()) {
-            return new SandboxPath(fs, otherPath);
+        if (other.isEmpty()) {
+            return this;
+        }
+        return resolveVirtual(virtualPath.getFileSystem().getPath(other));
+    }
+
+    private Path resolveVirtual(Path other) {
+        if (other.isAbsolute()) {
+            return new SandboxPath(fs, other);
         }
-        return new SandboxPath(fs, virtualPath.resolve(otherPath));
+        return new SandboxPath(fs, virtualPath.resolve(other));
+    }
+
+    /**
+     * Resolves a single directory entry name without re-normalizing. When this path's real
+     * location is already known, the child's is derived from it as well.
+     */
+    SandboxPath resolveEntry(Path realEntry) {
+        Path name = realEntry.getFileName();
+        Path childVirtual = virtualPath.resolve(name);
+        return new SandboxPath(fs, childVirtual, realEntry);
     }
 
     @Override
@@ -118,16 +167,22 @@ public class SandboxPath implements Path {
     @Override
     public Path toAbsolutePath() {
         if (isAbsolute()) return this;
-        return new SandboxPath(fs, Paths.get("/").resolve(virtualPath));
+        return new SandboxPath(fs, fs.getVirtualRoot().resolve(virtualPath));
     }
 
     @Override
     public Path toRealPath(LinkOption... options) throws IOException {
-        Path real = getRealDelegate().toRealPath(options);
-        if (!real.startsWith(fs.getRealRoot())) {
-             throw new IOException("Real path escaped sandbox");
+        if (fs.getOverlay() != null) {
+            // Upper layer entries have no real path outside the layer; existence is all there is to check
+            Files.readAttributes(this, BasicFileAttributes.class, options);
+            return toAbsolutePath().normalize();
+        }
+        RealPathGuard guard = fs.getGuard();
+        Path real = guard.check(getRealDelegate(), true).toRealPath(options);
+        if (!real.startsWith(guard.resolvedRoot())) {
+             throw new AccessDeniedException(toString(), null, "Real path escaped sandbox");
         }
-        return new SandboxPath(fs, Paths.get("/").resolve(fs.getRealRoot().relativize(real)));
+        return new SandboxPath(fs, fs.getVirtualRoot().resolve(guard.resolvedRoot().relativize(real)));
     }
 
     @Override
@@ -0,0 +1,161 @@
+package org.roxycode.sandbox;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazily walks a directory tree, handing out each entry together with its attributes.
+ * <p>
+ * On a plain sandbox the walk runs over the real directories. Each entry costs one
+ * {@code lstat}, which both feeds its attributes and decides whether to descend. Entries are
+ * only wrapped as sandbox paths once they pass the glob. Overlay sandboxes and other file
+ * systems are walked through their own provider. Directories are opened only as the stream
+ * reaches them, so a consumer that stops early never touches the rest of the tree. A directory
+ * that can't be read is listed but not descended into, and the walk goes on. Close the stream
+ * to release the directories still open.
+ */
+public final class SandboxWalker {
+
+    private SandboxWalker() {
+    }
+
+    /**
+     * Walks the entries below {@code start} depth-first, {@code start} itself excluded.
+     *
+     * @param maxDepth how many levels to descend; 1 lists only the direct entries
+     * @param glob     a glob matched against each entry's path relative to {@code start},
+     *                 like {@code **}{@code /*.java}; null or empty matches everything
+     */
+    public static Stream<SandboxEntry> walk(Path start, int maxDepth, String glob) throws IOException {
+        PathMatcher matcher = glob == null || glob.isEmpty() ? null : FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        if (start instanceof SandboxPath sandboxStart && ((SandboxFileSystem) sandboxStart.getFileSystem()).getOverlay() == null) {
+            SandboxFileSystemProvider provider = (SandboxFileSystemProvider) sandboxStart.getFileSystem().provider();
+            Walk walk = new Walk(maxDepth, matcher, true);
+            walk.push(provider.checkedRealPath(sandboxStart), sandboxStart, "", 1);
+            return stream(walk);
+        }
+        Walk walk = new Walk(maxDepth, matcher, false);
+        walk.push(start, null, "", 1);
+        return stream(walk);
+    }
+
+    private static Stream<SandboxEntry> stream(Walk walk) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(walk,
+                        Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.DISTINCT), false)
+                .onClose(walk::close);
+    }
+
+    /**
+     * An open directory: the stream of its source entries, the sandbox path they are wrapped
+     * under when walking real directories, and its relative path for glob matching.
+     */
+    private record Frame(DirectoryStream<Path> stream, Iterator<Path> entries, SandboxPath dir, String relative, int depth) {}
+
+    private static final class Walk implements Iterator<SandboxEntry> {
+        private final int maxDepth;
+        private final PathMatcher matcher;
+        private final boolean real;
+        private final Deque<Frame> stack = new ArrayDeque<>();
+        private SandboxEntry next;
+
+        Walk(int maxDepth, PathMatcher matcher, boolean real) {
+            this.maxDepth = maxDepth;
+            this.matcher = matcher;
+            this.real = real;
+        }
+
+        void push(Path source, SandboxPath dir, String relative, int depth) throws IOException {
+            DirectoryStream<Path> stream = Files.newDirectoryStream(source);
+            stack.push(new Frame(stream, stream.iterator(), dir, relative, depth));
+        }
+
+        private Path wrap(Frame frame, Path source) {
+            return real ? frame.dir().resolveEntry(source) : source;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && !stack.isEmpty()) {
+                Frame frame = stack.peek();
+                Path source;
+                try {
+                    if (!frame.entries().hasNext()) {
+                        closeQuietly(stack.pop());
+                        continue;
+                    }
+                    source = frame.entries().next();
+                } catch (DirectoryIteratorException e) {
+                    // Failed part way through; keep what it listed and go on with the rest of the tree
+                    closeQuietly(stack.pop());
+                    continue;
+                }
+                BasicFileAttributes attrs;
+                try {
+                    attrs = Files.readAttributes(source, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                } catch (IOException e) {
+                    // Removed while walking
+                    continue;
+                }
+                String name = source.getFileName().toString();
+                String relative = frame.relative().isEmpty() ? name : frame.relative() + "/" + name;
+                Path path = null;
+                if (matcher == null || matcher.matches(FileSystems.getDefault().getPath(relative))) {
+                    path = wrap(frame, source);
+                    next = new SandboxEntry(path, attrs);
+                }
+                if (attrs.isDirectory() && frame.depth() < maxDepth) {
+                    descend(frame, source, path, relative);
+                }
+            }
+            return next != null;
+        }
+
+        private void descend(Frame frame, Path source, Path wrapped, String relative) {
+            SandboxPath dir = real ? (SandboxPath) (wrapped != null ? wrapped : wrap(frame, source)) : null;
+            try {
+                push(source, dir, relative, frame.depth() + 1);
+            } catch (IOException e) {
+                // Unreadable: the directory is listed but the walk goes on without its entries
+            }
+        }
+
+        @Override
+        public SandboxEntry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            SandboxEntry result = next;
+            next = null;
+            return result;
+        }
+
+        void close() {
+            while (!stack.isEmpty()) {
+                closeQuietly(stack.pop());
+            }
+        }
+
+        private static void closeQuietly(Frame frame) {
+            try {
+                frame.stream().close();
+            } catch (IOException e) {
+                // Nothing left to release
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package org.roxycode;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AgentExecutorTest {
+
+    /**
+     * Simulates concurrent chat sessions that spend their time blocked on I/O, the way
+     * a Gemini round-trip does, and checks as many run at once as the limit allows and no more.
+     */
+    @Test
+    void testConcurrentSessionsScale() {
+        int sessions = 32;
+        int sequential = peakConcurrency(new AgentExecutor(1, sessions, 1), sessions, 1);
+        int concurrent = peakConcurrency(new AgentExecutor(16, sessions, 1), sessions, 16);
+
+        assertEquals(1, sequential, "expected 1 of " + sessions + " sessions at a time with 1 worker, got " + sequential);
+        assertEquals(16, concurrent, "expected 16 of " + sessions + " sessions at a time with 16 workers, got " + concurrent);
+    }
+
+    @Test
+    void testRejectsWhenSaturated() throws Exception {
+        AgentExecutor executor = new AgentExecutor(1, 1, 7);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            CompletableFuture<Void> running = executor.submit(() -> await(release));
+            CompletableFuture<Void> queued = executor.submit(() -> await(release));
+
+            AgentBusyException busy = assertThrows(AgentBusyException.class, () -> executor.submit(() -> null));
+            assertEquals(7, busy.getRetryAfterSeconds());
+
+            release.countDown();
+            running.get();
+            queued.get();
+            assertNull(executor.submit(() -> null).get());
+        } finally {
+            release.countDown();
+            executor.close();
+        }
+    }
+
+    /**
+     * Runs {@code sessions} tasks that each hold their worker until {@code expected} of them are
+     * in flight together (or a timeout passes), and returns the most that were ever running at once.
+     */
+    private static int peakConcurrency(AgentExecutor executor, int sessions, int expected) {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        CountDownLatch together = new CountDownLatch(expected);
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < sessions; i++) {
+                futures.add(executor.submit(() -> {
+                    peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    together.countDown();
+                    await(together, 5);
+                    running.decrementAndGet();
+                    return null;
+                }));
+            }
+            futures.forEach(CompletableFuture::join);
+        } finally {
+            executor.close();
+        }
+        return peak.get();
+    }
+
+    private static Void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    private static void await(CountDownLatch latch, long seconds) {
+        try {
+            latch.await(seconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package org.roxycode;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AgentTracerTest {
+
+    @Test
+    void testChildSpansShareTraceAndPointAtParent() {
+        AgentTracer tracer = new AgentTracer(100);
+        AgentTracer.Span root = tracer.startTrace("agent.chat");
+        try (AgentTracer.Span iteration = root.child("agent.iteration")) {
+            iteration.child("tool.execute_javascript").error("boom").close();
+        }
+        root.close();
+        root.close();
+
+        List<List<SpanData>> traces = tracer.recentTraces(10);
+        assertEquals(1, traces.size());
+        List<SpanData> spans = traces.get(0);
+        assertEquals(3, spans.size());
+
+        SpanData tool = spans.get(0);
+        SpanData iteration = spans.get(1);
+        SpanData chat = spans.get(2);
+        assertEquals(32, chat.traceId().length());
+        assertNull(chat.parentSpanId());
+        assertEquals(chat.spanId(), iteration.parentSpanId());
+        assertEquals(iteration.spanId(), tool.parentSpanId());
+        assertEquals("ERROR", tool.status());
+        assertEquals("boom", tool.attributes().get("error.message"));
+    }
+
+    @Test
+    void testOldestSpansAreDropped() {
+        AgentTracer tracer = new AgentTracer(3);
+        for (int i = 0; i < 5; i++) {
+            tracer.startTrace("trace-" + i).close();
+        }
+
+        List<List<SpanData>> traces = tracer.recentTraces(10);
+        assertEquals(3, traces.size());
+        assertEquals("trace-4", traces.get(0).get(0).name());
+        assertEquals(1, tracer.recentTraces(1).size());
+    }
+}
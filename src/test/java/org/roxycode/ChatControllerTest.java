@@ -3,6 +3,7 @@ package org.roxycode;
 import io.micronaut.http.HttpRequest;
 import io.micronaut.http.HttpResponse;
 import io.micronaut.http.HttpStatus;
+import io.micronaut.http.MediaType;
 import io.micronaut.http.client.HttpClient;
 import io.micronaut.http.client.annotation.Client;
 import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
@@ -26,4 +27,12 @@ class ChatControllerTest {
         assertEquals(HttpStatus.OK, response.getStatus());
         assertTrue(response.body().contains("AI Chat"));
     }
+
+    @Test
+    void testStreamEndsWithTerminalEvent() {
+        HttpRequest<?> request = HttpRequest.GET("/chat/stream?prompt=Hello").accept(MediaType.TEXT_EVENT_STREAM_TYPE);
+        String body = client.toBlocking().retrieve(request, String.class);
+        // The fake key makes the model call fail, which must surface as an event rather than a hung stream
+        assertTrue(body.contains("event: failure") || body.contains("event: done"));
+    }
 }
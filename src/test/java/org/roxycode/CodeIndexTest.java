@@ -0,0 +1,96 @@
+package org.roxycode;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.PatternSyntaxException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CodeIndexTest {
+
+    @TempDir
+    Path root;
+
+    FileSystem fs;
+    CodeIndex index;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Files.createDirectories(root.resolve("src/main"));
+        Files.createDirectories(root.resolve("node_modules/lib"));
+        Files.writeString(root.resolve("src/main/App.java"), "class App {\n  void handleRequest() {}\n}\n");
+        Files.writeString(root.resolve("src/main/Util.java"), "class Util {\n  int count = 0;\n}\n");
+        Files.writeString(root.resolve("node_modules/lib/index.js"), "handleRequest()");
+        Files.write(root.resolve("data.bin"), new byte[]{'h', 'a', 'n', 'd', 'l', 'e', 0, 1});
+        fs = FileSystems.newFileSystem(URI.create("sandbox://code-index-test"), Map.of("root", root.toString()));
+        index = new CodeIndex(fs, 1024 * 1024, 10, ".git,node_modules");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        index.close();
+        fs.close();
+    }
+
+    @Test
+    void testFindsSubstringsAndRegexes() throws InterruptedException {
+        assertEquals(2, index.indexedFiles());
+
+        CodeSearchResult result = index.search("handleRequest", false, null, 0);
+        assertEquals(List.of(new CodeMatch("/src/main/App.java", 2, "  void handleRequest() {}")), result.matches());
+        assertEquals(1, result.filesScanned());
+
+        assertEquals(1, index.search("handle\\w+\\(\\)", true, null, 0).matches().size());
+        assertEquals(1, index.search("(?i)COUNT", true, null, 0).matches().size());
+        assertTrue(index.search("count", false, "**/App.java", 0).matches().isEmpty());
+        assertTrue(index.search("Handlerequest", false, null, 0).matches().isEmpty());
+        assertThrows(PatternSyntaxException.class, () -> index.search("(", true, null, 0));
+    }
+
+    @Test
+    void testLimitTruncatesResults() throws InterruptedException {
+        CodeSearchResult result = index.search("class", false, null, 1);
+        assertEquals(1, result.matches().size());
+        assertTrue(result.truncated());
+    }
+
+    @Test
+    void testFollowsWorkspaceChanges() throws IOException, InterruptedException {
+        index.indexedFiles();
+        Files.writeString(root.resolve("src/main/Util.java"), "class Util {\n  void handleRequest() {}\n}\n");
+        Files.createDirectories(root.resolve("src/test"));
+        Files.writeString(root.resolve("src/test/AppTest.java"), "handleRequest();");
+        Files.delete(root.resolve("src/main/App.java"));
+
+        List<String> expected = List.of("/src/main/Util.java", "/src/test/AppTest.java");
+        List<String> paths = List.of();
+        for (long deadline = System.currentTimeMillis() + 10_000; System.currentTimeMillis() < deadline; Thread.sleep(50)) {
+            paths = index.search("handleRequest", false, null, 0).matches().stream().map(CodeMatch::path).toList();
+            if (paths.equals(expected)) {
+                break;
+            }
+        }
+        assertEquals(expected, paths);
+    }
+
+    @Test
+    void testRequiredLiteralsSkipOptionalParts() {
+        assertEquals(List.of("foo", "baz.qux"), CodeIndex.requiredLiterals("foo(bar)?baz\\.qux\\d+"));
+        assertEquals(List.of("abc"), CodeIndex.requiredLiterals("abcd?[xyz]"));
+        assertTrue(CodeIndex.requiredLiterals("foo|bar").isEmpty());
+        assertTrue(CodeIndex.requiredLiterals("(?ix) foo bar").isEmpty());
+        assertTrue(CodeIndex.requiredLiterals("(?x:foo bar)baz").isEmpty());
+        assertEquals(List.of("foo"), CodeIndex.requiredLiterals("(?i)foo"));
+    }
+}
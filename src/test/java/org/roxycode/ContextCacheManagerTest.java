@@ -0,0 +1,29 @@
+package org.roxycode;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContextCacheManagerTest {
+
+    private static final ModelPricing PRO = new ModelPricing("gemini-2.5-pro", 1.25, 0.625, 0.045, 10.0, "");
+
+    @Test
+    void testCachingPaysOffWithReuse() {
+        assertTrue(ContextCacheManager.worthCaching(PRO, 100_000, 1, Duration.ofMinutes(10)));
+    }
+
+    @Test
+    void testCachingDoesNotPayOffWithoutReuse() {
+        assertFalse(ContextCacheManager.worthCaching(PRO, 100_000, 0, Duration.ofMinutes(10)));
+    }
+
+    @Test
+    void testLongTtlNeedsMoreReuse() {
+        // One reuse saves 0.0625 USD for 100k tokens while 24h of storage costs 0.108 USD
+        assertFalse(ContextCacheManager.worthCaching(PRO, 100_000, 1, Duration.ofHours(24)));
+        assertTrue(ContextCacheManager.worthCaching(PRO, 100_000, 2, Duration.ofHours(24)));
+    }
+}
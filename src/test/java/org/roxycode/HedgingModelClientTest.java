@@ -0,0 +1,110 @@
+package org.roxycode;
+
+import com.google.genai.types.Content;
+import com.google.genai.types.GenerateContentConfig;
+import com.google.genai.types.GenerateContentResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HedgingModelClientTest {
+
+    private HedgingPolicy policy;
+
+    @AfterEach
+    void tearDown() {
+        if (policy != null) {
+            policy.close();
+        }
+    }
+
+    /**
+     * Runs {@code behavior} with the 1-based number of each call.
+     */
+    private static ModelClient client(AtomicInteger calls, IntFunction<GenerateContentResponse> behavior) {
+        return new ModelClient() {
+            @Override
+            public GenerateContentResponse generateContent(String model, List<Content> contents, GenerateContentConfig config) {
+                return behavior.apply(calls.incrementAndGet());
+            }
+
+            @Override
+            public Stream<GenerateContentResponse> generateContentStream(String model, List<Content> contents, GenerateContentConfig config) {
+                return Stream.of(generateContent(model, contents, config));
+            }
+        };
+    }
+
+    private static GenerateContentResponse sleepThenRespond(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Cancelled", e);
+        }
+        return GenerateContentResponse.builder().build();
+    }
+
+    private HedgingPolicy policy(int maxAttempts, boolean hedging, double budgetRatio) {
+        policy = new HedgingPolicy(new AgentMetrics(null), maxAttempts, 1, 5, hedging, 0.95, 10, 5, budgetRatio);
+        return policy;
+    }
+
+    @Test
+    void testRetriesTransientFailuresOnly() {
+        AtomicInteger calls = new AtomicInteger();
+        ModelClient flaky = policy(3, false, 0).apply(client(calls, call -> {
+            if (call < 3) {
+                throw new UncheckedIOException(new IOException("connection reset"));
+            }
+            return GenerateContentResponse.builder().build();
+        }));
+        assertNotNull(flaky.generateContent("model", List.of(), null));
+        assertEquals(3, calls.get());
+
+        AtomicInteger badCalls = new AtomicInteger();
+        ModelClient bad = policy.apply(client(badCalls, call -> {
+            throw new IllegalArgumentException("bad request");
+        }));
+        assertThrows(IllegalArgumentException.class, () -> bad.generateContent("model", List.of(), null));
+        assertEquals(1, badCalls.get());
+    }
+
+    @Test
+    void testSlowCallIsHedged() {
+        AtomicInteger calls = new AtomicInteger();
+        AtomicBoolean slow = new AtomicBoolean();
+        ModelClient hedged = policy(1, true, 1.0).apply(client(calls, call ->
+                slow.get() && call % 2 == 1 ? sleepThenRespond(10_000) : sleepThenRespond(1)));
+        for (int i = 0; i < 10; i++) {
+            hedged.generateContent("model", List.of(), null);
+        }
+
+        // Calls are odd from here on, so the primary stalls and the duplicate answers
+        slow.set(true);
+        calls.set(10);
+        long start = System.nanoTime();
+        assertNotNull(hedged.generateContent("model", List.of(), null));
+        assertTrue(System.nanoTime() - start < 5_000_000_000L);
+        assertEquals(12, calls.get());
+    }
+
+    @Test
+    void testNoHedgeWithoutBudget() {
+        AtomicInteger calls = new AtomicInteger();
+        ModelClient client = policy(1, true, 0.0).apply(client(calls, call -> sleepThenRespond(call > 10 ? 200 : 1)));
+        for (int i = 0; i < 11; i++) {
+            client.generateContent("model", List.of(), null);
+        }
+        assertEquals(11, calls.get());
+    }
+}
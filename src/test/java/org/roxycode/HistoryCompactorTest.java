@@ -0,0 +1,144 @@
+package org.roxycode;
+
+import com.google.genai.types.CachedContent;
+import com.google.genai.types.Content;
+import com.google.genai.types.CreateCachedContentConfig;
+import com.google.genai.types.FunctionCall;
+import com.google.genai.types.FunctionResponse;
+import com.google.genai.types.GenerateContentConfig;
+import com.google.genai.types.GenerateContentResponse;
+import com.google.genai.types.GenerateContentResponseUsageMetadata;
+import com.google.genai.types.Part;
+import com.google.genai.types.UpdateCachedContentConfig;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistoryCompactorTest {
+
+    private static List<Content> history(int toolRounds) {
+        List<Content> history = new ArrayList<>();
+        history.add(Content.builder().role("user").parts(List.of(Part.builder().text("Find the bug").build())).build());
+        for (int i = 0; i < toolRounds; i++) {
+            history.add(Content.builder().role("model").parts(List.of(Part.builder()
+                    .functionCall(FunctionCall.builder().name("execute_javascript")
+                            .args(Map.of("code", "console.log(" + i + ");" + " ".repeat(1000))).build())
+                    .build())).build());
+            history.add(Content.builder().role("tool").parts(List.of(Part.builder()
+                    .functionResponse(FunctionResponse.builder().name("execute_javascript")
+                            .response(Map.of("success", true, "logs", "x".repeat(4000))).build())
+                    .build())).build());
+        }
+        return history;
+    }
+
+    @Test
+    void testShortHistoryIsSentAsIs() {
+        HistoryCompactor compactor = new HistoryCompactor(100_000, 4, 100);
+        List<Content> history = history(3);
+        assertSame(history, compactor.compact(history));
+    }
+
+    @Test
+    void testCompactsOlderToolTrafficOnly() {
+        HistoryCompactor compactor = new HistoryCompactor(1000, 4, 100);
+        List<Content> history = history(10);
+        List<Content> compacted = compactor.compact(history);
+
+        assertEquals(history.size(), compacted.size());
+        assertTrue(HistoryCompactor.estimateTokens(compacted) < HistoryCompactor.estimateTokens(history) / 2);
+        assertSame(history.get(0), compacted.get(0));
+        assertEquals(history.subList(history.size() - 4, history.size()), compacted.subList(history.size() - 4, history.size()));
+
+        FunctionResponse response = compacted.get(2).parts().orElseThrow().get(0).functionResponse().orElseThrow();
+        assertEquals("execute_javascript", response.name().orElseThrow());
+        assertEquals(true, response.response().orElseThrow().get("success"));
+        assertEquals(true, response.response().orElseThrow().get("compacted"));
+        assertTrue(((String) response.response().orElseThrow().get("logs")).length() < 150);
+
+        FunctionCall call = compacted.get(1).parts().orElseThrow().get(0).functionCall().orElseThrow();
+        assertTrue(((String) call.args().orElseThrow().get("code")).startsWith("console.log(0);"));
+    }
+
+    @Test
+    void testBoundaryMovesInSteps() {
+        HistoryCompactor compactor = new HistoryCompactor(1000, 4, 100);
+        List<Content> history = history(10);
+        List<Content> first = compactor.compact(history);
+        history.add(Content.builder().role("model").parts(List.of(Part.builder().text("Done").build())).build());
+        List<Content> second = compactor.compact(history);
+        assertEquals(first.subList(0, 16), second.subList(0, 16));
+    }
+
+    @Test
+    void testCompactedPrefixKeepsContextCache() {
+        AtomicInteger created = new AtomicInteger();
+        AtomicInteger deleted = new AtomicInteger();
+        CachingModelClient client = new CachingModelClient() {
+            @Override
+            public GenerateContentResponse generateContent(String model, List<Content> contents, GenerateContentConfig config) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Stream<GenerateContentResponse> generateContentStream(String model, List<Content> contents, GenerateContentConfig config) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public CachedContent createCache(String model, CreateCachedContentConfig config) {
+                return CachedContent.builder().name("cache-" + created.incrementAndGet())
+                        .expireTime(Instant.now().plus(Duration.ofMinutes(10))).build();
+            }
+
+            @Override
+            public CachedContent updateCache(String name, UpdateCachedContentConfig config) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void deleteCache(String name) {
+                deleted.incrementAndGet();
+            }
+        };
+        ContextCacheManager cacheManager = new ContextCacheManager(new ModelPricingRegistry("""
+                [pro]
+                api_name = "pro"
+                input_price_per_1m = 1.25
+                cached_price_per_1m = 0.125
+                cache_storage_price_per_1m_per_hour = 0.045
+                output_price_per_1m = 10.0
+                """), true, 4096, 10);
+        HistoryCompactor compactor = new HistoryCompactor(1000, 4, 100);
+        Map<Content, Content> compactedTurns = new IdentityHashMap<>();
+        List<Content> history = history(9);
+
+        // The first call only reports usage, the second caches the prefix of its request
+        assertNull(cacheManager.prepare(client, "session", "pro", compactor.compact(history, compactedTurns), List.of(), null).cacheName());
+        cacheManager.recordUsage("session", GenerateContentResponseUsageMetadata.builder().promptTokenCount(100_000).build());
+        history.addAll(history(1).subList(1, 3));
+        ContextCacheManager.ModelRequest first = cacheManager.prepare(client, "session", "pro",
+                compactor.compact(history, compactedTurns), List.of(), null);
+        assertEquals("cache-1", first.cacheName());
+
+        // The next iteration appends a round without moving the compaction boundary
+        history.addAll(history(1).subList(1, 3));
+        cacheManager.recordUsage("session", GenerateContentResponseUsageMetadata.builder()
+                .promptTokenCount(100_000).cachedContentTokenCount(99_000).build());
+        ContextCacheManager.ModelRequest second = cacheManager.prepare(client, "session", "pro",
+                compactor.compact(history, compactedTurns), List.of(), null);
+
+        assertEquals("cache-1", second.cacheName());
+        assertEquals(1, created.get());
+        assertEquals(0, deleted.get());
+    }
+}
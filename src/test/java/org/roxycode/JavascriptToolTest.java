@@ -0,0 +1,47 @@
+package org.roxycode;
+
+import com.google.genai.types.FunctionCall;
+import io.micronaut.context.annotation.Property;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@MicronautTest
+@Property(name = "roxycode.js.timeout-ms", value = "20000")
+@Property(name = "roxycode.js.cpu-time-ms", value = "500")
+class JavascriptToolTest {
+
+    @Inject
+    AgentExecutor agentExecutor;
+
+    @Inject
+    ToolDispatcher toolDispatcher;
+
+    /**
+     * Agent loops run on virtual threads, where per-thread CPU time can't be read, so the
+     * dispatcher must still run the script somewhere the CPU budget applies.
+     */
+    @Test
+    void testCpuLimitAppliesFromAgentThreads() {
+        FunctionCall call = FunctionCall.builder().name(JavascriptTool.NAME).args(Map.of("code", "while (true) {}")).build();
+        ToolContext context = new ToolContext(null, AgentListener.NONE, new AgentTracer(10).startTrace("test"));
+        long start = System.nanoTime();
+        ToolOutcome outcome = agentExecutor.submit(() -> {
+            try {
+                return toolDispatcher.dispatch(List.of(call), context).get(0);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }).join();
+
+        assertEquals(JsExecutionStatus.LIMIT_EXCEEDED.name(),
+                outcome.responsePart().functionResponse().orElseThrow().response().orElseThrow().get("status"));
+        assertTrue(System.nanoTime() - start < 10_000_000_000L);
+    }
+}
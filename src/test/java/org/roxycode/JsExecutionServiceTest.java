@@ -3,14 +3,19 @@ package org.roxycode;
 import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
 import jakarta.inject.Inject;
 import org.junit.jupiter.api.Test;
+import io.micronaut.context.annotation.Property;
 import static org.junit.jupiter.api.Assertions.*;
 
 @MicronautTest
+@Property(name = "roxycode.js.timeout-ms", value = "1000")
 class JsExecutionServiceTest {
 
     @Inject
     JsExecutionService jsExecutionService;
 
+    @Inject
+    AgentMetrics metrics;
+
     @Test
     void testSimpleCalculation() {
         JsExecutionResult result = jsExecutionService.execute("1 + 1");
@@ -18,6 +23,13 @@ class JsExecutionServiceTest {
         assertEquals("2", result.result());
     }
 
+    @Test
+    void testExecutionsAreTimedByStatus() {
+        jsExecutionService.execute("throw new Error('boom')");
+        assertNotNull(metrics.registry().find("roxycode.js.execution").tag("status", "ERROR").timer());
+        assertTrue(metrics.registry().find("roxycode.js.execution").tag("status", "ERROR").timer().count() >= 1);
+    }
+
     @Test
     void testLogging() {
         JsExecutionResult result = jsExecutionService.execute("console.log('hello'); console.error('world'); 'done'");
@@ -33,4 +45,38 @@ class JsExecutionServiceTest {
         assertFalse(result.success());
         assertNotNull(result.error());
     }
+
+    @Test
+    void testGlobalsDoNotLeakBetweenExecutions() {
+        assertTrue(jsExecutionService.execute("const leaked = 42; leaked").success());
+        JsExecutionResult result = jsExecutionService.execute("typeof leaked");
+        assertTrue(result.success());
+        assertEquals("undefined", result.result());
+    }
+
+    @Test
+    void testPoolStatsTrackExecutions() {
+        long before = jsExecutionService.poolStats().warmExecutions() + jsExecutionService.poolStats().coldExecutions();
+        jsExecutionService.execute("1 + 1");
+        JsPoolStats stats = jsExecutionService.poolStats();
+        assertEquals(before + 1, stats.warmExecutions() + stats.coldExecutions());
+    }
+
+    @Test
+    void testInfiniteLoopIsCancelled() {
+        JsExecutionResult result = jsExecutionService.execute("while (true) {}");
+        assertFalse(result.success());
+        assertTrue(result.status() == JsExecutionStatus.TIMEOUT || result.status() == JsExecutionStatus.LIMIT_EXCEEDED);
+
+        // The service stays usable after a cancelled run
+        assertEquals("2", jsExecutionService.execute("1 + 1").result());
+    }
+
+    @Test
+    void testLogCaptureIsCapped() {
+        JsExecutionResult result = jsExecutionService.execute("for (let i = 0; i < 20000; i++) console.log('0123456789'); 'ok'");
+        assertTrue(result.success());
+        assertTrue(result.logs().contains("[output truncated"));
+        assertTrue(result.logs().length() < 70_000);
+    }
 }
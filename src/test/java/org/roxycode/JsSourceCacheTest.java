@@ -0,0 +1,41 @@
+package org.roxycode;
+
+import org.graalvm.polyglot.Source;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsSourceCacheTest {
+
+    @Test
+    void testRepeatedScriptReusesSource() {
+        JsSourceCache cache = new JsSourceCache(8, 1_000_000);
+        Source first = cache.get("1 + 1");
+        Source second = cache.get("1 + 1\n");
+        assertSame(first, second);
+
+        JsSourceCacheStats stats = cache.stats();
+        assertEquals(1, stats.hits());
+        assertEquals(1, stats.misses());
+        assertEquals(1, stats.entries());
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsed() {
+        JsSourceCache cache = new JsSourceCache(2, 1_000_000);
+        Source a = cache.get("'a'");
+        cache.get("'b'");
+        cache.get("'a'");
+        cache.get("'c'");
+
+        assertEquals(2, cache.stats().entries());
+        assertSame(a, cache.get("'a'"));
+    }
+
+    @Test
+    void testByteLimitBoundsRetainedSize() {
+        JsSourceCache cache = new JsSourceCache(100, 40);
+        cache.get("'aaaaaaaaaa'");
+        cache.get("'bbbbbbbbbb'");
+        assertTrue(cache.stats().bytesRetained() <= 40);
+    }
+}
@@ -0,0 +1,96 @@
+package org.roxycode;
+
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.HostAccess;
+import org.graalvm.polyglot.PolyglotException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsWorkspaceTest {
+
+    @TempDir
+    Path root;
+
+    private FileSystem fs;
+    private JsWorkspace workspace;
+    private Context context;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Files.writeString(root.resolve("lines.txt"), "zero\none\ntwo\nthree\n");
+        Files.createDirectory(root.resolve("src"));
+        Files.writeString(root.resolve("src/a.js"), "x");
+        Files.writeString(root.resolve("src/b.js"), "yy");
+        fs = FileSystems.newFileSystem(URI.create("sandbox://js-workspace-" + System.nanoTime()), Map.of("root", root.toString(), "readOnly", true));
+        workspace = new JsWorkspace(fs, 16);
+        context = Context.newBuilder("js").allowHostAccess(HostAccess.EXPLICIT).build();
+        context.getBindings("js").putMember("workspace", workspace);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        context.close();
+        workspace.close();
+        fs.close();
+    }
+
+    @Test
+    void testReadsByteRange() {
+        assertEquals("one", context.eval("js", "workspace.read('/lines.txt', 5, 3)").asString());
+        assertEquals("three\n", context.eval("js", "workspace.read('lines.txt', 13, 16)").asString());
+        assertEquals("", context.eval("js", "workspace.read('/lines.txt', 100, 4)").asString());
+    }
+
+    @Test
+    void testReadsLineRange() {
+        assertEquals("one\ntwo\n", context.eval("js", "workspace.readLines('/lines.txt', 1, 2)").asString());
+        assertEquals("three\n", context.eval("js", "workspace.readLines('/lines.txt', 3, 10)").asString());
+        assertEquals("", context.eval("js", "workspace.readLines('/lines.txt', 9, 1)").asString());
+    }
+
+    @Test
+    void testRejectsOversizedReads() {
+        assertThrows(Exception.class, () -> context.eval("js", "workspace.read('/lines.txt', 0, 17)"));
+    }
+
+    @Test
+    void testListsDirectoryThroughCursor() {
+        String listed = context.eval("js", """
+                const cursor = workspace.list('/src');
+                const names = [];
+                while (cursor.hasNext()) { const e = cursor.next(); names.push(e.name + ':' + e.size); }
+                cursor.close();
+                names.sort().join(',')
+                """).asString();
+        assertEquals("a.js:1,b.js:2", listed);
+    }
+
+    @Test
+    void testWalksTreeWithGlob() {
+        String walked = context.eval("js", """
+                const cursor = workspace.walk('/', '**/*.js');
+                const paths = [];
+                while (cursor.hasNext()) { paths.push(cursor.next().path); }
+                paths.sort().join(',')
+                """).asString();
+        assertEquals("/src/a.js,/src/b.js", walked);
+    }
+
+    @Test
+    void testWritesFailOnReadOnlyWorkspace() {
+        assertThrows(PolyglotException.class, () -> context.eval("js", "workspace.write('/new.txt', 'x')"));
+        assertFalse(Files.exists(root.resolve("new.txt")));
+    }
+}
@@ -0,0 +1,36 @@
+package org.roxycode;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModelPricingRegistryTest {
+
+    @Test
+    void testLoadsBundledModelsToml() {
+        ModelPricingRegistry registry = new ModelPricingRegistry();
+        ModelPricing flash = registry.find("gemini-2.5-flash").orElseThrow();
+        assertEquals(0.15, flash.inputPricePer1m(), 1e-9);
+        assertEquals(0.03, flash.cachedPricePer1m(), 1e-9);
+        assertEquals(0.01, flash.cacheStoragePricePer1mPerHour(), 1e-9);
+        assertEquals(0.60, flash.outputPricePer1m(), 1e-9);
+        assertTrue(registry.find("no-such-model").isEmpty());
+    }
+
+    @Test
+    void testParsesCommentsAndQuotedValues() {
+        Map<String, Map<String, String>> tables = ModelPricingRegistry.parse("""
+                # leading comment
+                [model_a]
+                api_name = "model-a" # trailing comment
+                description = "Has a # inside"
+                input_price_per_1m = 1.5
+                """);
+        Map<String, String> table = tables.get("model_a");
+        assertEquals("model-a", table.get("api_name"));
+        assertEquals("Has a # inside", table.get("description"));
+        assertEquals("1.5", table.get("input_price_per_1m"));
+    }
+}
@@ -0,0 +1,85 @@
+package org.roxycode;
+
+import com.google.genai.types.FunctionCall;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadToolOutputToolTest {
+
+    private static String spillId(String fitted) {
+        Matcher id = Pattern.compile("id \"([0-9a-f]+)\"").matcher(fitted);
+        assertTrue(id.find());
+        return id.group(1);
+    }
+
+    private static Map<String, Object> read(ReadToolOutputTool tool, String sessionId, Map<String, Object> args) {
+        ToolContext context = new ToolContext(sessionId, AgentListener.NONE, new AgentTracer(10).startTrace("test"));
+        FunctionCall call = FunctionCall.builder().name(ReadToolOutputTool.NAME).args(args).build();
+        return tool.execute(call, context).responsePart().functionResponse().orElseThrow().response().orElseThrow();
+    }
+
+    private static String lines(int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append("line ").append(i).append('\n');
+        }
+        return text.toString();
+    }
+
+    @Test
+    void testPagesByLine() {
+        ToolOutputBudget budget = new ToolOutputBudget(1024, 8, 1_000_000);
+        ReadToolOutputTool tool = new ReadToolOutputTool(budget, new AgentMetrics(null));
+        String id = spillId(budget.fit("session", lines(1000)));
+
+        Map<String, Object> first = read(tool, "session", Map.of("id", id, "max_lines", 3));
+        assertEquals("line 0\nline 1\nline 2\n", first.get("text"));
+        assertEquals(1000, first.get("totalLines"));
+        assertEquals(4, first.get("nextLine"));
+
+        Map<String, Object> last = read(tool, "session", Map.of("id", id, "start_line", 998));
+        assertEquals("line 997\nline 998\nline 999\n", last.get("text"));
+        assertEquals(0, last.get("nextLine"));
+        assertEquals(0, last.get("nextChar"));
+    }
+
+    @Test
+    void testLongLineIsPagedByCharacter() {
+        ToolOutputBudget budget = new ToolOutputBudget(1024, 8, 1_000_000);
+        ReadToolOutputTool tool = new ReadToolOutputTool(budget, new AgentMetrics(null));
+        String full = "{\"data\":\"" + "x".repeat(3000) + "\"}\nend\n";
+        String id = spillId(budget.fit("session", full));
+
+        StringBuilder read = new StringBuilder();
+        Map<String, Object> args = new HashMap<>(Map.of("id", id));
+        for (int pages = 0; pages < 10; pages++) {
+            Map<String, Object> page = read(tool, "session", args);
+            assertTrue(((String) page.get("text")).length() <= 1024);
+            read.append(page.get("text"));
+            if ((int) page.get("nextChar") == 0) {
+                break;
+            }
+            args.put("start_char", page.get("nextChar"));
+        }
+        assertEquals(full, read.toString());
+    }
+
+    @Test
+    void testOtherSessionsAndExpiredOutputAreRefused() {
+        ToolOutputBudget budget = new ToolOutputBudget(256, 1, 1_000_000);
+        ReadToolOutputTool tool = new ReadToolOutputTool(budget, new AgentMetrics(null));
+        String id = spillId(budget.fit("session", lines(100)));
+
+        assertEquals(true, read(tool, "session", Map.of("id", id)).get("success"));
+        assertEquals(false, read(tool, "other-session", Map.of("id", id)).get("success"));
+
+        budget.fit("session", lines(200));
+        assertEquals(false, read(tool, "session", Map.of("id", id)).get("success"));
+    }
+}
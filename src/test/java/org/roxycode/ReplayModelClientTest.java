@@ -0,0 +1,88 @@
+package org.roxycode;
+
+import com.google.genai.types.Candidate;
+import com.google.genai.types.Content;
+import com.google.genai.types.FunctionCall;
+import com.google.genai.types.GenerateContentConfig;
+import com.google.genai.types.GenerateContentResponse;
+import com.google.genai.types.Part;
+import io.micronaut.serde.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplayModelClientTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testRecordedExchangesReplayByRequest() throws Exception {
+        ModelTranscript transcript = new ModelTranscript(tempDir.resolve("model.jsonl"), ObjectMapper.getDefault());
+        RecordingModelClient recorder = new RecordingModelClient(new EchoClient(), transcript);
+        recorder.generateContent("m", List.of(text("user", "first")), null);
+        try (Stream<GenerateContentResponse> chunks = recorder.generateContentStream("m", List.of(text("user", "second")), null)) {
+            assertEquals(2, chunks.count());
+        }
+
+        ReplayModelClient replay = new ReplayModelClient(transcript.load(), 0.0, true);
+        assertEquals("echo: second", replay.generateContent("m", List.of(text("user", "second")), null).text());
+        try (Stream<GenerateContentResponse> chunks = replay.generateContentStream("m", List.of(text("user", "first")), null)) {
+            assertEquals("echo: first", chunks.map(GenerateContentResponse::text).collect(Collectors.joining()));
+        }
+        assertThrows(IllegalStateException.class,
+                () -> replay.generateContent("m", List.of(text("user", "never recorded")), null));
+    }
+
+    @Test
+    void testFingerprintIgnoresMapOrder() {
+        Map<String, Object> ab = new LinkedHashMap<>();
+        ab.put("a", 1);
+        ab.put("b", List.of("x", "y"));
+        Map<String, Object> ba = new LinkedHashMap<>();
+        ba.put("b", List.of("x", "y"));
+        ba.put("a", 1);
+
+        assertEquals(PromptFingerprint.of("m", List.of(call(ab))), PromptFingerprint.of("m", List.of(call(ba))));
+        assertNotEquals(PromptFingerprint.of("m", List.of(call(ab))), PromptFingerprint.of("other", List.of(call(ab))));
+    }
+
+    private static Content text(String role, String text) {
+        return Content.builder().role(role).parts(List.of(Part.builder().text(text).build())).build();
+    }
+
+    private static Content call(Map<String, Object> args) {
+        return Content.builder().role("model").parts(List.of(Part.builder()
+                .functionCall(FunctionCall.builder().name("execute_javascript").args(args).build())
+                .build())).build();
+    }
+
+    private static GenerateContentResponse response(String text) {
+        return GenerateContentResponse.builder()
+                .candidates(List.of(Candidate.builder().content(text("model", text)).build()))
+                .build();
+    }
+
+    /**
+     * Answers with the prompt text; the streaming variant splits it into two chunks.
+     */
+    private static class EchoClient implements ModelClient {
+        @Override
+        public GenerateContentResponse generateContent(String model, List<Content> contents, GenerateContentConfig config) {
+            return response("echo: " + contents.get(0).parts().orElseThrow().get(0).text().orElseThrow());
+        }
+
+        @Override
+        public Stream<GenerateContentResponse> generateContentStream(String model, List<Content> contents, GenerateContentConfig config) {
+            return Stream.of(response("echo: "), response(contents.get(0).parts().orElseThrow().get(0).text().orElseThrow()));
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package org.roxycode;
+
+import com.google.genai.types.Content;
+import com.google.genai.types.GenerateContentConfig;
+import com.google.genai.types.Part;
+import com.google.genai.types.Tool;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseCacheTest {
+
+    private static final List<Content> HISTORY = List.of(text("user", "What is 2 + 2?"));
+
+    @Test
+    void testHitsOnIdenticalRequest() {
+        ResponseCache cache = new ResponseCache(true, 10, 60, new AgentMetrics(null));
+        String key = ResponseCache.key("m", null, HISTORY);
+        assertTrue(cache.get(key, ChatOptions.DEFAULT).isEmpty());
+
+        Content answer = text("model", "4");
+        cache.put(key, answer, ChatOptions.DEFAULT);
+        assertSame(answer, cache.get(ResponseCache.key("m", null, List.of(text("user", "What is 2 + 2?"))), ChatOptions.DEFAULT).orElseThrow());
+        assertEquals(1, cache.stats().hits());
+        assertEquals(1, cache.stats().misses());
+    }
+
+    @Test
+    void testKeyCoversModelAndConfig() {
+        GenerateContentConfig withTools = GenerateContentConfig.builder().tools(List.of(Tool.builder().build())).build();
+        String key = ResponseCache.key("m", null, HISTORY);
+        assertNotEquals(key, ResponseCache.key("other", null, HISTORY));
+        assertNotEquals(key, ResponseCache.key("m", withTools, HISTORY));
+    }
+
+    @Test
+    void testBypassSkipsReadAndWrite() {
+        ResponseCache cache = new ResponseCache(true, 10, 60, new AgentMetrics(null));
+        String key = ResponseCache.key("m", null, HISTORY);
+        ChatOptions bypass = new ChatOptions(true);
+        cache.put(key, text("model", "4"), bypass);
+        assertEquals(0, cache.stats().entries());
+
+        cache.put(key, text("model", "4"), ChatOptions.DEFAULT);
+        assertTrue(cache.get(key, bypass).isEmpty());
+        assertEquals(1, cache.stats().bypassed());
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsed() {
+        ResponseCache cache = new ResponseCache(true, 2, 60, new AgentMetrics(null));
+        cache.put("a", text("model", "a"), ChatOptions.DEFAULT);
+        cache.put("b", text("model", "b"), ChatOptions.DEFAULT);
+        cache.get("a", ChatOptions.DEFAULT);
+        cache.put("c", text("model", "c"), ChatOptions.DEFAULT);
+
+        assertTrue(cache.get("a", ChatOptions.DEFAULT).isPresent());
+        assertTrue(cache.get("b", ChatOptions.DEFAULT).isEmpty());
+        assertEquals(2, cache.stats().entries());
+    }
+
+    @Test
+    void testDisabledCacheStoresNothing() {
+        ResponseCache cache = new ResponseCache(false, 10, 60, new AgentMetrics(null));
+        cache.put("a", text("model", "a"), ChatOptions.DEFAULT);
+        assertTrue(cache.get("a", ChatOptions.DEFAULT).isEmpty());
+        assertEquals(0, cache.stats().misses());
+    }
+
+    private static Content text(String role, String text) {
+        return Content.builder().role(role).parts(List.of(Part.builder().text(text).build())).build();
+    }
+}
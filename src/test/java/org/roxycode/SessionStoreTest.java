@@ -0,0 +1,102 @@
+package org.roxycode;
+
+import com.google.genai.types.Content;
+import com.google.genai.types.Part;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testHistoryIsPersistedAndRestored() throws Exception {
+        SessionStore store = new SessionStore(10, 60, tempDir.toString());
+        ChatSession session = store.getOrCreate(null);
+        store.append(session, List.of(text("user", "hi"), text("model", "hello")));
+        store.append(session, List.of(text("user", "again")));
+
+        assertEquals(3, Files.readAllLines(tempDir.resolve(session.getId() + ".jsonl")).size());
+
+        SessionStore restarted = new SessionStore(10, 60, tempDir.toString());
+        ChatSession restored = restarted.find(session.getId()).orElseThrow();
+        assertEquals(3, restored.size());
+        assertEquals("again", restored.history().get(2).parts().orElseThrow().get(0).text().orElseThrow());
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsedOverCapacity() throws Exception {
+        SessionStore store = new SessionStore(2, 60, "");
+        ChatSession first = store.getOrCreate("first");
+        Thread.sleep(5);
+        store.getOrCreate("second");
+        Thread.sleep(5);
+        store.getOrCreate("third");
+
+        assertEquals(2, store.size());
+        assertTrue(store.find(first.getId()).isEmpty());
+    }
+
+    @Test
+    void testPinnedSessionIsNotEvicted() throws Exception {
+        SessionStore store = new SessionStore(1, 60, "");
+        ChatSession running = store.acquire("running");
+        Thread.sleep(5);
+        store.getOrCreate("other");
+        assertSame(running, store.find("running").orElseThrow());
+
+        store.release(running);
+        Thread.sleep(5);
+        store.getOrCreate("third");
+        assertTrue(store.find("running").isEmpty());
+    }
+
+    @Test
+    void testRemovingPinnedSessionWaitsForRelease() throws Exception {
+        SessionStore store = new SessionStore(10, 60, tempDir.toString());
+        ChatSession running = store.acquire("running");
+        store.append(running, List.of(text("user", "hi")));
+        Path file = tempDir.resolve("running.jsonl");
+
+        store.remove("running");
+        store.append(running, List.of(text("model", "hello")));
+        assertSame(running, store.find("running").orElseThrow());
+        assertEquals(2, Files.readAllLines(file).size());
+
+        store.release(running);
+        assertFalse(Files.exists(file));
+        assertTrue(store.find("running").isEmpty());
+    }
+
+    @Test
+    void testRejectsMalformedIds() {
+        SessionStore store = new SessionStore(10, 60, tempDir.toString());
+        ChatSession session = store.getOrCreate("../../etc/passwd");
+        assertNotEquals("../../etc/passwd", session.getId());
+        assertTrue(SessionStore.isValidId(session.getId()));
+    }
+
+    @Test
+    void testExchangesRebuiltFromHistory() {
+        List<ChatExchange> exchanges = ChatExchange.fromHistory(List.of(
+                text("user", "first question"),
+                text("model", "first answer"),
+                text("user", "second question"),
+                text("model", "second answer")));
+
+        assertEquals(2, exchanges.size());
+        assertEquals("second question", exchanges.get(1).prompt());
+        assertEquals("second answer", exchanges.get(1).response());
+    }
+
+    private static Content text(String role, String text) {
+        return Content.builder().role(role).parts(List.of(Part.builder().text(text).build())).build();
+    }
+}
@@ -0,0 +1,90 @@
+package org.roxycode;
+
+import com.google.genai.types.FunctionCall;
+import com.google.genai.types.FunctionDeclaration;
+import com.google.genai.types.FunctionResponse;
+import com.google.genai.types.Part;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ToolDispatcherTest {
+
+    private final List<String> batches = new CopyOnWriteArrayList<>();
+
+    private AgentTool tool(String name, boolean batchable, boolean enabled) {
+        return new AgentTool() {
+            @Override
+            public FunctionDeclaration declaration() {
+                return FunctionDeclaration.builder().name(name).description(name).build();
+            }
+
+            @Override
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            @Override
+            public boolean isBatchable() {
+                return batchable;
+            }
+
+            @Override
+            public ToolOutcome execute(FunctionCall call, ToolContext context) {
+                String arg = String.valueOf(call.args().orElse(Map.of()).get("arg"));
+                Part part = Part.builder()
+                        .functionResponse(FunctionResponse.builder().name(name).response(Map.of("arg", arg)).build())
+                        .build();
+                return new ToolOutcome(new ToolExecution(name, arg), part);
+            }
+
+            @Override
+            public List<ToolOutcome> executeBatch(List<FunctionCall> calls, ToolContext context) {
+                batches.add(name + " x" + calls.size());
+                List<ToolOutcome> outcomes = new ArrayList<>();
+                for (FunctionCall call : calls) {
+                    outcomes.add(execute(call, context));
+                }
+                return outcomes;
+            }
+        };
+    }
+
+    private static FunctionCall call(String name, String arg) {
+        return FunctionCall.builder().name(name).args(Map.of("arg", arg)).build();
+    }
+
+    @Test
+    void testRegistryOffersEnabledToolsInNameOrder() {
+        ToolRegistry registry = new ToolRegistry(List.of(tool("search", true, true), tool("run", false, true),
+                tool("off", false, false)));
+        assertEquals(List.of("run", "search"), List.copyOf(registry.names()));
+        assertEquals(List.of("run", "search"), registry.tool().functionDeclarations().orElseThrow().stream()
+                .map(declaration -> declaration.name().orElseThrow()).toList());
+        assertSame(registry.config(), registry.config());
+        assertNull(registry.get("off"));
+    }
+
+    @Test
+    void testBatchesCallsAndKeepsOrder() throws InterruptedException {
+        ToolRegistry registry = new ToolRegistry(List.of(tool("search", true, true), tool("run", false, true)));
+        ToolDispatcher dispatcher = new ToolDispatcher(registry, 2, 4);
+        ToolContext context = new ToolContext(null, AgentListener.NONE, new AgentTracer(10).startTrace("test"));
+        try {
+            List<ToolOutcome> outcomes = dispatcher.dispatch(List.of(call("search", "a"), call("run", "b"),
+                    call("search", "c"), call("missing", "d"), call("run", "e")), context);
+
+            assertEquals(List.of("a", "b", "c", "Error: Unknown tool: missing", "e"),
+                    outcomes.stream().map(outcome -> outcome.execution().output()).toList());
+            assertEquals(List.of("search x2"), batches);
+            assertEquals("missing", outcomes.get(3).responsePart().functionResponse().orElseThrow().name().orElseThrow());
+        } finally {
+            dispatcher.close();
+        }
+    }
+}
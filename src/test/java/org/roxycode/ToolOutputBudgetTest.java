@@ -0,0 +1,58 @@
+package org.roxycode;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ToolOutputBudgetTest {
+
+    @Test
+    void testShortOutputPassesThrough() {
+        ToolOutputBudget budget = new ToolOutputBudget(1024, 8, 1_000_000);
+        assertEquals("hello", budget.fit("session", "hello"));
+        assertNull(budget.fit("session", null));
+    }
+
+    @Test
+    void testLongOutputKeepsHeadAndTailAndSpills() {
+        ToolOutputBudget budget = new ToolOutputBudget(1024, 8, 1_000_000);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            text.append("line ").append(i).append('\n');
+        }
+        String full = text.toString();
+
+        String fitted = budget.fit("session", full);
+        assertTrue(fitted.startsWith("line 0\n"));
+        assertTrue(fitted.endsWith("line 999\n"));
+        assertTrue(fitted.getBytes(StandardCharsets.UTF_8).length < 1024 + 200);
+
+        Matcher id = Pattern.compile("id \"([0-9a-f]+)\"").matcher(fitted);
+        assertTrue(id.find());
+        assertEquals(full, budget.spilled("session", id.group(1)));
+        assertNull(budget.spilled("other-session", id.group(1)));
+    }
+
+    @Test
+    void testMultiByteTextIsCutOnCharacters() {
+        ToolOutputBudget budget = new ToolOutputBudget(256, 8, 1_000_000);
+        String fitted = budget.fit("session", "😀é".repeat(500));
+        assertFalse(Character.isLowSurrogate(fitted.charAt(0)));
+        assertFalse(Character.isHighSurrogate(fitted.charAt(fitted.length() - 1)));
+        assertTrue(fitted.contains("bytes and 0 lines omitted"));
+    }
+
+    @Test
+    void testSpillsAreEvictedLeastRecentlyUsedFirst() {
+        ToolOutputBudget budget = new ToolOutputBudget(256, 1, 1_000_000);
+        String first = budget.fit("session", "a".repeat(1000));
+        budget.fit("session", "b".repeat(1000));
+        Matcher id = Pattern.compile("id \"([0-9a-f]+)\"").matcher(first);
+        assertTrue(id.find());
+        assertNull(budget.spilled("session", id.group(1)));
+    }
+}
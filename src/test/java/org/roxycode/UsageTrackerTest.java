@@ -0,0 +1,52 @@
+package org.roxycode;
+
+import com.google.genai.types.GenerateContentResponseUsageMetadata;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UsageTrackerTest {
+
+    private final UsageTracker tracker = new UsageTracker(new ModelPricingRegistry("""
+            [flash]
+            api_name = "flash"
+            input_price_per_1m = 1.0
+            cached_price_per_1m = 0.25
+            output_price_per_1m = 4.0
+            """));
+
+    @Test
+    void testCachedTokensBilledAtCachedRate() {
+        UsageStats call = tracker.record(null, "flash", usage(1_000_000, 400_000, 100_000, 50_000));
+
+        // 600k uncached at 1.0, 400k cached at 0.25, 150k output (incl. thinking) at 4.0
+        assertEquals(0.6 + 0.1 + 0.6, call.costUsd(), 1e-9);
+        assertEquals(150_000, call.outputTokens());
+    }
+
+    @Test
+    void testAggregatesPerModelAndSession() {
+        ChatSession session = new ChatSession("s1", List.of());
+        tracker.record(session, "flash", usage(1000, 0, 100, 0));
+        tracker.record(session, "flash", usage(2000, 1000, 200, 0));
+        tracker.record(null, "unknown-model", usage(500, 0, 50, 0));
+
+        assertEquals(2, session.usage().requests());
+        assertEquals(3000, session.usage().promptTokens());
+        assertEquals(2, tracker.byModel().get("flash").requests());
+        assertEquals(0.0, tracker.byModel().get("unknown-model").costUsd());
+        assertEquals(3, tracker.total().requests());
+        assertEquals(tracker.byModel().get("flash").costUsd(), tracker.total().costUsd(), 1e-12);
+    }
+
+    private static GenerateContentResponseUsageMetadata usage(int prompt, int cached, int output, int thoughts) {
+        return GenerateContentResponseUsageMetadata.builder()
+                .promptTokenCount(prompt)
+                .cachedContentTokenCount(cached)
+                .candidatesTokenCount(output)
+                .thoughtsTokenCount(thoughts)
+                .build();
+    }
+}
@@ -0,0 +1,63 @@
+package org.roxycode;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorkspaceServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testSessionsGetPrivateOverlays() throws IOException {
+        Path root = Files.createDirectory(tempDir.resolve("project"));
+        Files.writeString(root.resolve("Main.java"), "class Main {}");
+        Path overlays = tempDir.resolve("overlays");
+        WorkspaceService service = new WorkspaceService(root.toString(), true, 1024, true, overlays.toString(), false, 1024, false, 60);
+        String first = SessionStore.newSessionId();
+        String second = SessionStore.newSessionId();
+
+        try (JsWorkspace workspace = service.newJsWorkspace(first)) {
+            workspace.write("/Main.java", "class Changed {}");
+            workspace.write("/notes/todo.txt", "todo");
+        }
+        try (JsWorkspace workspace = service.newJsWorkspace(first)) {
+            assertEquals("class Changed {}", workspace.read("/Main.java", 0, 100));
+            assertTrue(workspace.exists("/notes/todo.txt"));
+        }
+        try (JsWorkspace workspace = service.newJsWorkspace(second)) {
+            assertEquals("class Main {}", workspace.read("/Main.java", 0, 100));
+            assertFalse(workspace.exists("/notes/todo.txt"));
+        }
+        assertEquals("class Main {}", Files.readString(root.resolve("Main.java")));
+        assertSame(service.fileSystem(), service.fileSystem(null));
+
+        service.close();
+        assertFalse(Files.exists(overlays.resolve(first)));
+    }
+
+    @Test
+    void testInMemoryOverlayStaysOffDisk() throws IOException {
+        Path root = Files.createDirectory(tempDir.resolve("project"));
+        Files.writeString(root.resolve("Main.java"), "class Main {}");
+        Path overlays = tempDir.resolve("overlays");
+        WorkspaceService service = new WorkspaceService(root.toString(), true, 1024, true, overlays.toString(), true, 64, false, 60);
+        String session = SessionStore.newSessionId();
+
+        try (JsWorkspace workspace = service.newJsWorkspace(session)) {
+            workspace.write("/Main.java", "class Changed {}");
+            assertEquals("class Changed {}", workspace.read("/Main.java", 0, 100));
+            assertThrows(UncheckedIOException.class, () -> workspace.write("/big.txt", "x".repeat(100)));
+        }
+        assertFalse(Files.exists(overlays));
+        assertEquals("class Main {}", Files.readString(root.resolve("Main.java")));
+        service.close();
+    }
+}
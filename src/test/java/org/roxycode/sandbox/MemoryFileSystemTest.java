@@ -0,0 +1,80 @@
+package org.roxycode.sandbox;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MemoryFileSystemTest {
+
+    @Test
+    public void testFilesDirectoriesAndMoves() throws IOException {
+        try (FileSystem fs = FileSystems.newFileSystem(URI.create("memory://basics"), Map.of())) {
+            Files.createDirectories(fs.getPath("/a/b"));
+            Files.writeString(fs.getPath("/a/b/f.txt"), "hello");
+            Files.writeString(fs.getPath("/a/b/f.txt"), " world", StandardOpenOption.APPEND);
+            assertEquals("hello world", Files.readString(fs.getPath("/a/b/f.txt")));
+            assertEquals(11, Files.size(fs.getPath("/a/b/f.txt")));
+
+            try (SeekableByteChannel channel = Files.newByteChannel(fs.getPath("/a/b/f.txt"),
+                    EnumSet.of(StandardOpenOption.READ, StandardOpenOption.WRITE))) {
+                channel.position(6).write(ByteBuffer.wrap("W".getBytes(StandardCharsets.UTF_8)));
+                channel.truncate(7);
+            }
+            assertEquals("hello W", Files.readString(fs.getPath("/a/b/f.txt")));
+
+            Files.move(fs.getPath("/a/b"), fs.getPath("/c"));
+            assertTrue(Files.isDirectory(fs.getPath("/c")));
+            assertFalse(Files.exists(fs.getPath("/a/b")));
+            Files.copy(fs.getPath("/c/f.txt"), fs.getPath("/g.txt"));
+            assertThrows(FileAlreadyExistsException.class, () -> Files.copy(fs.getPath("/c/f.txt"), fs.getPath("/g.txt")));
+            assertThrows(DirectoryNotEmptyException.class, () -> Files.delete(fs.getPath("/c")));
+
+            List<String> walked = new ArrayList<>();
+            try (var paths = Files.walk(fs.getPath("/"))) {
+                paths.forEach(path -> walked.add(path.toString()));
+            }
+            assertEquals(List.of("/", "/a", "/c", "/c/f.txt", "/g.txt"), walked);
+        }
+    }
+
+    @Test
+    public void testQuotaIsEnforcedAndReleased() throws IOException {
+        try (FileSystem fs = FileSystems.newFileSystem(URI.create("memory://quota"), Map.of("quota", 1024, "offHeap", true))) {
+            FileStore store = Files.getFileStore(fs.getPath("/"));
+            Files.write(fs.getPath("/small"), new byte[512]);
+            assertEquals(512, store.getUsableSpace());
+            assertThrows(FileSystemException.class, () -> Files.write(fs.getPath("/large"), new byte[600]));
+
+            Files.delete(fs.getPath("/small"));
+            assertEquals(1024, store.getUsableSpace());
+            Files.write(fs.getPath("/large"), new byte[600]);
+        }
+    }
+
+    @Test
+    public void testSandboxOverMemoryRoot() throws IOException {
+        try (FileSystem memory = FileSystems.newFileSystem(URI.create("memory://sandbox-root"), Map.of())) {
+            Files.createDirectory(memory.getPath("/root"));
+            Files.writeString(memory.getPath("/root/a.txt"), "a");
+            Files.writeString(memory.getPath("/outside.txt"), "secret");
+
+            try (FileSystem fs = FileSystems.newFileSystem(URI.create("sandbox://memory-root"), Map.of("root", memory.getPath("/root")))) {
+                assertEquals("a", Files.readString(fs.getPath("/a.txt")));
+                assertFalse(Files.exists(fs.getPath("/../outside.txt")));
+                Files.writeString(fs.getPath("/b.txt"), "b");
+                assertEquals("b", Files.readString(memory.getPath("/root/b.txt")));
+            }
+        }
+    }
+}
@@ -6,7 +6,9 @@ import org.junit.jupiter.api.io.TempDir;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.file.*;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -63,4 +65,179 @@ public class SandboxFileSystemTest {
             });
         }
     }
+
+    @Test
+    public void testPathResolution() throws IOException {
+        Path root = tempDir.resolve("resolve-root");
+        Files.createDirectory(root);
+        try (SandboxFileSystem fs = new SandboxFileSystem(new SandboxFileSystemProvider(), root, true)) {
+            Path realRoot = root.toAbsolutePath().normalize();
+
+            SandboxPath file = (SandboxPath) fs.getPath("/src/../src/Main.java");
+            assertEquals(realRoot.resolve("src/Main.java"), file.getRealDelegate());
+            assertSame(file.getRealDelegate(), file.getRealDelegate());
+
+            assertEquals(realRoot.resolve("a/b"), ((SandboxPath) fs.getPath("a").resolve("b")).getRealDelegate());
+            assertEquals("/x", fs.getPath("/a").resolve("/x").toString());
+            assertEquals(realRoot, ((SandboxPath) fs.getPath("../outside")).getRealDelegate());
+            assertEquals(realRoot, ((SandboxPath) fs.getPath("/")).getRealDelegate());
+        }
+    }
+
+    @Test
+    public void testSandboxesOverOneRootShareTheirGuard() throws IOException {
+        Path root = tempDir.resolve("shared-root");
+        Files.createDirectories(root.resolve("src/main"));
+        Files.writeString(root.resolve("src/main/App.java"), "class App {}");
+        SandboxFileSystemProvider provider = new SandboxFileSystemProvider();
+        SandboxFileSystem first = new SandboxFileSystem(provider, root, true);
+        SandboxFileSystem second = new SandboxFileSystem(provider, root.resolve("src/.."), true);
+        assertSame(first.getGuard(), second.getGuard());
+
+        // The guard stays open, and keeps caching, until its last sandbox closes
+        first.close();
+        assertEquals("class App {}", Files.readString(second.getPath("/src/main/App.java")));
+        assertTrue(second.getGuard().cachedDirectories() > 0);
+        second.close();
+
+        SandboxFileSystem third = new SandboxFileSystem(provider, root, true);
+        assertNotSame(first.getGuard(), third.getGuard());
+        third.close();
+    }
+
+    @Test
+    public void testDirectoryStreamMapsEntriesAndAppliesFilter() throws IOException {
+        Path root = tempDir.resolve("stream-root");
+        Files.createDirectories(root.resolve("dir"));
+        Files.writeString(root.resolve("dir/a.txt"), "a");
+        Files.writeString(root.resolve("dir/b.log"), "b");
+        try (SandboxFileSystem fs = new SandboxFileSystem(new SandboxFileSystemProvider(), root, true)) {
+            List<String> names = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(fs.getPath("/dir"), "*.txt")) {
+                for (Path entry : entries) {
+                    names.add(entry.toString());
+                    assertEquals("a", Files.readString(entry));
+                }
+            }
+            assertEquals(List.of("/dir/a.txt"), names);
+        }
+    }
+
+    @Test
+    public void testSymbolicLinksCannotEscapeRoot() throws IOException {
+        Path root = tempDir.resolve("link-root");
+        Path outside = tempDir.resolve("outside");
+        Files.createDirectories(root.resolve("src"));
+        Files.createDirectory(outside);
+        Files.writeString(outside.resolve("secret.txt"), "secret");
+        Files.writeString(root.resolve("src/Main.java"), "class Main {}");
+        Files.createSymbolicLink(root.resolve("escape"), outside);
+        Files.createSymbolicLink(root.resolve("secret.txt"), outside.resolve("secret.txt"));
+        Files.createSymbolicLink(root.resolve("main"), root.resolve("src/Main.java"));
+        try (SandboxFileSystem fs = new SandboxFileSystem(new SandboxFileSystemProvider(), root, false)) {
+            assertThrows(AccessDeniedException.class, () -> Files.readString(fs.getPath("/escape/secret.txt")));
+            assertThrows(AccessDeniedException.class, () -> Files.readString(fs.getPath("/secret.txt")));
+            assertThrows(AccessDeniedException.class, () -> Files.writeString(fs.getPath("/escape/new.txt"), "x"));
+            assertThrows(AccessDeniedException.class, () -> fs.getPath("/escape").toRealPath());
+            assertFalse(Files.exists(outside.resolve("new.txt")));
+
+            // Links that stay inside the root keep working, and the link itself can still be removed
+            assertEquals("class Main {}", Files.readString(fs.getPath("/main")));
+            assertEquals("/src/Main.java", fs.getPath("/main").toRealPath().toString());
+            Files.delete(fs.getPath("/secret.txt"));
+            assertTrue(Files.exists(outside.resolve("secret.txt")));
+        }
+    }
+
+    @Test
+    public void testCachedDirectorySwappedForLinkIsDenied() throws Exception {
+        Path root = tempDir.resolve("swap-root");
+        Path outside = Files.createDirectories(tempDir.resolve("swap-outside"));
+        Files.writeString(outside.resolve("secret.txt"), "secret");
+        Files.createDirectories(root.resolve("a"));
+        Files.writeString(root.resolve("a/file.txt"), "a");
+
+        try (SandboxFileSystem fs = new SandboxFileSystem(new SandboxFileSystemProvider(), root, true)) {
+            assertEquals("a", Files.readString(fs.getPath("/a/file.txt")));
+            assertTrue(fs.getGuard().cachedDirectories() > 0);
+
+            // Replaced behind the sandbox's back, as a checkout or build step might
+            Files.move(root.resolve("a"), tempDir.resolve("swap-moved"));
+            Files.createSymbolicLink(root.resolve("a"), outside);
+
+            // The watcher drops the cached directory asynchronously
+            long deadline = System.nanoTime() + 5_000_000_000L;
+            while (fs.getGuard().cachedDirectories() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThrows(AccessDeniedException.class, () -> Files.readString(fs.getPath("/a/secret.txt")));
+        }
+    }
+
+    @Test
+    public void testCloseDeregistersFileSystem() throws IOException {
+        Path root = tempDir.resolve("registry-root");
+        Files.createDirectory(root);
+        Files.writeString(root.resolve("a.txt"), "a");
+        URI uri = URI.create("sandbox://registry");
+        Map<String, Object> env = Map.of("root", root.toString());
+
+        FileSystem fs = FileSystems.newFileSystem(uri, env);
+        Path file = fs.getPath("/a.txt");
+        assertSame(fs, FileSystems.getFileSystem(uri));
+        assertEquals(URI.create("sandbox://registry/a.txt"), file.toUri());
+        assertThrows(FileSystemAlreadyExistsException.class, () -> FileSystems.newFileSystem(uri, env));
+
+        fs.close();
+        assertFalse(fs.isOpen());
+        assertThrows(FileSystemNotFoundException.class, () -> FileSystems.getFileSystem(uri));
+        assertThrows(ClosedFileSystemException.class, () -> Files.readString(file));
+
+        try (FileSystem remounted = FileSystems.newFileSystem(uri, env)) {
+            assertEquals("a", Files.readString(remounted.getPath("/a.txt")));
+        }
+    }
+
+    @Test
+    public void testOverlayKeepsBaseUntouched() throws IOException {
+        Path base = tempDir.resolve("overlay-base");
+        Files.createDirectories(base.resolve("src/pkg"));
+        Files.writeString(base.resolve("src/A.java"), "A");
+        Files.writeString(base.resolve("src/pkg/B.java"), "B");
+        Files.writeString(base.resolve("README"), "readme");
+        Map<String, Object> env = Map.of("root", base.toString(), "upper", tempDir.resolve("upper").toString());
+
+        try (FileSystem fs = FileSystems.newFileSystem(URI.create("sandbox://overlay"), env)) {
+            Files.writeString(fs.getPath("/src/A.java"), "A2");
+            Files.writeString(fs.getPath("/README"), "+", StandardOpenOption.APPEND);
+            Files.delete(fs.getPath("/src/pkg/B.java"));
+            Files.writeString(fs.getPath("/C.txt"), "C");
+
+            assertEquals("A2", Files.readString(fs.getPath("/src/A.java")));
+            assertEquals("readme+", Files.readString(fs.getPath("/README")));
+            assertFalse(Files.exists(fs.getPath("/src/pkg/B.java")));
+            assertEquals(List.of("C.txt", "README", "src"), names(fs.getPath("/")));
+            assertEquals(List.of(), names(fs.getPath("/src/pkg")));
+
+            // A deleted directory that is created again doesn't bring its old entries back
+            Files.delete(fs.getPath("/src/pkg"));
+            Files.createDirectory(fs.getPath("/src/pkg"));
+            assertEquals(List.of(), names(fs.getPath("/src/pkg")));
+            assertThrows(AccessDeniedException.class, () -> Files.writeString(fs.getPath("/.wh.README"), "x"));
+        }
+
+        assertEquals("A", Files.readString(base.resolve("src/A.java")));
+        assertEquals("readme", Files.readString(base.resolve("README")));
+        assertTrue(Files.exists(base.resolve("src/pkg/B.java")));
+        assertFalse(Files.exists(base.resolve("C.txt")));
+    }
+
+    private static List<String> names(Path dir) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            entries.forEach(entry -> names.add(entry.getFileName().toString()));
+        }
+        names.sort(null);
+        return names;
+    }
 }
@@ -0,0 +1,104 @@
+package org.roxycode.sandbox;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class SandboxWalkerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testWalksWithAttributesAndGlob() throws IOException {
+        Path root = tempDir.resolve("root");
+        Files.createDirectories(root.resolve("src/main"));
+        Files.writeString(root.resolve("src/main/App.java"), "class App {}");
+        Files.writeString(root.resolve("src/main/notes.txt"), "notes");
+        Files.writeString(root.resolve("README.md"), "readme");
+        try (SandboxFileSystem fs = new SandboxFileSystem(new SandboxFileSystemProvider(), root, true)) {
+            try (Stream<SandboxEntry> entries = SandboxWalker.walk(fs.getPath("/"), Integer.MAX_VALUE, null)) {
+                assertEquals(List.of("/README.md", "/src", "/src/main", "/src/main/App.java", "/src/main/notes.txt"),
+                        entries.map(entry -> entry.path().toString()).sorted().toList());
+            }
+            try (Stream<SandboxEntry> entries = SandboxWalker.walk(fs.getPath("/"), Integer.MAX_VALUE, "**/*.java")) {
+                SandboxEntry app = entries.findFirst().orElseThrow();
+                assertEquals("/src/main/App.java", app.path().toString());
+                assertEquals(12, app.attributes().size());
+                assertEquals("class App {}", Files.readString(app.path()));
+            }
+            try (Stream<SandboxEntry> entries = SandboxWalker.walk(fs.getPath("/src"), 1, null)) {
+                SandboxEntry main = entries.findFirst().orElseThrow();
+                assertEquals("/src/main", main.path().toString());
+                assertTrue(main.attributes().isDirectory());
+            }
+        }
+    }
+
+    @Test
+    public void testSkipsUnreadableDirectories() throws IOException {
+        Path root = tempDir.resolve("root");
+        Files.createDirectories(root.resolve("locked/inner"));
+        Files.createDirectories(root.resolve("open"));
+        Files.writeString(root.resolve("open/file.txt"), "text");
+        Path locked = root.resolve("locked");
+        assumeTrue(locked.getFileSystem().supportedFileAttributeViews().contains("posix"));
+        Files.setPosixFilePermissions(locked, Set.of());
+        try {
+            assumeFalse(Files.isReadable(locked), "running with permissions that ignore file modes");
+            try (SandboxFileSystem fs = new SandboxFileSystem(new SandboxFileSystemProvider(), root, true);
+                 Stream<SandboxEntry> entries = SandboxWalker.walk(fs.getPath("/"), Integer.MAX_VALUE, null)) {
+                assertEquals(List.of("/locked", "/open", "/open/file.txt"),
+                        entries.map(entry -> entry.path().toString()).sorted().toList());
+            }
+        } finally {
+            Files.setPosixFilePermissions(locked, PosixFilePermissions.fromString("rwx------"));
+        }
+    }
+
+    @Test
+    public void testDoesNotFollowLinksOutOfRoot() throws IOException {
+        Path root = Files.createDirectory(tempDir.resolve("link-root"));
+        Path outside = Files.createDirectory(tempDir.resolve("outside"));
+        Files.writeString(outside.resolve("secret.txt"), "secret");
+        Files.createSymbolicLink(root.resolve("escape"), outside);
+        try (SandboxFileSystem fs = new SandboxFileSystem(new SandboxFileSystemProvider(), root, true)) {
+            try (Stream<SandboxEntry> entries = SandboxWalker.walk(fs.getPath("/"), Integer.MAX_VALUE, null)) {
+                List<SandboxEntry> all = entries.toList();
+                assertEquals(1, all.size());
+                assertTrue(all.get(0).attributes().isSymbolicLink());
+            }
+        }
+    }
+
+    @Test
+    public void testWalksOverlayThroughMergedView() throws IOException {
+        Path base = Files.createDirectory(tempDir.resolve("base"));
+        Files.writeString(base.resolve("a.txt"), "a");
+        Files.writeString(base.resolve("b.txt"), "b");
+        Map<String, Object> env = Map.of("root", base.toString(), "upper", tempDir.resolve("upper").toString());
+
+        try (FileSystem fs = FileSystems.newFileSystem(URI.create("sandbox://walk-overlay"), env)) {
+            Files.delete(fs.getPath("/a.txt"));
+            Files.writeString(fs.getPath("/c.txt"), "c");
+            try (Stream<SandboxEntry> entries = SandboxWalker.walk(fs.getPath("/"), Integer.MAX_VALUE, "*.txt")) {
+                assertEquals(List.of("/b.txt", "/c.txt"), entries.map(entry -> entry.path().toString()).sorted().toList());
+            }
+        }
+    }
+}